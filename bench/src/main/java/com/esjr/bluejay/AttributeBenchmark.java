@@ -0,0 +1,95 @@
+package com.esjr.bluejay;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// BluejayObj.getAttr for instance attributes, methods, and inherited
+// methods, and setAttr for an existing attribute, both through an
+// InlineCache (as the engines do) and without one.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttributeBenchmark {
+    private static final String SOURCE = String.join("\n",
+        "class A {",
+        "    A(x) { this.x = x; }",
+        "    getX() { return this.x; }",
+        "}",
+        "class B : A {",
+        "    B(x) { this.x = x; }",
+        "}",
+        "class C : B {",
+        "    C(x) { this.x = x; }",
+        "}",
+        "var benchmarkObj = C(1)",
+        "");
+
+    private final Interpreter interpreter = new Interpreter();
+    private final Token x = new Token(TokenType.ID, "x");
+    private final Token getX = new Token(TokenType.ID, "getX");
+    private final Token toStr = new Token(TokenType.ID, "$str");
+    private final Token equal = new Token(TokenType.EQUAL, "=");
+    private final Value one = new NativeNumber(1);
+    private BluejayObj obj;
+    private BluejayObj number;
+    private InlineCache attrCache, methodCache, nativeCache, setCache;
+
+    @Setup
+    public void setup() {
+        PrintStream stdout = Programs.silenceStdout();
+        interpreter.interpret(Programs.resolved(SOURCE));
+        System.setOut(stdout);
+        obj = (BluejayObj)Builtins.globals.get(new Token(TokenType.ID, "benchmarkObj"));
+        number = new NativeNumber(1);
+        attrCache = new InlineCache();
+        methodCache = new InlineCache();
+        nativeCache = new InlineCache();
+        setCache = new InlineCache();
+    }
+
+    @Benchmark
+    public Value instanceAttribute() {
+        return obj.getAttr(interpreter, x);
+    }
+
+    @Benchmark
+    public Value instanceAttributeCached() {
+        return obj.getAttr(interpreter, x, attrCache);
+    }
+
+    @Benchmark
+    public void setInstanceAttribute() {
+        obj.setAttr(interpreter, "x", equal, one);
+    }
+
+    @Benchmark
+    public void setInstanceAttributeCached() {
+        obj.setAttr(interpreter, "x", equal, one, setCache);
+    }
+
+    // getX is defined two classes up from the object's class.
+    @Benchmark
+    public Value inheritedMethod() {
+        return obj.getAttr(interpreter, getX);
+    }
+
+    @Benchmark
+    public Value inheritedMethodCached() {
+        return obj.getAttr(interpreter, getX, methodCache);
+    }
+
+    @Benchmark
+    public Value nativeMethod() {
+        return number.getAttr(interpreter, toStr);
+    }
+
+    @Benchmark
+    public Value nativeMethodCached() {
+        return number.getAttr(interpreter, toStr, nativeCache);
+    }
+}
@@ -0,0 +1,54 @@
+package com.esjr.bluejay;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Runs whole programs from tests/ on each engine. Compiling for the VM and
+// node engines happens in setup, so these measure execution only (see
+// FrontEndBenchmark for the rest).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+    @Param({"coin_collector", "fulltest", "test2", "test3", "test4"})
+    public String program;
+
+    private List<Stmt> stmts;
+    private FunctionProto script;
+    private Node.Script nodes;
+    private PrintStream stdout;
+
+    @Setup
+    public void setup() {
+        stmts = Programs.resolved(Programs.source(program));
+        script = new Compiler().compile(stmts);
+        nodes = new NodeCompiler().compile(stmts);
+        stdout = Programs.silenceStdout();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public void tree() {
+        new Interpreter().interpret(stmts);
+    }
+
+    @Benchmark
+    public void nodes() {
+        nodes.run(new Interpreter());
+    }
+
+    @Benchmark
+    public void vm() {
+        new VM().interpret(script);
+    }
+}
@@ -0,0 +1,61 @@
+package com.esjr.bluejay;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Variable lookup and assignment: globals by name, locals by (depth, slot).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvironmentBenchmark {
+    private final Interpreter interpreter = new Interpreter();
+    private final Token global = new Token(TokenType.ID, "benchmarkGlobal");
+    private final Token assign = new Token(TokenType.EQUAL, "=");
+    private final Token plusAssign = new Token(TokenType.PLUS_EQUAL, "+=");
+    private final Value one = new NativeNumber(1);
+    private Environment local;
+
+    @Setup
+    public void setup() {
+        Builtins.globals.define(global.lexeme, one);
+        // Four nested scopes of a few slots each, like a loop body inside
+        // a function.
+        Environment environment = Builtins.globals;
+        for (int i = 0; i < 4; i++) {
+            environment = new Environment(environment, 3);
+            for (int slot = 0; slot < 3; slot++) environment.define(slot, one);
+        }
+        local = environment;
+    }
+
+    @Benchmark
+    public Value getGlobal() {
+        return Builtins.globals.get(global);
+    }
+
+    @Benchmark
+    public Value getLocal() {
+        return local.getAt(0, 1);
+    }
+
+    @Benchmark
+    public Value getEnclosing() {
+        return local.getAt(3, 1);
+    }
+
+    @Benchmark
+    public Value assignLocal() {
+        local.assignAt(interpreter, 0, 2, assign, one);
+        return local.slots[2];
+    }
+
+    @Benchmark
+    public Value compoundAssignLocal() {
+        local.assignAt(interpreter, 0, 2, plusAssign, one);
+        return local.slots[2];
+    }
+}
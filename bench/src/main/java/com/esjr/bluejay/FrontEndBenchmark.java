@@ -0,0 +1,56 @@
+package com.esjr.bluejay;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Everything that happens to a program before it runs: scanning, parsing,
+// resolving, and compiling it for the VM and node engines.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontEndBenchmark {
+    @Param({"bubbleSort", "coin_collector", "fulltest", "test2", "test3", "test4"})
+    public String program;
+
+    private String source;
+    private List<Token> tokens;
+    private List<Stmt> stmts;
+
+    @Setup
+    public void setup() {
+        source = Programs.source(program);
+        tokens = new Scanner(source).scanTokens();
+        stmts = Programs.resolved(source);
+    }
+
+    @Benchmark
+    public Object scan() {
+        return new Scanner(source).scanTokens();
+    }
+
+    @Benchmark
+    public Object parse() {
+        return new Parser(tokens).parse();
+    }
+
+    @Benchmark
+    public Object resolve() {
+        new Resolver().resolve(stmts);
+        return stmts;
+    }
+
+    @Benchmark
+    public Object compileBytecode() {
+        return new Compiler().compile(stmts);
+    }
+
+    @Benchmark
+    public Object compileNodes() {
+        return new NodeCompiler().compile(stmts);
+    }
+}
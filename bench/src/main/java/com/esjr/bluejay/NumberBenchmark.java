@@ -0,0 +1,83 @@
+package com.esjr.bluejay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// The numeric operators of the built-in Number class: the direct paths on
+// NativeNumber, the $-methods Builtins defines for them, and converting
+// values to numbers.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumberBenchmark {
+    private final Interpreter interpreter = new Interpreter();
+    private Value a, b, text;
+    private NativeMethod addMethod;
+    private List<Value> addArgs;
+
+    @Setup
+    public void setup() {
+        a = new NativeNumber(12.5);
+        b = new NativeNumber(3);
+        List<Value> args = new ArrayList<>();
+        args.add(new Value.BluejayString("42"));
+        text = Builtins.stringClass.call(interpreter, args);
+        addMethod = (NativeMethod)Builtins.numberClass.getStatic("$add");
+        addArgs = new ArrayList<>();
+        addArgs.add(b);
+    }
+
+    @Benchmark
+    public Value add() {
+        return a.add(interpreter, b);
+    }
+
+    @Benchmark
+    public Value mul() {
+        return a.mul(interpreter, b);
+    }
+
+    @Benchmark
+    public Value div() {
+        return a.div(interpreter, b);
+    }
+
+    @Benchmark
+    public Value mod() {
+        return a.mod(interpreter, b);
+    }
+
+    @Benchmark
+    public Value lt() {
+        return a.lt(interpreter, b);
+    }
+
+    @Benchmark
+    public Value eq() {
+        return a.eq(interpreter, b);
+    }
+
+    // What a.add(b) did before numbers had a direct path.
+    @Benchmark
+    public Value addMethod() {
+        return addMethod.call(interpreter, addArgs, (BluejayObj)a);
+    }
+
+    @Benchmark
+    public Value fromString() {
+        List<Value> args = new ArrayList<>(1);
+        args.add(text);
+        return Builtins.numberClass.call(interpreter, args);
+    }
+
+    @Benchmark
+    public String toText() {
+        return a.toString(interpreter);
+    }
+}
@@ -0,0 +1,43 @@
+package com.esjr.bluejay;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Loads the programs in tests/ for the benchmarks. Run the benchmarks from
+// the repository root, or point -Dbluejay.tests at the tests directory.
+final class Programs {
+    private Programs() {}
+
+    static String source(String name) {
+        Path path = Paths.get(System.getProperty("bluejay.tests", "tests"), name + ".blu");
+        try {
+            return new String(Files.readAllBytes(path), Charset.defaultCharset());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read " + path.toAbsolutePath(), e);
+        }
+    }
+
+    // Scanned, parsed, optimized (unless Bluejay.optimize is off) and
+    // resolved by Bluejay.parse, the same as Main does, ready to hand to an
+    // engine.
+    static List<Stmt> resolved(String source) {
+        List<Stmt> stmts = Bluejay.parse(source);
+        if (stmts == null) throw new IllegalStateException("Program has syntax errors.");
+        return stmts;
+    }
+
+    // Programs print as they run; that output would only get in the way of
+    // JMH's and cost time that has nothing to do with the interpreter.
+    static PrintStream silenceStdout() {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return out;
+    }
+}
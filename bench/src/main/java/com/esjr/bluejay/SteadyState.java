@@ -0,0 +1,83 @@
+package com.esjr.bluejay;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Runs one program over and over in the same JVM and prints how long each
+// run took, as JSON. benchmarks/run.py uses this for warm timings; the
+// first few runs are left out so the JIT has settled by the measured ones.
+//
+//     java -cp bench/target/benchmarks.jar com.esjr.bluejay.SteadyState \
+//         [--engine=vm|nodes|tree] [--no-jit] [--warmup=N] [--iterations=N] file
+public class SteadyState {
+    public static void main(String[] args) throws IOException {
+        int warmup = 5;
+        int iterations = 10;
+        String file = null;
+        for (String arg : args) {
+            if (arg.startsWith("--engine=")) {
+                Bluejay.engine = Bluejay.Engine.valueOf(arg.substring("--engine=".length()).toUpperCase());
+            } else if (arg.equals("--no-jit")) {
+                Bluejay.jit = false;
+            } else if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            } else {
+                file = arg;
+            }
+        }
+        if (file == null) {
+            System.err.println("Usage: SteadyState [--engine=vm|nodes|tree] [--no-jit] [--warmup=N] [--iterations=N] file");
+            System.exit(64);
+        }
+
+        String source = new String(Files.readAllBytes(Paths.get(file)), Charset.defaultCharset());
+        List<Double> times = new ArrayList<>();
+        String error = null;
+        PrintStream stdout = Programs.silenceStdout();
+        try {
+            for (int i = 0; i < warmup + iterations; i++) {
+                long start = System.nanoTime();
+                try {
+                    Bluejay.run(source);
+                } catch (RuntimeException | StackOverflowError e) {
+                    error = e.toString();
+                    break;
+                }
+                long elapsed = System.nanoTime() - start;
+                if (Bluejay.hadError || Bluejay.hadRuntimeError) {
+                    error = "The program reported an error.";
+                    break;
+                }
+                if (i >= warmup) times.add(elapsed / 1e6);
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"engine\": \"").append(Bluejay.engine.name().toLowerCase()).append("\"");
+        json.append(", \"warmup\": ").append(warmup);
+        json.append(", \"times_ms\": [");
+        for (int i = 0; i < times.size(); i++) {
+            if (i > 0) json.append(", ");
+            json.append(String.format(Locale.ROOT, "%.3f", times.get(i)));
+        }
+        json.append("], \"error\": ");
+        if (error == null) {
+            json.append("null");
+        } else {
+            json.append("\"").append(error.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append("\"");
+        }
+        json.append("}");
+        System.out.println(json);
+        System.exit(error == null ? 0 : 1);
+    }
+}
@@ -0,0 +1,205 @@
+"""Runs the Bluejay benchmark corpus and reports the results as JSON.
+
+Every benchmark is run on every engine two ways:
+
+  cold  a fresh `java ... Main` process per run, so JVM startup and warmup
+        are included, like running a script from the command line.
+  warm  one JVM running the program repeatedly (see SteadyState.java); the
+        first --warmup runs are thrown away and the rest are reported.
+
+Cold runs also check the program's output against benchmarks/expected/.
+Results go to stdout (or --output) as JSON. If a baseline file exists, each
+timing is compared against it and a summary is printed to stderr.
+
+Build first with `mvn -B package`, then from the repository root:
+
+    python3 benchmarks/run.py
+    python3 benchmarks/run.py --engines vm,nodes --only fib,richards
+    python3 benchmarks/run.py --save-baseline
+"""
+
+import argparse
+import glob
+import json
+import os
+import platform
+import statistics
+import subprocess
+import sys
+import time
+
+ROOT = os.path.dirname(os.path.dirname(os.path.abspath(__file__)))
+BENCH_DIR = os.path.join(ROOT, 'benchmarks')
+EXPECTED_DIR = os.path.join(BENCH_DIR, 'expected')
+DEFAULT_BASELINE = os.path.join(BENCH_DIR, 'baseline.json')
+ENGINES = ['vm', 'nodes', 'tree']
+
+
+def interpreter_jar():
+    jars = glob.glob(os.path.join(ROOT, 'interpreter', 'target', 'bluejay-*.jar'))
+    return jars[0] if jars else None
+
+
+def bench_jar():
+    jar = os.path.join(ROOT, 'bench', 'target', 'benchmarks.jar')
+    return jar if os.path.exists(jar) else None
+
+
+def git_commit():
+    try:
+        return subprocess.run(['git', 'rev-parse', '--short', 'HEAD'], cwd=ROOT,
+                              capture_output=True, text=True, check=True).stdout.strip()
+    except (OSError, subprocess.CalledProcessError):
+        return None
+
+
+def java_version():
+    try:
+        out = subprocess.run(['java', '-version'], capture_output=True, text=True).stderr
+        return out.splitlines()[0] if out else None
+    except OSError:
+        return None
+
+
+def run_cold(name, path, engine, runs, timeout):
+    expected_path = os.path.join(EXPECTED_DIR, name + '.out')
+    expected = open(expected_path).read() if os.path.exists(expected_path) else None
+    cmd = ['java', '-cp', interpreter_jar(), 'com.esjr.bluejay.Main', '--engine=' + engine, path]
+    times = []
+    for _ in range(runs):
+        start = time.perf_counter()
+        try:
+            proc = subprocess.run(cmd, capture_output=True, text=True, timeout=timeout)
+        except subprocess.TimeoutExpired:
+            return {'status': 'timeout', 'times_s': times}
+        elapsed = time.perf_counter() - start
+        if proc.returncode != 0:
+            return {'status': 'error', 'error': proc.stderr.strip()[-500:], 'times_s': times}
+        if expected is not None and proc.stdout != expected:
+            return {'status': 'wrong_output', 'output': proc.stdout[-500:], 'times_s': times}
+        times.append(round(elapsed, 4))
+    return {'status': 'ok', 'times_s': times, 'median_s': round(statistics.median(times), 4)}
+
+
+def run_warm(path, engine, warmup, iterations, timeout):
+    cmd = ['java', '-cp', bench_jar(), 'com.esjr.bluejay.SteadyState', '--engine=' + engine,
+           '--warmup=%d' % warmup, '--iterations=%d' % iterations, path]
+    try:
+        proc = subprocess.run(cmd, capture_output=True, text=True, timeout=timeout)
+    except subprocess.TimeoutExpired:
+        return {'status': 'timeout', 'times_ms': []}
+    try:
+        result = json.loads(proc.stdout.strip().splitlines()[-1])
+    except (ValueError, IndexError):
+        return {'status': 'error', 'error': (proc.stdout + proc.stderr).strip()[-500:], 'times_ms': []}
+    if result['error'] is not None:
+        return {'status': 'error', 'error': result['error'], 'times_ms': result['times_ms']}
+    times = result['times_ms']
+    return {'status': 'ok', 'times_ms': times, 'median_ms': round(statistics.median(times), 3)}
+
+
+def compare(results, baseline):
+    """Adds current/baseline ratios of the medians (below 1 is faster)."""
+    comparison = {}
+    for name, engines in results.items():
+        for engine, result in engines.items():
+            base = baseline.get('results', {}).get(name, {}).get(engine)
+            if base is None:
+                continue
+            ratios = {}
+            for kind, key in (('cold', 'median_s'), ('warm', 'median_ms')):
+                now, then = result[kind].get(key), base.get(kind, {}).get(key)
+                if now is not None and then:
+                    ratios[kind] = round(now / then, 3)
+            if ratios:
+                comparison.setdefault(name, {})[engine] = ratios
+    return comparison
+
+
+def print_summary(results, comparison, out):
+    print('%-15s %-6s %10s %10s %8s %8s' % ('benchmark', 'engine', 'cold s', 'warm ms', 'cold x', 'warm x'), file=out)
+    for name, engines in results.items():
+        for engine, result in engines.items():
+            cold, warm = result['cold'], result['warm']
+            ratios = comparison.get(name, {}).get(engine, {})
+            print('%-15s %-6s %10s %10s %8s %8s' % (
+                name, engine,
+                cold.get('median_s', cold['status']),
+                warm.get('median_ms', warm['status']),
+                ratios.get('cold', '-'), ratios.get('warm', '-')), file=out)
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__.split('\n')[0])
+    parser.add_argument('--engines', default=','.join(ENGINES), help='comma-separated engines (default: %(default)s)')
+    parser.add_argument('--only', help='comma-separated benchmark names (default: all)')
+    parser.add_argument('--cold-runs', type=int, default=3, help='fresh processes per benchmark (default: %(default)s)')
+    parser.add_argument('--warmup', type=int, default=3, help='discarded in-process runs (default: %(default)s)')
+    parser.add_argument('--iterations', type=int, default=5, help='measured in-process runs (default: %(default)s)')
+    parser.add_argument('--timeout', type=float, default=300, help='seconds before giving up on a process (default: %(default)s)')
+    parser.add_argument('--baseline', default=DEFAULT_BASELINE, help='results to compare against (default: benchmarks/baseline.json)')
+    parser.add_argument('--save-baseline', action='store_true', help='write the results to the baseline file')
+    parser.add_argument('--output', help='write the JSON here instead of stdout')
+    args = parser.parse_args()
+
+    if interpreter_jar() is None or bench_jar() is None:
+        sys.exit('Build the interpreter and benchmark jars first: mvn -B package')
+
+    names = sorted(os.path.splitext(os.path.basename(p))[0] for p in glob.glob(os.path.join(BENCH_DIR, '*.blu')))
+    if args.only:
+        wanted = args.only.split(',')
+        unknown = [n for n in wanted if n not in names]
+        if unknown:
+            sys.exit('Unknown benchmark(s): ' + ', '.join(unknown))
+        names = wanted
+    engines = args.engines.split(',')
+
+    results = {}
+    for name in names:
+        path = os.path.join(BENCH_DIR, name + '.blu')
+        for engine in engines:
+            print('%s [%s]...' % (name, engine), file=sys.stderr)
+            results.setdefault(name, {})[engine] = {
+                'cold': run_cold(name, path, engine, args.cold_runs, args.timeout),
+                'warm': run_warm(path, engine, args.warmup, args.iterations, args.timeout),
+            }
+
+    report = {
+        'meta': {
+            'commit': git_commit(),
+            'date': time.strftime('%Y-%m-%dT%H:%M:%S%z'),
+            'java': java_version(),
+            'machine': platform.machine(),
+            'cold_runs': args.cold_runs,
+            'warmup': args.warmup,
+            'iterations': args.iterations,
+        },
+        'results': results,
+    }
+
+    comparison = {}
+    if not args.save_baseline and os.path.exists(args.baseline):
+        with open(args.baseline) as f:
+            comparison = compare(results, json.load(f))
+        report['comparison'] = comparison
+    print_summary(results, comparison, sys.stderr)
+
+    text = json.dumps(report, indent=2)
+    failed = ['%s [%s] %s' % (name, engine, kind)
+              for name in results for engine in results[name]
+              for kind in ('cold', 'warm') if results[name][engine][kind]['status'] != 'ok']
+    if args.save_baseline and failed:
+        # A crash or a wrong answer is nothing to compare timings against.
+        sys.exit('Not saving a baseline with failures: ' + ', '.join(failed))
+    if args.save_baseline:
+        with open(args.baseline, 'w') as f:
+            f.write(text + '\n')
+    if args.output:
+        with open(args.output, 'w') as f:
+            f.write(text + '\n')
+    elif not args.save_baseline:
+        print(text)
+
+
+if __name__ == '__main__':
+    main()
@@ -1,11 +1,15 @@
 from pathlib import Path
 
-def define_type(base_name, class_name, field_list):
+def define_type(base_name, class_name, field_list, extra_list):
     fields = field_list.split(', ')
     params = field_defs = ''
     if fields[0]:
         params = '\n            '.join([f'this.{f} = {f};' for f in [f.split(' ')[1] for f in fields]])
         field_defs = '\n        '.join([f'public final {f};' for f in fields])
+    # Fields after a '|' aren't constructor parameters; later passes
+    # (like the Resolver) fill them in.
+    if extra_list:
+        field_defs += '\n        ' + '\n        '.join([f'{f};' for f in extra_list.split(', ')])
     return '\n    '+f'''
 
     static class {class_name} extends {base_name} {{
@@ -31,16 +35,19 @@ def define_visitor(base_name, types):
     res += '\n    }\n'
     return res
 
-def define_ast(base_name, types):
+def define_ast(base_name, types, members=''):
     res = 'package com.esjr.bluejay;\n\nimport java.util.*;\n\n'
     res += f'abstract class {base_name} {{'
+    if members:
+        res += '\n    ' + members.strip().replace('\n', '\n    ') + '\n'
 
     res += define_visitor(base_name, types)
 
     for type in types:
         class_name = type.split(':')[0].strip()
-        fields = type.split(':')[1].strip()
-        res += define_type(base_name, class_name, fields)
+        fields = type.split(':')[1].split('|')[0].strip()
+        extra = type.split('|')[1].strip() if '|' in type else ''
+        res += define_type(base_name, class_name, fields, extra)
 
     res += '\n    abstract <T> T accept(Visitor<T> visitor);'
 
@@ -61,16 +68,16 @@ class AstPrinter implements '''+', '.join(c[0]+'.Visitor<String>' for c in class
         ])+'\n        return null;\n    }')
         for s in c[1]:
             name = s.split(':')[0].strip()
-            atts = [a.strip().split(' ')[1].strip() for a in s.split(':')[1].split(', ')]
+            atts = [a.strip().split(' ')[1].strip() for a in s.split(':')[1].split('|')[0].split(', ')]
             mthds.append('    public String visit('+c[0]+'.'+name+' thing) {\n        return "'+c[0]+'.'+name+': '+'" + '+' + '.join('"'+a.upper()+'(" + visit(thing.'+a+') + "), "' for a in atts)[:-3]+';";\n    }')
     code += '\n\n'.join(mthds)+'\n}'
     with open('src/com/esjr/bluejay/AstPrinter.java','w') as f:
         f.write(code)
 
 expr = ("Expr", [
-    "Assign      : Token name, Token operator, Expr value",
-    "Get         : Expr expr, Token name",
-    "Set         : Expr expr, Token name, Token operator, Expr value",
+    "Assign      : Token name, Token operator, Expr value | int depth = GLOBAL, int slot, boolean captured",
+    "Get         : Expr expr, Token name | final InlineCache cache = new InlineCache()",
+    "Set         : Expr expr, Token name, Token operator, Expr value | final InlineCache cache = new InlineCache()",
     "Binary      : Expr left, Token operator, Expr right",
     "Call        : Expr callee, Token paren, List<Expr> arguments",
     "Dict        : List<Expr> keys, List<Expr> values",
@@ -78,27 +85,34 @@ expr = ("Expr", [
     "Index       : Expr expr, Expr index",
     "SetIndex    : Expr expr, Expr index, Token operator, Expr value",
     "ListLiteral : List<Expr> elements",
-    "Literal     : Value value",
+    "Literal     : Value value | Value constant",
     "Logical     : Expr left, Token operator, Expr right",
     "Unary       : Token operator, Expr right",
-    "Var         : Token name"
-])
+    "Var         : Token name | int depth = GLOBAL, int slot, boolean captured"
+], '''
+// Resolved depth (or declaration slot) of a name that isn't local to any
+// scope, i.e. one that lives in the globals.
+static final int GLOBAL = -1;
+// Resolved depth of a local of an enclosing function. The slot is then an
+// index into the closure of the function doing the lookup.
+static final int UPVALUE = -2;
+''')
 
 stmt = ("Stmt", [
-    "Block      : List<Stmt> statements",
+    "Block      : List<Stmt> statements | int scopeSize",
     "Break      : Token keyword, Expr value",
-    "Class      : Token name, Expr.Var inherits, List<Stmt> methods",
+    "Class      : Token name, Expr.Var inherits, List<Stmt> methods | int slot = Expr.GLOBAL, boolean captured",
     "Expression : Expr expression",
-    "Foreach    : Token loopVar, Expr iter, Stmt body",
-    "Function   : Token name, LinkedHashMap<Token,Object> parameters, Stmt body",
+    "Foreach    : Token loopVar, Expr iter, Stmt body | int scopeSize, boolean captured, Jit.Profile profile, final Jit.Loop loop = new Jit.Loop()",
+    "Function   : Token name, LinkedHashMap<Token,Object> parameters, Stmt body | int slot = Expr.GLOBAL, boolean captured, int scopeSize, int[] capturedParams, int[] upvalues, final Jit.Profile profile = new Jit.Profile()",
     "If         : Expr condition, Stmt thenBranch, Stmt elseBranch",
     "Import     : Token name, Token from",
-    "Method     : Token name, LinkedHashMap<Token,Object> parameters, Stmt body",
+    "Method     : Token name, LinkedHashMap<Token,Object> parameters, Stmt body | int scopeSize, int[] capturedParams, int[] upvalues, final Jit.Profile profile = new Jit.Profile()",
     "Print      : Expr expression",
-    "Repeat     : Token paren, Expr amount, Stmt body",
+    "Repeat     : Token paren, Expr amount, Stmt body | Jit.Profile profile, final Jit.Loop loop = new Jit.Loop()",
     "Return     : Token keyword, Expr value",
-    "Var        : Token name, Expr initializer",
-    "While      : Expr condition, Stmt body"
+    "Var        : Token name, Expr initializer | int slot = Expr.GLOBAL, boolean captured",
+    "While      : Expr condition, Stmt body | Stmt.Var counter, double step, boolean counterRead, Jit.Profile profile, final Jit.Loop loop = new Jit.Loop()"
 ])
 
 define_ast(*expr)
@@ -0,0 +1,219 @@
+package com.esjr.bluejay;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.jar.*;
+import java.util.stream.Stream;
+
+// Compiles a whole program to JVM classes ahead of time and packages them
+// with the runtime as an executable jar (see Bluejayc), so running it skips
+// scanning, parsing and resolving and starts out compiled instead of
+// waiting for the JIT to get to it.
+//
+// Every function and method body gets a class of its own, and the
+// top-level statements as few as they fit in. Everything those classes
+// refer to goes in program.bin, which AotProgram reads back when the jar
+// runs: the tokens errors point at, literal values, inline caches, and a
+// shell of each declaration with just what the runtime still looks at once
+// its body is compiled. The source goes in as program.blu, for error
+// messages.
+class AotCompiler {
+    // Anything bigger and a jump across the whole method wouldn't fit in
+    // the two bytes ClassAssembler gives it.
+    private static final int LIMIT = Short.MAX_VALUE;
+
+    // Tags for the entries in program.bin.
+    static final int TOKEN = 0, CACHE = 1, NUMBER = 2, STRING = 3, BOOLEAN = 4, PLAIN_BOOLEAN = 5,
+        NULL = 6, RETURN = 7, BREAK = 8, FUNCTION = 9, METHOD = 10, CLASS = 11, VALUES = 12;
+
+    private final JitCompiler.Constants constants = new JitCompiler.Constants();
+    private final Map<String, byte[]> classes = new LinkedHashMap<>();
+    // The class compiled from each function and method's body.
+    private final Map<Stmt, String> bodies = new IdentityHashMap<>();
+    private final List<String> script = new ArrayList<>();
+
+    // Throws JitCompiler.Unsupported if some part of the program is too
+    // big to compile.
+    void compile(List<Stmt> statements) {
+        segment(statements);
+        // Compiling a body adds the declarations in it to the constants, so
+        // this goes until it runs out of new ones.
+        for (int i = 0; i < constants.values.size(); i++) {
+            Object value = constants.values.get(i);
+            if (value instanceof Stmt.Function) {
+                Stmt.Function function = (Stmt.Function)value;
+                body(function, "function", function.name, function.body, function.scopeSize,
+                    function.parameters.size(), function.capturedParams);
+            } else if (value instanceof Stmt.Method) {
+                Stmt.Method method = (Stmt.Method)value;
+                body(method, "method", method.name, method.body, method.scopeSize,
+                    method.parameters.size() + 1, method.capturedParams);
+            }
+        }
+    }
+
+    // Compiles top-level statements into one class, or if they don't fit,
+    // each half into as few as they fit in.
+    private void segment(List<Stmt> statements) {
+        if (statements.isEmpty()) return;
+        String name = className("script");
+        try {
+            classes.put(name, new JitCompiler(constants, statements, 0, 0, new int[0], true).compile(name, LIMIT));
+            script.add(name);
+        } catch (JitCompiler.Unsupported e) {
+            if (statements.size() == 1) throw new JitCompiler.Unsupported("a top-level statement is too big to compile");
+            segment(statements.subList(0, statements.size() / 2));
+            segment(statements.subList(statements.size() / 2, statements.size()));
+        }
+    }
+
+    private void body(Stmt declaration, String kind, Token name, Stmt body, int scopeSize, int parameters, int[] capturedParams) {
+        String className = className(name.lexeme);
+        try {
+            JitCompiler compiler = new JitCompiler(constants, ((Stmt.Block)body).statements, scopeSize, parameters, capturedParams, false);
+            classes.put(className, compiler.compile(className, LIMIT));
+        } catch (JitCompiler.Unsupported e) {
+            throw new JitCompiler.Unsupported(kind + " " + name.lexeme + " is too big to compile");
+        }
+        bodies.put(declaration, className);
+    }
+
+    private String className(String name) {
+        return "com/esjr/bluejay/Aot$" + name.replaceAll("\\W", "_") + "$" + classes.size();
+    }
+
+    // Writes the jar: the compiled classes, program.bin and program.blu,
+    // and the runtime classes this is running from.
+    void write(Path jar, String source) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, AotProgram.class.getName());
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                add(out, entry.getKey() + ".class", entry.getValue());
+            }
+            add(out, "program.bin", program());
+            add(out, "program.blu", source.getBytes(StandardCharsets.UTF_8));
+            runtime(out);
+        }
+    }
+
+    private static void add(JarOutputStream out, String name, byte[] bytes) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    private static void runtime(JarOutputStream out) throws IOException {
+        Path location;
+        try {
+            location = Paths.get(Bluejay.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Can't find the Bluejay runtime.", e);
+        }
+        if (Files.isDirectory(location)) {
+            Path root = location.resolve("com/esjr/bluejay");
+            try (Stream<Path> files = Files.list(root)) {
+                for (Path file : (Iterable<Path>)files.sorted()::iterator) {
+                    if (file.toString().endsWith(".class")) {
+                        add(out, "com/esjr/bluejay/" + file.getFileName(), Files.readAllBytes(file));
+                    }
+                }
+            }
+            return;
+        }
+        try (JarFile runtime = new JarFile(location.toFile())) {
+            for (JarEntry entry : Collections.list(runtime.entries())) {
+                if (entry.getName().startsWith("com/esjr/bluejay/") && entry.getName().endsWith(".class")) {
+                    try (InputStream in = runtime.getInputStream(entry)) {
+                        add(out, entry.getName(), in.readAllBytes());
+                    }
+                }
+            }
+        }
+    }
+
+    // program.bin: the classes of the top-level statements in order, then
+    // the constants they all share.
+    private byte[] program() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(script.size());
+        for (String name : script) string(out, name);
+        out.writeInt(constants.values.size());
+        for (Object value : constants.values) constant(out, value);
+        return bytes.toByteArray();
+    }
+
+    private void constant(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Token) {
+            out.writeByte(TOKEN);
+            token(out, (Token)value);
+        } else if (value instanceof InlineCache) {
+            out.writeByte(CACHE);
+        } else if (value instanceof NativeNumber) {
+            out.writeByte(NUMBER);
+            out.writeDouble(((NativeNumber)value).value);
+        } else if (value instanceof NativeString) {
+            out.writeByte(STRING);
+            string(out, ((NativeString)value).value);
+        } else if (value instanceof NativeBoolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(((NativeBoolean)value).value);
+        } else if (value instanceof Value.BluejayBoolean) {
+            out.writeByte(PLAIN_BOOLEAN);
+            out.writeBoolean(((Value.BluejayBoolean)value).value);
+        } else if (value == Builtins.nullValue) {
+            out.writeByte(NULL);
+        } else if (value instanceof Value[]) {
+            // The literal elements of a list or dict (see JitCompiler.elements).
+            Value[] values = (Value[])value;
+            out.writeByte(VALUES);
+            out.writeInt(values.length);
+            for (Value element : values) constant(out, element);
+        } else if (value instanceof Stmt.Return) {
+            out.writeByte(RETURN);
+            token(out, ((Stmt.Return)value).keyword);
+        } else if (value instanceof Stmt.Break) {
+            out.writeByte(BREAK);
+            token(out, ((Stmt.Break)value).keyword);
+        } else if (value instanceof Stmt.Function) {
+            Stmt.Function function = (Stmt.Function)value;
+            out.writeByte(FUNCTION);
+            declaration(out, function.name, function.parameters.keySet(), function.scopeSize, bodies.get(function));
+        } else if (value instanceof Stmt.Method) {
+            Stmt.Method method = (Stmt.Method)value;
+            out.writeByte(METHOD);
+            declaration(out, method.name, method.parameters.keySet(), method.scopeSize, bodies.get(method));
+        } else if (value instanceof Stmt.Class) {
+            out.writeByte(CLASS);
+            token(out, ((Stmt.Class)value).name);
+        } else {
+            throw new IllegalStateException("Can't write out a " + value.getClass().getSimpleName() + ".");
+        }
+    }
+
+    private static void declaration(DataOutputStream out, Token name, Set<Token> parameters, int scopeSize, String body) throws IOException {
+        token(out, name);
+        out.writeInt(parameters.size());
+        for (Token parameter : parameters) token(out, parameter);
+        out.writeInt(scopeSize);
+        string(out, body);
+    }
+
+    private static void token(DataOutputStream out, Token token) throws IOException {
+        string(out, token.type.name());
+        string(out, token.lexeme);
+        out.writeInt(token.pos);
+    }
+
+    // writeUTF() can't do more than 64K, which a string literal might be.
+    static void string(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,111 @@
+package com.esjr.bluejay;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// The entry point of a jar made by Bluejayc. Reads back the constants
+// AotCompiler wrote to program.bin, gives every declaration the compiled
+// class for its body, and runs the top-level statements the way
+// Interpreter.interpret would.
+public class AotProgram {
+    public static void main(String[] args) throws IOException, ReflectiveOperationException {
+        Bluejay.source = new String(resource("program.blu"), StandardCharsets.UTF_8);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(resource("program.bin")));
+
+        String[] script = new String[in.readInt()];
+        for (int i = 0; i < script.length; i++) script[i] = string(in);
+        Object[] constants = new Object[in.readInt()];
+        Map<Jit.Profile, String> bodies = new LinkedHashMap<>();
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = constant(in, bodies);
+        }
+        for (Map.Entry<Jit.Profile, String> body : bodies.entrySet()) {
+            body.getKey().code = load(body.getValue(), constants);
+        }
+
+        Interpreter interpreter = new Interpreter();
+        try {
+            for (String name : script) {
+                try {
+                    load(name, constants).run(interpreter, Builtins.globals);
+                } catch (Interpreter.Break b) {
+                    throw new RuntimeError(b.statement.keyword, "Break outside of loop.");
+                } catch (Interpreter.Return r) {
+                    throw new RuntimeError(r.statement.keyword, "Return outside of function or method.");
+                }
+            }
+        } catch (RuntimeError error) {
+            Bluejay.runtimeError(error);
+        }
+        if (Bluejay.hadRuntimeError) System.exit(70);
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream in = AotProgram.class.getResourceAsStream("/" + name)) {
+            if (in == null) throw new FileNotFoundException(name + " is missing from the jar.");
+            return in.readAllBytes();
+        }
+    }
+
+    private static JitCode load(String name, Object[] constants) throws ReflectiveOperationException {
+        Class<?> code = Class.forName(name.replace('/', '.'));
+        return (JitCode)code.getDeclaredConstructor(Object[].class).newInstance((Object)constants);
+    }
+
+    private static Object constant(DataInputStream in, Map<Jit.Profile, String> bodies) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+            case AotCompiler.TOKEN: return token(in);
+            case AotCompiler.CACHE: return new InlineCache();
+            case AotCompiler.NUMBER: return Builtins.makeNumberValue(in.readDouble());
+            // Not makeStringValue, whose escapes were already dealt with.
+            case AotCompiler.STRING: return new NativeString(string(in));
+            case AotCompiler.BOOLEAN: return Builtins.makeBooleanValue(in.readBoolean());
+            case AotCompiler.PLAIN_BOOLEAN: return new Value.BluejayBoolean(in.readBoolean());
+            case AotCompiler.NULL: return Builtins.nullValue;
+            case AotCompiler.VALUES: {
+                Value[] values = new Value[in.readInt()];
+                for (int i = 0; i < values.length; i++) values[i] = (Value)constant(in, bodies);
+                return values;
+            }
+            case AotCompiler.RETURN: return new Stmt.Return(token(in), null);
+            case AotCompiler.BREAK: return new Stmt.Break(token(in), null);
+            case AotCompiler.FUNCTION: {
+                Token name = token(in);
+                Stmt.Function function = new Stmt.Function(name, parameters(in), null);
+                function.scopeSize = in.readInt();
+                bodies.put(function.profile, string(in));
+                return function;
+            }
+            case AotCompiler.METHOD: {
+                Token name = token(in);
+                Stmt.Method method = new Stmt.Method(name, parameters(in), null);
+                method.scopeSize = in.readInt();
+                bodies.put(method.profile, string(in));
+                return method;
+            }
+            case AotCompiler.CLASS: return new Stmt.Class(token(in), null, new ArrayList<>());
+            default: throw new IOException("Unknown constant " + tag + " in program.bin.");
+        }
+    }
+
+    private static LinkedHashMap<Token, Object> parameters(DataInputStream in) throws IOException {
+        LinkedHashMap<Token, Object> parameters = new LinkedHashMap<>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) parameters.put(token(in), null);
+        return parameters;
+    }
+
+    private static Token token(DataInputStream in) throws IOException {
+        TokenType type = TokenType.valueOf(string(in));
+        String lexeme = string(in);
+        return new Token(type, lexeme, null, in.readInt());
+    }
+
+    private static String string(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -9,7 +9,13 @@ import java.nio.file.Paths;
 import java.util.List;
 
 public class Bluejay {
-    private static String source;
+    enum Engine { VM, NODES, TREE }
+
+    static String source;
+    static Engine engine = Engine.VM;
+    static boolean optimize = true;
+    static boolean jit = true;
+    static boolean jitLog = false;
     static boolean hadError = false;
     static boolean hadRuntimeError = false;
 
@@ -47,12 +53,38 @@ public class Bluejay {
         }
     }
 
-    private static void run(String src) {
+    static void run(String src) {
+        List<Stmt> stmts = parse(src);
+        if (stmts == null) return;
+
+        if (engine == Engine.TREE) {
+            new Interpreter().interpret(stmts);
+            return;
+        }
+
+        if (engine == Engine.NODES) {
+            new NodeCompiler().compile(stmts).run(new Interpreter());
+            return;
+        }
+
+        FunctionProto script = new Compiler().compile(stmts);
+        if (script == null) return;
+        new VM().interpret(script);
+
+        // AstPrinter printer = new AstPrinter();
+        // for (Stmt stmt : stmts) {
+        //     System.out.println(printer.visit(stmt));
+        // }
+    }
+
+    // Scans, parses, optimizes and resolves a program, ready for any of the
+    // engines (or AotCompiler). Returns null if there was an error.
+    static List<Stmt> parse(String src) {
         source = src;
         Scanner scanner = new Scanner(src);
         List<Token> tokens = scanner.scanTokens();
 
-        if (hadError || tokens.size() <= 0) return;
+        if (hadError || tokens.size() <= 0) return null;
 
         // for (Token t : tokens) {
         //     System.out.println(t.toString());
@@ -66,20 +98,15 @@ public class Bluejay {
         //     System.out.println(printer.visit(stmt));
         // }
 
-        if (hadError) return;
-
-        Interpreter interpreter = new Interpreter();
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(stmts);
+        if (hadError) return null;
 
-        if (hadError) return;
+        if (optimize) stmts = new Optimizer().optimize(stmts);
 
-        interpreter.interpret(stmts);
+        Resolver resolver = new Resolver();
+        resolver.resolve(stmts);
 
-        // AstPrinter printer = new AstPrinter();
-        // for (Stmt stmt : stmts) {
-        //     System.out.println(printer.visit(stmt));
-        // }
+        if (hadError) return null;
+        return stmts;
     }
 
     static void error(int pos, String message) {
@@ -7,7 +7,28 @@ class BluejayClass extends Value implements BluejayCallable {
     public String name;
     public final BluejayClass inherits;
     public final Map<String, Value> statics = new HashMap<>();
+    // The statics together with everything inherited that they don't
+    // override, so that looking a name up never walks up the chain.
+    private final Map<String, Value> table;
+    // The classes inheriting from this one, for classes whose statics can
+    // still change after subclasses exist (NativeClass and its descendants)
+    // and so have to pass new entries down. Null for the rest.
+    List<BluejayClass> subclasses;
+    // Where this class's instances start out (see Shape).
+    final Shape rootShape = new Shape();
+    // Bumped whenever the statics of an existing class change (only
+    // NativeClass.addStatic does that), which tells every InlineCache that
+    // what it remembers may be stale. Making a class doesn't bump it: cache
+    // entries are keyed by the receiver's class or shape, so a new class
+    // has none to make stale.
+    static int epoch = 0;
     BluejayClass(Stmt.Class declaration, BluejayClass inherits) {
+        this(declaration, inherits, null);
+    }
+
+    // Lets an engine supply its own method objects (e.g. the VM's compiled
+    // methods) instead of building tree-walking ones from the declaration.
+    BluejayClass(Stmt.Class declaration, BluejayClass inherits, Map<String, Value> methods) {
         this.declaration = declaration;
         name = (declaration != null) ? declaration.name.lexeme : null;
         this.inherits = inherits;
@@ -17,25 +38,38 @@ class BluejayClass extends Value implements BluejayCallable {
         // } else {
         //     initializer = null;
         // }
-        if (declaration != null) {
+        if (methods != null) {
+            statics.putAll(methods);
+        } else if (declaration != null) {
             for (Stmt mthd : declaration.methods) {
                 statics.put(((Stmt.Method)mthd).name.lexeme, new BluejayMethod((Stmt.Method)mthd));
             }
         }
+        table = inherits != null ? new HashMap<>(inherits.table) : new HashMap<>();
+        table.putAll(statics);
+        if (inherits != null && inherits.subclasses != null) {
+            subclasses = new ArrayList<>();
+            inherits.subclasses.add(this);
+        }
     }
 
     public Value getStatic(String name) {
-        if (statics.containsKey(name)) return statics.get(name);
-        if (inherits != null) {
-            Value v = inherits.getStatic(name);
-            if (v != null) return v;
+        return table.get(name);
+    }
+
+    // Adds an entry to this class's table and to those of its subclasses
+    // that don't define the name themselves.
+    void inherit(String name, Value v) {
+        table.put(name, v);
+        if (subclasses == null) return;
+        for (BluejayClass subclass : subclasses) {
+            if (!subclass.statics.containsKey(name)) subclass.inherit(name, v);
         }
-        return null;
     }
 
     public int arity() {
-        if (!(statics.containsKey(name))) return 0;
         Value possibleInit = statics.get(name);
+        if (possibleInit == null) return 0;
         if (!(possibleInit instanceof BluejayMethod)) throw new RuntimeError("The attribute name '"+name+"' is reserved for the initializer of "+name);
         return ((BluejayMethod)possibleInit).arity();
     }
@@ -49,10 +83,10 @@ class BluejayClass extends Value implements BluejayCallable {
 
     public Value call(Interpreter interpreter, List<Value> arguments) {
         BluejayObj obj = new BluejayObj(this);
-        if (statics.containsKey(name)) {
-            Value possibleInit = statics.get(name);
+        Value possibleInit = statics.get(name);
+        if (possibleInit != null) {
             if (!(possibleInit instanceof BluejayMethod)) throw new RuntimeError("The attribute name '"+name+"' is reserved for the initializer of "+name);
-            ((BluejayMethod)possibleInit).call(interpreter, arguments, obj);
+            ((BluejayMethod)possibleInit).initialize(interpreter, arguments, obj);
         }
         return obj;
     }
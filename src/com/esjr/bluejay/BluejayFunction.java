@@ -3,13 +3,25 @@ package com.esjr.bluejay;
 import java.util.*;
 
 class BluejayFunction extends Value implements BluejayCallable {
-    private final Stmt.Function declaration;
+    final Stmt.Function declaration;
+    final int arity;
+    final Cell[] closure;
+    // Functions with no parameters or locals keep nothing in their
+    // environment, so every call can share one.
+    private final Environment empty;
     BluejayFunction(Stmt.Function declaration) {
+        this(declaration, Cell.NONE);
+    }
+
+    BluejayFunction(Stmt.Function declaration, Cell[] closure) {
         this.declaration = declaration;
+        arity = declaration.parameters.size();
+        this.closure = closure;
+        empty = declaration.scopeSize == 0 ? new Environment(closure, 0) : null;
     }
 
     public int arity() {
-        return declaration.parameters.size();
+        return arity;
     }
 
     public String toString(Interpreter i) {
@@ -20,16 +32,42 @@ class BluejayFunction extends Value implements BluejayCallable {
     }
 
     public Value call(Interpreter interpreter, List<Value> arguments) {
-        Environment environment = new Environment(interpreter.environment);
-        for (int i = 0; i < declaration.parameters.size(); i++) {
-            environment.define(((Token)(declaration.parameters.keySet().toArray()[i])).lexeme, arguments.get(i));
+        Environment environment = frame();
+        for (int i = 0; i < arity; i++) {
+            environment.define(i, arguments.get(i));
+        }
+        return run(interpreter, environment);
+    }
+
+    // The environment for one call. Parameters go in slots 0 to arity-1;
+    // the interpreter fills those in as it evaluates the arguments, so it
+    // doesn't have to collect them into a list first.
+    Environment frame() {
+        if (empty != null) return empty;
+        return new Environment(closure, declaration.scopeSize);
+    }
+
+    // Runs the body in a frame, compiled once it's hot enough (see Jit).
+    Value run(Interpreter interpreter, Environment environment) {
+        Jit.Profile profile = declaration.profile;
+        JitCode code = profile.code;
+        if (code == null && ++profile.hotness >= Jit.THRESHOLD) {
+            code = Jit.compile(profile, "function", declaration.name, (Stmt.Block)declaration.body,
+                declaration.scopeSize, arity, declaration.capturedParams);
         }
+        if (code == null) return execute(interpreter, environment);
+        Value value = code.run(interpreter, environment);
+        return value == JitCode.END ? Builtins.nullValue : value;
+    }
 
+    // Runs the body in the interpreter.
+    Value execute(Interpreter interpreter, Environment environment) {
+        environment.box(declaration.capturedParams);
         try {
             interpreter.executeBlock(((Stmt.Block)declaration.body).statements, environment);
         } catch (Interpreter.Return r) {
             return r.value;
         }
-        return new Value.Null();
+        return Builtins.nullValue;
     }
 }
\ No newline at end of file
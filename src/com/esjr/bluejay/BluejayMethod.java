@@ -4,12 +4,20 @@ import java.util.List;
 
 class BluejayMethod extends Value {
     final Stmt.Method declaration;
+    final int arity;
+    final Cell[] closure;
     BluejayMethod(Stmt.Method declaration) {
+        this(declaration, Cell.NONE);
+    }
+
+    BluejayMethod(Stmt.Method declaration, Cell[] closure) {
         this.declaration = declaration;
+        arity = declaration.parameters.size();
+        this.closure = closure;
     }
 
     public int arity() {
-        return declaration.parameters.size();
+        return arity;
     }
 
     public String toString(Interpreter i) {
@@ -20,13 +28,68 @@ class BluejayMethod extends Value {
     }
 
     public Value call(Interpreter interpreter, List<Value> arguments, Value object) {
-        Environment environment = new Environment(interpreter.environment);
-        environment.define("this", object);
-        for (int i = 0; i < declaration.parameters.size(); i++) {
-            environment.define(((Token)(declaration.parameters.keySet().toArray()[i])).lexeme, arguments.get(i));
+        return result(interpreter, arguments(arguments, object));
+    }
+
+    // Runs the method as the initializer of object. A return statement
+    // escapes as an Interpreter.Return, like it does from the
+    // interpreter, which is how its value gets past BluejayClass.call.
+    void initialize(Interpreter interpreter, List<Value> arguments, Value object) {
+        Environment environment = arguments(arguments, object);
+        JitCode code = compiled();
+        if (code == null) {
+            execute(interpreter, environment);
+            return;
         }
+        Value value = code.run(interpreter, environment);
+        if (value != JitCode.END) throw new Interpreter.Return(value, code.returned);
+    }
+
+    private Environment arguments(List<Value> arguments, Value object) {
+        Environment environment = frame(object);
+        for (int i = 0; i < arity; i++) {
+            environment.define(i + 1, arguments.get(i));
+        }
+        return environment;
+    }
+
+    // Like BluejayFunction.frame, with `this` in slot 0 and the parameters
+    // after it.
+    Environment frame(Value object) {
+        Environment environment = new Environment(closure, declaration.scopeSize);
+        environment.define(0, object);
+        return environment;
+    }
+
+    // Runs the body and gives the value of its return statement, or null.
+    Value result(Interpreter interpreter, Environment environment) {
+        JitCode code = compiled();
+        if (code == null) {
+            try {
+                return execute(interpreter, environment);
+            } catch (Interpreter.Return r) {
+                return r.value;
+            }
+        }
+        Value value = code.run(interpreter, environment);
+        return value == JitCode.END ? Builtins.nullValue : value;
+    }
+
+    // The compiled body, if it's been compiled (see Jit).
+    private JitCode compiled() {
+        Jit.Profile profile = declaration.profile;
+        if (profile.code == null && ++profile.hotness >= Jit.THRESHOLD) {
+            return Jit.compile(profile, "method", declaration.name, (Stmt.Block)declaration.body,
+                declaration.scopeSize, arity + 1, declaration.capturedParams);
+        }
+        return profile.code;
+    }
+
+    // Runs the body in the interpreter.
+    Value execute(Interpreter interpreter, Environment environment) {
+        environment.box(declaration.capturedParams);
         interpreter.executeBlock(((Stmt.Block)declaration.body).statements, environment);
-        return new Value.Null();
+        return Builtins.nullValue;
     }
 
     public Value register(BluejayObj obj) {
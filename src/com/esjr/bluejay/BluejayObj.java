@@ -4,17 +4,47 @@ import java.util.*;
 
 class BluejayObj extends Value {
     public final BluejayClass class_;
-    public final Environment attributes = new Environment();
-    public final Map<String, Object> specialAttrs = new HashMap<>();
+    // The object's attributes, stored in 'fields' at the slots its shape
+    // gives them. The array can be longer than the shape is.
+    Shape shape;
+    Value[] fields;
     BluejayObj(BluejayClass class_) {
+        this(class_, class_.rootShape);
+    }
+
+    // Built-in values (NativeNumber, NativeString, ...) keep their state in
+    // Java fields and pass null. They get their class's root shape the first
+    // time an attribute is set on them, except numbers and booleans, which
+    // are shared and can't have any.
+    BluejayObj(BluejayClass class_, Shape shape) {
         this.class_ = class_;
+        this.shape = shape;
+        this.fields = shape != null ? new Value[shape.capacity()] : null;
     }
 
     public Value getAttr(Interpreter i, Token attr) {
+        return getAttr(i, attr, null);
+    }
+
+    public Value getAttr(Interpreter i, Token attr, InlineCache cache) {
+        return bind(findAttr(attr, cache));
+    }
+
+    // Looks an attribute up without binding methods to this object, for
+    // callers that are about to call them with this object as the receiver.
+    Value findAttr(Token attr, InlineCache cache) {
         Value res;
-        if (attributes.values.containsKey(attr.lexeme)) res = attributes.values.get(attr.lexeme);
-        else res = class_.getStatic(attr.lexeme);
+        if (cache != null) {
+            res = cache.lookup(this, attr.lexeme);
+        } else {
+            int slot = shape != null ? shape.slot(attr.lexeme) : -1;
+            res = slot >= 0 ? fields[slot] : class_.getStatic(attr.lexeme);
+        }
         if (res == null) throw new RuntimeError.AttributeError(attr, "Undefined attribute '"+attr.lexeme+"' of "+class_.name+" object");
+        return res;
+    }
+
+    Value bind(Value res) {
         if (res instanceof BluejayMethod) {
             return ((BluejayMethod)res).register(this);
         }
@@ -25,15 +55,38 @@ class BluejayObj extends Value {
     }
 
     public void setAttr(Interpreter i, String attr, Token operator, Value v) {
-        if (attributes.values.containsKey(attr)) {
-            attributes.assignStr(i, attr, operator, v);
-        } else {
-            if (operator.type != TokenType.EQUAL)
-                throw new RuntimeError.AttributeError(operator, "Cannot assign to undefined attribute '"+attr+"' of "+class_.name+" object");
-            attributes.define(attr, v);
+        setAttr(i, attr, operator, v, null);
+    }
+
+    public void setAttr(Interpreter i, String attr, Token operator, Value v, InlineCache cache) {
+        if (shape == null) {
+            shape = class_.rootShape;
+            fields = new Value[shape.capacity()];
+        }
+        boolean add = operator.type == TokenType.EQUAL;
+        int slot = cache != null ? cache.slot(this, attr, add) : slot(attr, add);
+        if (slot < 0) throw new RuntimeError.AttributeError(operator, "Cannot assign to undefined attribute '"+attr+"' of "+class_.name+" object");
+        fields[slot] = add ? v : Environment.operate(i, operator, fields[slot], v);
+    }
+
+    // The slot 'attr' is stored in, or -1 if this object doesn't have it.
+    // With 'add' set, a missing attribute is added first.
+    int slot(String attr, boolean add) {
+        int slot = shape.slot(attr);
+        if (slot < 0 && add) {
+            slot = shape.size;
+            reshape(shape.add(attr));
         }
+        return slot;
+    }
+
+    void reshape(Shape next) {
+        if (next.size > fields.length) fields = Arrays.copyOf(fields, Math.max(next.size, next.capacity()));
+        shape = next;
     }
 
+    // The built-in classes override these with direct fast paths; everything
+    // else goes through the class's $-methods.
     public String toString(Interpreter i) {
         Value maybeStr = class_.getStatic("$str");
         if (maybeStr != null) {
@@ -44,8 +97,8 @@ class BluejayObj extends Value {
                 } catch (Interpreter.Return r) {
                     res = r.value;
                 }
-                if (res instanceof BluejayObj && ((BluejayObj)res).class_ == Builtins.stringClass) {
-                    res = new Value.BluejayString((String)((BluejayObj)res).specialAttrs.get("value"));
+                if (res instanceof NativeString) {
+                    res = new Value.BluejayString(((NativeString)res).value);
                 }
                 if (!(res instanceof Value.BluejayString)) throw new RuntimeError.TypeError("The '$str' method must return a string.");
                 else return ((Value.BluejayString)res).value;
@@ -75,8 +128,8 @@ class BluejayObj extends Value {
                 } catch (Interpreter.Return r) {
                     res = r.value;
                 }
-                if (res instanceof BluejayObj && ((BluejayObj)res).class_ == Builtins.numberClass) {
-                    res = new Value.Number((double)((BluejayObj)res).specialAttrs.get("value"));
+                if (res instanceof NativeNumber) {
+                    res = new Value.Number(((NativeNumber)res).value);
                 }
                 if (!(res instanceof Value.Number)) throw new RuntimeError.TypeError("The '$num' method must return a number.");
                 else return ((Value.Number)res).value;
@@ -87,8 +140,8 @@ class BluejayObj extends Value {
                 } catch (Interpreter.Return r) {
                     res = r.value;
                 }
-                if (res instanceof BluejayObj && ((BluejayObj)res).class_ == Builtins.numberClass) {
-                    res = new Value.Number((double)((BluejayObj)res).specialAttrs.get("value"));
+                if (res instanceof NativeNumber) {
+                    res = new Value.Number(((NativeNumber)res).value);
                 }
                 if (!(res instanceof Value.Number)) throw new RuntimeError.TypeError("The '$num' method must return a number.");
                 else return ((Value.Number)res).value;
@@ -109,9 +162,7 @@ class BluejayObj extends Value {
                 } catch (Interpreter.Return r) {
                     res = r.value;
                 }
-                if (res instanceof BluejayObj && ((BluejayObj)res).class_ == Builtins.booleanClass) {
-                    res = new Value.BluejayBoolean((boolean)((BluejayObj)res).specialAttrs.get("value"));
-                }
+                if (res instanceof NativeBoolean) return ((NativeBoolean)res).value;
                 if (!(res instanceof Value.BluejayBoolean)) throw new RuntimeError.TypeError("The '$bool' method must return a boolean.");
                 else return ((Value.BluejayBoolean)res).value;
             } else if (maybeBool instanceof NativeMethod) {
@@ -121,9 +172,7 @@ class BluejayObj extends Value {
                 } catch (Interpreter.Return r) {
                     res = r.value;
                 }
-                if (res instanceof BluejayObj && ((BluejayObj)res).class_ == Builtins.booleanClass) {
-                    res = new Value.BluejayBoolean((boolean)((BluejayObj)res).specialAttrs.get("value"));
-                }
+                if (res instanceof NativeBoolean) return ((NativeBoolean)res).value;
                 if (!(res instanceof Value.BluejayBoolean)) throw new RuntimeError.TypeError("The '$bool' method must return a boolean.");
                 else return ((Value.BluejayBoolean)res).value;
             } else {
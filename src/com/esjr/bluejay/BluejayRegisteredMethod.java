@@ -5,13 +5,11 @@ import java.util.*;
 class BluejayRegisteredMethod extends BluejayMethod implements BluejayCallable {
     final BluejayMethod method;
     final Value obj;
-    final int arity;
     
     BluejayRegisteredMethod(BluejayMethod method, Value obj) {
-        super(method.declaration);
+        super(method.declaration, method.closure);
         this.method = method;
         this.obj = obj;
-        arity = method.arity();
     }
 
     public int arity() {
@@ -19,6 +17,10 @@ class BluejayRegisteredMethod extends BluejayMethod implements BluejayCallable {
     }
     
     public Value call(Interpreter interpreter, List<Value> arguments) {
-        return super.call(interpreter, arguments, obj);
+        return method.call(interpreter, arguments, obj);
+    }
+
+    public Value call(Interpreter interpreter, List<Value> arguments, Value object) {
+        return method.call(interpreter, arguments, object);
     }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.esjr.bluejay;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class Bluejayc {
+    public static void main(String[] args) {
+        String file = null;
+        String output = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--no-optimize")) {
+                Bluejay.optimize = false;
+            } else if (arg.equals("-o") && i + 1 < args.length) {
+                output = args[++i];
+            } else if (arg.startsWith("-") || file != null) {
+                usage();
+                return;
+            } else {
+                file = arg;
+            }
+        }
+        if (file == null) {
+            usage();
+            return;
+        }
+        if (output == null) output = (file.endsWith(".blu") ? file.substring(0, file.length() - 4) : file) + ".jar";
+
+        String source;
+        try {
+            source = new String(Files.readAllBytes(Paths.get(file)), Charset.defaultCharset());
+        } catch (IOException e) {
+            System.out.println("No such file or directory.");
+            System.exit(66);
+            return;
+        }
+        List<Stmt> stmts = Bluejay.parse(source);
+        if (stmts == null) System.exit(65);
+
+        AotCompiler compiler = new AotCompiler();
+        try {
+            compiler.compile(stmts);
+        } catch (JitCompiler.Unsupported e) {
+            System.err.println(AnsiColors.RED + "CompileError: " + e.getMessage() + "." + AnsiColors.RESET);
+            System.exit(65);
+        }
+        try {
+            compiler.write(Paths.get(output), source);
+        } catch (IOException e) {
+            System.err.println(AnsiColors.RED + "Couldn't write " + output + ": " + e.getMessage() + AnsiColors.RESET);
+            System.exit(74);
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: bluejayc [options] file");
+        System.out.println();
+        System.out.println("Compiles a Bluejay file to an executable jar, run with java -jar.");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println("  -o <jar>        Where to write the jar (the file's name with .jar by default).");
+        System.out.println("  --no-optimize   Compile the program as written, without folding constants first.");
+        System.exit(64);
+    }
+}
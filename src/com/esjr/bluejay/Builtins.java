@@ -11,6 +11,13 @@ class Builtins {
     public static NativeClass stringClass;
     public static NativeClass numberClass;
     public static NativeClass booleanClass;
+    public static final Value.Null nullValue = new Value.Null();
+    // Shared instances, made once the classes above exist.
+    public static NativeBoolean trueValue;
+    public static NativeBoolean falseValue;
+    private static final int SMALL_MIN = -128;
+    private static final int SMALL_MAX = 1023;
+    private static final NativeNumber[] smallNumbers = new NativeNumber[SMALL_MAX - SMALL_MIN + 1];
     static {
         // print function
         globals.define("print", new NativeFunction(1, "print") {
@@ -20,7 +27,7 @@ class Builtins {
                     out.add(v.toString(interpreter));
                 }
                 System.out.println(String.join(" ", out));
-                return new Value.Null();
+                return Builtins.nullValue;
             }
         });
 
@@ -31,52 +38,52 @@ class Builtins {
                     InputStreamReader input = new InputStreamReader(System.in);
                     BufferedReader reader = new BufferedReader(input);
                     String prompt;
-                    if (!(arguments.get(0) instanceof BluejayObj) || ((BluejayObj)arguments.get(0)).class_ != stringClass) {
+                    if (!(arguments.get(0) instanceof NativeString)) {
                         throw new RuntimeError.TypeError("Prompt must be a string.");
                     } else {
-                        prompt = (String)((BluejayObj)arguments.get(0)).specialAttrs.get("value");
+                        prompt = ((NativeString)arguments.get(0)).value;
                     }
                     System.out.print(prompt);
                     String line = reader.readLine();
-                    return makeStringValue(interpreter, line);
+                    return makeStringValue(line);
                 } catch (IOException e) {
-                    return new Value.Null();
+                    return Builtins.nullValue;
                 }
             }
         });
 
         // String class
-        stringClass = new NativeClass("String", null);
-        stringClass.addStatic("String", new NativeMethod(1, "String") {
-            public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                object.specialAttrs.put("value", arguments.get(0).toString(interpreter)
-                    .replace("\\n", "\n")
-                    .replace("\\t", "\t")
-                    .replace("\\r", "\r")
-                );
-                return new Value.Null();
+        // Strings, booleans and lists are NativeStrings, NativeBooleans and
+        // NativeLists, made by their classes directly like numbers are.
+        stringClass = new NativeClass("String", null) {
+            public int arity() {
+                return 1;
             }
-        });
+
+            public Value call(Interpreter interpreter, List<Value> arguments) {
+                return makeStringValue(arguments.get(0).toString(interpreter));
+            }
+        };
         stringClass.addStatic("replace", new NativeMethod(2, "replace") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
                 String replace;
-                if (!(arguments.get(0) instanceof BluejayObj) || ((BluejayObj)arguments.get(0)).class_ != stringClass) {
+                if (!(arguments.get(0) instanceof NativeString)) {
                     throw new RuntimeError.TypeError("Thing to replace must be a string.");
                 } else {
-                    replace = (String)((BluejayObj)arguments.get(0)).specialAttrs.get("value");
+                    replace = ((NativeString)arguments.get(0)).value;
                 }
                 String replaceWith;
-                if (!(arguments.get(1) instanceof BluejayObj) || ((BluejayObj)arguments.get(1)).class_ != stringClass) {
+                if (!(arguments.get(1) instanceof NativeString)) {
                     throw new RuntimeError.TypeError("Thing to replace with must be a string.");
                 } else {
-                    replaceWith = (String)((BluejayObj)arguments.get(1)).specialAttrs.get("value");
+                    replaceWith = ((NativeString)arguments.get(1)).value;
                 }
-                return makeStringValue(interpreter,((String)object.specialAttrs.get("value")).replace(replace, replaceWith));
+                return makeStringValue(((NativeString)object).value.replace(replace, replaceWith));
             }
         });
         stringClass.addStatic("sub", new NativeMethod(2, "sub") {
             public Value call(Interpreter interp, List<Value> arguments, BluejayObj object) {
-                String internalValue = (String)object.specialAttrs.get("value");
+                String internalValue = ((NativeString)object).value;
                 Value index1 = arguments.get(0);
                 Value index2 = arguments.get(1);
                 if (index1 instanceof BluejayObj && ((BluejayObj)index1).class_ == numberClass)
@@ -91,249 +98,221 @@ class Builtins {
                 if (i2 > internalValue.length()) throw new RuntimeError.TypeError("Second index beyond string length");
                 if (i1 > i2) throw new RuntimeError.TypeError("First index cannot be larger than second index");
                 String newSubString = internalValue.substring(i1, i2);
-                return makeStringValue(interp, newSubString);
+                return makeStringValue(newSubString);
             }
         });
         stringClass.addStatic("find", new NativeMethod(1, "find"){
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
                 String toFind;
-                if (!(arguments.get(0) instanceof BluejayObj) || ((BluejayObj)arguments.get(0)).class_ != stringClass) {
+                if (!(arguments.get(0) instanceof NativeString)) {
                     throw new RuntimeError.TypeError("Thing to find must be a string.");
                 } else {
-                    toFind = (String)((BluejayObj)arguments.get(0)).specialAttrs.get("value");
+                    toFind = ((NativeString)arguments.get(0)).value;
                 }
-                String internalValue = (String)object.specialAttrs.get("value");
+                String internalValue = ((NativeString)object).value;
                 int index = internalValue.indexOf(toFind);
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.Number(index));
-                return numberClass.call(interpreter, args);
+                return new NativeNumber(index);
             }
         });
         stringClass.addStatic("length", new NativeMethod(0, "length") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                List<Value> args = new ArrayList<>();
-                String internalValue = (String)object.specialAttrs.get("value");
-                args.add(new Value.Number(internalValue.length()));
-                return numberClass.call(interpreter, args);
+                String internalValue = ((NativeString)object).value;
+                return new NativeNumber(internalValue.length());
             }
         });
         stringClass.addStatic("$str", new NativeMethod(0, "$str") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                return new Value.BluejayString((String)object.specialAttrs.get("value"));
+                return new Value.BluejayString(((NativeString)object).value);
             }
         });
         stringClass.addStatic("$bool", new NativeMethod(0, "$bool") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                return new Value.BluejayBoolean(((String)object.specialAttrs.get("value")).length() > 0);
+                return makeBooleanValue(((NativeString)object).value.length() > 0);
             }
         });
         stringClass.addStatic("$num", new NativeMethod(0, "$num") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
                 try {
-                    return new Value.Number(Double.parseDouble((String)object.specialAttrs.get("value")));
+                    return new Value.Number(Double.parseDouble(((NativeString)object).value));
                 } catch (NumberFormatException e) {
-                    throw new RuntimeError.TypeError("Cannot convert string with literal '"+(String)object.specialAttrs.get("value")+"' to number");
+                    throw new RuntimeError.TypeError("Cannot convert string with literal '"+((NativeString)object).value+"' to number");
                 }
             }
         });
         stringClass.addStatic("$add", new NativeMethod(1, "$add") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                String value = (String)object.specialAttrs.get("value");
+                String value = ((NativeString)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != stringClass) {
+                if (!(otherObj instanceof NativeString)) {
                     throw new RuntimeError.TypeError("Cannot add string and "+interpreter.typeOf(otherObj));
                 }
-                String other = (String)((BluejayObj)otherObj).specialAttrs.get("value");
-                return makeStringValue(interpreter,value+other);
+                String other = ((NativeString)otherObj).value;
+                return makeStringValue(value+other);
             }
         });
         stringClass.addStatic("$eq", new NativeMethod(1, "$eq") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                String value = (String)object.specialAttrs.get("value");
+                String value = ((NativeString)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != stringClass) {
+                if (!(otherObj instanceof NativeString)) {
                     throw new RuntimeError.TypeError("Cannot compare string and "+interpreter.typeOf(otherObj));
                 }
-                String other = (String)((BluejayObj)otherObj).specialAttrs.get("value");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.BluejayBoolean(value.equals(other)));
-                return (BluejayObj)booleanClass.call(interpreter, args);
+                String other = ((NativeString)otherObj).value;
+                return makeBooleanValue(value.equals(other));
             }
         });
         globals.define("String", stringClass);
 
         // Number class
-        numberClass = new NativeClass("Number", null);
-        numberClass.addStatic("Number", new NativeMethod(1, "Number") {
-            public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                object.specialAttrs.put("value", arguments.get(0).toNumber(interpreter));
-                return new Value.Null();
+        // Numbers are NativeNumbers rather than plain objects, so the class
+        // builds them itself instead of running an initializer.
+        numberClass = new NativeClass("Number", null) {
+            public int arity() {
+                return 1;
             }
-        });
+
+            public Value call(Interpreter interpreter, List<Value> arguments) {
+                return new NativeNumber(arguments.get(0).toNumber(interpreter));
+            }
+        };
         numberClass.addStatic("$add", new NativeMethod(1, "$add") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot add number and "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.Number(value+other));
-                return (BluejayObj)Builtins.numberClass.call(interpreter, args);
+                double other = ((NativeNumber)otherObj).value;
+                return new NativeNumber(value+other);
             }
         });
         numberClass.addStatic("$sub", new NativeMethod(1, "$sub") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot subtract number and "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.Number(value-other));
-                return (BluejayObj)Builtins.numberClass.call(interpreter, args);
+                double other = ((NativeNumber)otherObj).value;
+                return new NativeNumber(value-other);
             }
         });
         numberClass.addStatic("$mul", new NativeMethod(1, "$mul") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot multiply number and "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.Number(value*other));
-                return (BluejayObj)Builtins.numberClass.call(interpreter, args);
+                double other = ((NativeNumber)otherObj).value;
+                return new NativeNumber(value*other);
             }
         });
         numberClass.addStatic("$div", new NativeMethod(1, "$div") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot divide number and "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
+                double other = ((NativeNumber)otherObj).value;
                 if (other == 0) throw new RuntimeError.ValueError("Division by zero");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.Number(value/other));
-                return (BluejayObj)Builtins.numberClass.call(interpreter, args);
+                return new NativeNumber(value/other);
             }
         });
         numberClass.addStatic("$mod", new NativeMethod(1, "$mod") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot modulo number and "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
+                double other = ((NativeNumber)otherObj).value;
                 if (other == 0) throw new RuntimeError.ValueError("Modulo by zero");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.Number(value%other));
-                return (BluejayObj)Builtins.numberClass.call(interpreter, args);
+                return new NativeNumber(value%other);
             }
         });
         numberClass.addStatic("$pow", new NativeMethod(1, "$pow") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot raise number to the powe of "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.Number(Math.pow(value, other)));
-                return (BluejayObj)Builtins.numberClass.call(interpreter, args);
+                double other = ((NativeNumber)otherObj).value;
+                return new NativeNumber(Math.pow(value, other));
             }
         });
         numberClass.addStatic("$eq", new NativeMethod(1, "$eq") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot compare number and "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.BluejayBoolean(value==other));
-                return (BluejayObj)booleanClass.call(interpreter, args);
+                double other = ((NativeNumber)otherObj).value;
+                return makeBooleanValue(value==other);
             }
         });
         numberClass.addStatic("$lt", new NativeMethod(1, "$lt") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot compare number and "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.BluejayBoolean(value<other));
-                return (BluejayObj)booleanClass.call(interpreter, args);
+                double other = ((NativeNumber)otherObj).value;
+                return makeBooleanValue(value<other);
             }
         });
         numberClass.addStatic("$lte", new NativeMethod(1, "$lte") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot compare number and "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.BluejayBoolean(value<=other));
-                return (BluejayObj)booleanClass.call(interpreter, args);
+                double other = ((NativeNumber)otherObj).value;
+                return makeBooleanValue(value<=other);
             }
         });
         numberClass.addStatic("$gt", new NativeMethod(1, "$gt") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot compare number and "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.BluejayBoolean(value>other));
-                return (BluejayObj)booleanClass.call(interpreter, args);
+                double other = ((NativeNumber)otherObj).value;
+                return makeBooleanValue(value>other);
             }
         });
         numberClass.addStatic("$gte", new NativeMethod(1, "$gte") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot compare number and "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.BluejayBoolean(value>=other));
-                return (BluejayObj)booleanClass.call(interpreter, args);
+                double other = ((NativeNumber)otherObj).value;
+                return makeBooleanValue(value>=other);
             }
         });
         numberClass.addStatic("$ne", new NativeMethod(1, "$ne") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot compare number and "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.BluejayBoolean(value!=other));
-                return (BluejayObj)booleanClass.call(interpreter, args);
+                double other = ((NativeNumber)otherObj).value;
+                return makeBooleanValue(value!=other);
             }
         });
         numberClass.addStatic("$neg", new NativeMethod(0, "$neg") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.Number(-value));
-                return (BluejayObj)numberClass.call(interpreter, args);
+                double value = ((NativeNumber)object).value;
+                return new NativeNumber(-value);
             }
         });
         numberClass.addStatic("$uadd", new NativeMethod(0, "$uadd") {
@@ -343,7 +322,7 @@ class Builtins {
         });
         numberClass.addStatic("$str", new NativeMethod(0, "$str") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                double value = (double)object.specialAttrs.get("value");
+                double value = ((NativeNumber)object).value;
                 if (value % 1 == 0) return new Value.BluejayString(String.valueOf((int)value));
                 return new Value.BluejayString(String.valueOf(value));
             }
@@ -355,27 +334,29 @@ class Builtins {
         });
         numberClass.addStatic("$bool", new NativeMethod(0, "$bool") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                return new Value.BluejayBoolean((double)object.specialAttrs.get("value") != 0);
+                return makeBooleanValue(((NativeNumber)object).value != 0);
             }
         });
         globals.define("Number", numberClass);
 
         // Boolean class
-        booleanClass = new NativeClass("Boolean", null);
-        booleanClass.addStatic("Boolean", new NativeMethod(1, "Boolean") {
-            public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                object.specialAttrs.put("value", interpreter.truthy(arguments.get(0)));
-                return new Value.Null();
+        booleanClass = new NativeClass("Boolean", null) {
+            public int arity() {
+                return 1;
             }
-        });
+
+            public Value call(Interpreter interpreter, List<Value> arguments) {
+                return makeBooleanValue(interpreter.truthy(arguments.get(0)));
+            }
+        };
         booleanClass.addStatic("$str", new NativeMethod(0, "$str") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                return new Value.BluejayString((boolean)object.specialAttrs.get("value") ? "true" : "false");
+                return new Value.BluejayString(((NativeBoolean)object).value ? "true" : "false");
             }
         });
         booleanClass.addStatic("$num", new NativeMethod(0, "$num") {
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                return new Value.Number((boolean)object.specialAttrs.get("value") ? 1 : 0);
+                return new Value.Number(((NativeBoolean)object).value ? 1 : 0);
             }
         });
         booleanClass.addStatic("$bool", new NativeMethod(0, "$bool") {
@@ -386,97 +367,106 @@ class Builtins {
         globals.define("Boolean", booleanClass);
 
         // List class
-        listClass = new NativeClass("List", null);
-        listClass.addStatic("List", new NativeMethod(0, "List") {
-            public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                object.specialAttrs.put("elements", new ArrayList<Value>());
-                return new Value.Null();
+        listClass = new NativeClass("List", null) {
+            public Value call(Interpreter interpreter, List<Value> arguments) {
+                return new NativeList();
             }
-        });
+        };
         listClass.addStatic("length", new NativeMethod(0, "length") {
-            @SuppressWarnings("unchecked")
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                List<Value> args = new ArrayList<>();
-                args.add(new Value.Number(((List<Value>)object.specialAttrs.get("elements")).size()));
-                return numberClass.call(interpreter, args);
+                return new NativeNumber(((NativeList)object).elements.size());
             }
         });
         listClass.addStatic("append", new NativeMethod(1, "append") {
-            // We KNOW that the "elements" attribute is a List<Value>,
-            // that's the only thing we ever set it to. I may remove
-            // the SuppressWarnings in the future, but they're not
-            // a problem at the moment.
-            @SuppressWarnings("unchecked")
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
                 for (Value a : arguments) {
-                    ((List<Value>)object.specialAttrs.get("elements")).add(a);
+                    ((NativeList)object).elements.add(a);
                 }
-                return new Value.Null();
+                return Builtins.nullValue;
             }
         });
         listClass.addStatic("$getitem", new NativeMethod(1, "$getitem") {
-            @SuppressWarnings("unchecked")
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
                 Value index = arguments.get(0);
                 if (index instanceof BluejayObj && ((BluejayObj)index).class_ == numberClass)
                     index = new Value.Number(index.toNumber(interpreter));
                 if (!(index instanceof Value.Number) || ((Value.Number)index).value % 1 != 0) throw new RuntimeError.TypeError("List indecies must be integers");
                 int i = (int)((Value.Number)index).value;
-                List<Value> elems = (List<Value>)object.specialAttrs.get("elements");
+                List<Value> elems = ((NativeList)object).elements;
                 if (i<0 || i>=elems.size()) throw new RuntimeError("Invalid index for list of length "+elems.size());
                 return elems.get(i);
             }
         });
         listClass.addStatic("$setitem", new NativeMethod(1, "$setitem") {
-            @SuppressWarnings("unchecked")
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
                 Value index = arguments.get(0);
                 if (index instanceof BluejayObj && ((BluejayObj)index).class_ == numberClass)
                     index = new Value.Number(index.toNumber(interpreter));
                 if (!(index instanceof Value.Number) || ((Value.Number)index).value % 1 != 0) throw new RuntimeError.TypeError("List indecies must be integers");
                 int i = (int)((Value.Number)index).value;
-                List<Value> elems = (List<Value>)object.specialAttrs.get("elements");
+                List<Value> elems = ((NativeList)object).elements;
                 if (i<0 || i>=elems.size()) throw new RuntimeError("Invalid index for list of length "+elems.size());
                 elems.set(i, arguments.get(1));
-                return new Value.Null();
+                return Builtins.nullValue;
             }
         });
         listClass.addStatic("$mul", new NativeMethod(0, "$mul") {
-            @SuppressWarnings("unchecked")
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
-                List<Value> value = (List<Value>)object.specialAttrs.get("elements");
+                List<Value> value = ((NativeList)object).elements;
                 Value otherObj = arguments.get(0);
-                if (!(otherObj instanceof BluejayObj) || ((BluejayObj)otherObj).class_ != numberClass) {
+                if (!(otherObj instanceof NativeNumber)) {
                     throw new RuntimeError.TypeError("Cannot multiply List and "+interpreter.typeOf(otherObj));
                 }
-                double other = (double)((BluejayObj)otherObj).specialAttrs.get("value");
+                double other = ((NativeNumber)otherObj).value;
                 List<Value> res = new ArrayList<>();
                 for (int i=0; i<other; i++) {
                     for (Value v : value) {
                         res.add(v);
                     }
                 }
-                BluejayObj obj = (BluejayObj)listClass.call(interpreter, new ArrayList<Value>());
-                obj.specialAttrs.put("elements", res);
-                return obj;
+                return new NativeList(res);
             }
         });
         listClass.addStatic("$str", new NativeMethod(0, "$str") {
-            @SuppressWarnings("unchecked")
             public Value call(Interpreter interpreter, List<Value> arguments, BluejayObj object) {
                 List<String> elems = new ArrayList<>();
-                for (Value e : (List<Value>)object.specialAttrs.get("elements")) {
+                for (Value e : ((NativeList)object).elements) {
                     elems.add(e.toString(interpreter));
                 }
                 return new Value.BluejayString("[" + String.join(", ", elems) + "]");
             }
         });
         globals.define("List", listClass);
+
+        trueValue = new NativeBoolean(true);
+        falseValue = new NativeBoolean(false);
+        for (int n = SMALL_MIN; n <= SMALL_MAX; n++) {
+            smallNumbers[n - SMALL_MIN] = new NativeNumber(n);
+        }
     }
     
-    public static Value makeStringValue(Interpreter interpreter, String realValue) {
-        List<Value> args = new ArrayList<>();
-        args.add(new Value.BluejayString(realValue));
-        return Builtins.stringClass.call(interpreter, args);
+    public static Value makeBooleanValue(boolean realValue) {
+        return realValue ? trueValue : falseValue;
+    }
+
+    // Whole numbers in a small range are made once up front and shared.
+    // Nothing can tell two equal numbers apart, and this covers most loop
+    // counters, indexes and constants. -0.0 is left out, since 1/-0 isn't 1/0.
+    public static Value makeNumberValue(double realValue) {
+        int n = (int)realValue;
+        if (n == realValue && n >= SMALL_MIN && n <= SMALL_MAX && (n != 0 || Double.doubleToRawLongBits(realValue) == 0)) {
+            return smallNumbers[n - SMALL_MIN];
+        }
+        return new NativeNumber(realValue);
+    }
+
+    // Every string made at runtime has its escapes turned into the
+    // characters they stand for, as String(...) always has.
+    public static Value makeStringValue(String realValue) {
+        return new NativeString(realValue
+            .replace("\\n", "\n")
+            .replace("\\t", "\t")
+            .replace("\\r", "\r")
+        );
     }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.esjr.bluejay;
+
+// A local variable that some function declared inside its scope refers to.
+// The Resolver marks those variables as captured; they're kept in a cell
+// instead of directly in a slot, and a closure keeps just the cells it uses
+// rather than the whole chain of environments it was declared in. That's
+// the tree-walking engines' equivalent of the VM's Upvalue.
+class Cell {
+    static final Cell[] NONE = new Cell[0];
+
+    Value value;
+
+    Cell(Value value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,47 @@
+package com.esjr.bluejay;
+
+import java.util.*;
+
+// A block of bytecode together with the constants it refers to.
+class Chunk {
+    byte[] code = new byte[64];
+    int count = 0;
+    Object[] constants = new Object[16];
+    int constantCount = 0;
+    // For each loop, innermost first: where its body starts, where it ends
+    // (which is also where a break out of it goes), and how many locals
+    // were alive when it started. A break coming back from a call finds
+    // the loops it's in here (see VM.unwind).
+    final List<int[]> loops = new ArrayList<>();
+    // Number and string literals are deduplicated by value, since the VM
+    // turns them into fresh objects every time they're loaded anyway.
+    private final Map<Object, Integer> literals = new HashMap<>();
+
+    void write(int b) {
+        if (count == code.length) code = Arrays.copyOf(code, count * 2);
+        code[count++] = (byte)b;
+    }
+
+    void writeShort(int s) {
+        write((s >> 8) & 0xff);
+        write(s & 0xff);
+    }
+
+    void patchShort(int at, int s) {
+        code[at] = (byte)((s >> 8) & 0xff);
+        code[at + 1] = (byte)(s & 0xff);
+    }
+
+    int addConstant(Object value) {
+        Object key = null;
+        if (value instanceof Value.Number) key = ((Value.Number)value).value;
+        else if (value instanceof Value.BluejayString) key = ((Value.BluejayString)value).value;
+        if (key != null && literals.containsKey(key)) return literals.get(key);
+
+        if (constantCount > 0xffff) throw new RuntimeError("Too many constants in one chunk.");
+        if (constantCount == constants.length) constants = Arrays.copyOf(constants, constantCount * 2);
+        constants[constantCount] = value;
+        if (key != null) literals.put(key, constantCount);
+        return constantCount++;
+    }
+}
@@ -0,0 +1,519 @@
+package com.esjr.bluejay;
+
+import java.io.*;
+import java.util.*;
+
+// Just enough of the JVM class file format for JitCompiler: a final class
+// with a public constructor that hands an Object[] to its superclass's, and
+// one public method whose code is built up here instruction by instruction.
+//
+// The code has to come with a StackMapTable for the verifier. JitCompiler
+// keeps that simple: nothing is ever left on the operand stack across a
+// jump, and every local has one type for the whole method (they're all set
+// to null or zero before anything else runs), so the frame is the same at
+// every jump target and only its offset changes. The one exception is the
+// start of an exception handler, which has what it caught on the stack.
+class ClassAssembler {
+    static final int ACONST_NULL = 1, ICONST_0 = 3, DCONST_0 = 14, DCONST_1 = 15, BIPUSH = 16,
+        SIPUSH = 17, LDC = 18, LDC_W = 19, LDC2_W = 20, ILOAD = 21, DLOAD = 24, ALOAD = 25,
+        AALOAD = 50, ISTORE = 54, DSTORE = 57, ASTORE = 58, AASTORE = 83, POP = 87, DUP = 89,
+        DADD = 99, DSUB = 103, DMUL = 107, DDIV = 111, DREM = 115, DNEG = 119, IINC = 132,
+        I2D = 135, DCMPL = 151, DCMPG = 152, IFEQ = 153, IFNE = 154, IFLT = 155, IFGE = 156,
+        IFGT = 157, IFLE = 158, GOTO = 167, ARETURN = 176, RETURN = 177, GETSTATIC = 178,
+        GETFIELD = 180, PUTFIELD = 181, INVOKEVIRTUAL = 182, INVOKESPECIAL = 183,
+        INVOKESTATIC = 184, INVOKEINTERFACE = 185, NEW = 187, ANEWARRAY = 189, ATHROW = 191,
+        CHECKCAST = 192, INSTANCEOF = 193, WIDE = 196, IFNULL = 198;
+
+    // A position in the code, which jumps can refer to before it's bound.
+    static class Label {
+        private int position = -1;
+        // For each jump to it: where the instruction starts, and where its
+        // offset goes.
+        private final List<int[]> jumps = new ArrayList<>();
+        // For a handler, the class of what it catches.
+        private String caught;
+    }
+
+    // An entry in the exception table.
+    private static class Handler {
+        final Label start, end, handler;
+        final int type;
+
+        Handler(Label start, Label end, Label handler, int type) {
+            this.start = start;
+            this.end = end;
+            this.handler = handler;
+            this.type = type;
+        }
+    }
+
+    private final String name;
+    private final String superName;
+    private final String method;
+    private final String descriptor;
+    private final int parameters;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final List<Label> labels = new ArrayList<>();
+    private final List<String> locals = new ArrayList<>();
+    private int slots = 0;
+    private final TreeSet<Integer> frames = new TreeSet<>();
+    // The class on the stack at each frame that starts a handler.
+    private final Map<Integer, String> caught = new HashMap<>();
+    private final List<Handler> handlers = new ArrayList<>();
+    private int stack = 0;
+    private int maxStack = 0;
+    private boolean reachable = true;
+
+    // 'parameters' are the internal names of the types in the method's
+    // descriptor; they're the first locals after 'this'.
+    ClassAssembler(String name, String superName, String method, String descriptor, String... parameters) {
+        this.name = name;
+        this.superName = superName;
+        this.method = method;
+        this.descriptor = descriptor;
+        this.parameters = parameters.length;
+        local(name);
+        for (String parameter : parameters) local(parameter);
+    }
+
+    // How much code there is so far.
+    int size() {
+        return code.size();
+    }
+
+    // Constant pool
+
+    private int entry(String key, int tag, byte[] data) {
+        Integer index = entries.get(key);
+        if (index != null) return index;
+        pool.write(tag);
+        pool.write(data, 0, data.length);
+        entries.put(key, poolCount);
+        return poolCount++;
+    }
+
+    private static byte[] u2s(int... values) {
+        byte[] data = new byte[values.length * 2];
+        for (int i = 0; i < values.length; i++) {
+            data[i * 2] = (byte)(values[i] >> 8);
+            data[i * 2 + 1] = (byte)values[i];
+        }
+        return data;
+    }
+
+    private int utf8(String value) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try {
+            new DataOutputStream(data).writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return entry("U" + value, 1, data.toByteArray());
+    }
+
+    private int classRef(String internalName) {
+        return entry("C" + internalName, 7, u2s(utf8(internalName)));
+    }
+
+    private int string(String value) {
+        return entry("S" + value, 8, u2s(utf8(value)));
+    }
+
+    private int integer(int value) {
+        return entry("I" + value, 3, new byte[] {(byte)(value >> 24), (byte)(value >> 16), (byte)(value >> 8), (byte)value});
+    }
+
+    private int doubleConstant(double value) {
+        long bits = Double.doubleToLongBits(value);
+        String key = "D" + bits;
+        if (entries.containsKey(key)) return entries.get(key);
+        byte[] data = new byte[8];
+        for (int i = 0; i < 8; i++) data[i] = (byte)(bits >> (56 - 8*i));
+        int index = entry(key, 6, data);
+        // A double takes up the entry after it too.
+        poolCount++;
+        return index;
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        return entry("N" + name + " " + descriptor, 12, u2s(utf8(name), utf8(descriptor)));
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        return entry(tag + owner + "." + name + descriptor, tag, u2s(classRef(owner), nameAndType(name, descriptor)));
+    }
+
+    // Locals
+
+    // Declares a local of the given type, an internal class name or "I" or
+    // "D" for an int or a double, and returns its index.
+    int local(String type) {
+        int index = slots;
+        locals.add(type);
+        slots += type.equals("D") ? 2 : 1;
+        return index;
+    }
+
+    // Instructions
+
+    // Starts an instruction that changes the depth of the stack by 'effect'.
+    private void op(int opcode, int effect) {
+        if (!reachable) {
+            // Code straight after a jump or return can only be reached by
+            // jumping to it, if at all, so it needs a frame either way.
+            frames.add(code.size());
+            reachable = true;
+        }
+        code.write(opcode);
+        stack += effect;
+        if (stack > maxStack) maxStack = stack;
+    }
+
+    private void u1(int value) {
+        code.write(value);
+    }
+
+    private void u2(int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+
+    private void local(int opcode, int index, int effect) {
+        if (index > 255) {
+            op(WIDE, effect);
+            u1(opcode);
+            u2(index);
+        } else {
+            op(opcode, effect);
+            u1(index);
+        }
+    }
+
+    void aload(int index) { local(ALOAD, index, 1); }
+    void astore(int index) { local(ASTORE, index, -1); }
+    void iload(int index) { local(ILOAD, index, 1); }
+    void istore(int index) { local(ISTORE, index, -1); }
+    void dload(int index) { local(DLOAD, index, 2); }
+    void dstore(int index) { local(DSTORE, index, -2); }
+
+    void iinc(int index, int amount) {
+        if (index > 255 || amount < Byte.MIN_VALUE || amount > Byte.MAX_VALUE) {
+            op(WIDE, 0);
+            u1(IINC);
+            u2(index);
+            u2(amount);
+        } else {
+            op(IINC, 0);
+            u1(index);
+            u1(amount);
+        }
+    }
+
+    void iconst(int value) {
+        if (value >= -1 && value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op(BIPUSH, 1);
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op(SIPUSH, 1);
+            u2(value);
+        } else {
+            ldc(integer(value));
+        }
+    }
+
+    void dconst(double value) {
+        if (Double.doubleToLongBits(value) == Double.doubleToLongBits(0.0)) {
+            op(DCONST_0, 2);
+        } else if (value == 1) {
+            op(DCONST_1, 2);
+        } else {
+            op(LDC2_W, 2);
+            u2(doubleConstant(value));
+        }
+    }
+
+    void sconst(String value) {
+        ldc(string(value));
+    }
+
+    private void ldc(int index) {
+        if (index > 255) {
+            op(LDC_W, 1);
+            u2(index);
+        } else {
+            op(LDC, 1);
+            u1(index);
+        }
+    }
+
+    // An instruction with no operands.
+    void insn(int opcode, int effect) {
+        op(opcode, effect);
+        if (opcode == ARETURN || opcode == RETURN || opcode == ATHROW) reachable = false;
+    }
+
+    // new, anewarray, checkcast and instanceof.
+    void type(int opcode, String internalName, int effect) {
+        op(opcode, effect);
+        u2(classRef(internalName));
+    }
+
+    void field(int opcode, String owner, String name, String descriptor) {
+        int size = descriptor.equals("D") || descriptor.equals("J") ? 2 : 1;
+        int effect;
+        switch (opcode) {
+            case GETSTATIC: effect = size; break;
+            case GETFIELD: effect = size - 1; break;
+            case PUTFIELD: effect = -size - 1; break;
+            default: effect = -size; break;
+        }
+        op(opcode, effect);
+        u2(member(9, owner, name, descriptor));
+    }
+
+    void invoke(int opcode, String owner, String name, String descriptor) {
+        int arguments = argumentSize(descriptor);
+        op(opcode, returnSize(descriptor) - arguments - (opcode == INVOKESTATIC ? 0 : 1));
+        if (opcode == INVOKEINTERFACE) {
+            u2(member(11, owner, name, descriptor));
+            u1(arguments + 1);
+            u1(0);
+        } else {
+            u2(member(10, owner, name, descriptor));
+        }
+    }
+
+    private static int argumentSize(String descriptor) {
+        int size = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'J' || c == 'D') {
+                size += 2;
+                i++;
+                continue;
+            }
+            size++;
+            while (descriptor.charAt(i) == '[') i++;
+            if (descriptor.charAt(i) == 'L') i = descriptor.indexOf(';', i);
+            i++;
+        }
+        return size;
+    }
+
+    private static int returnSize(String descriptor) {
+        char c = descriptor.charAt(descriptor.indexOf(')') + 1);
+        return c == 'V' ? 0 : c == 'J' || c == 'D' ? 2 : 1;
+    }
+
+    // Jumps
+
+    Label label() {
+        Label label = new Label();
+        labels.add(label);
+        return label;
+    }
+
+    // A goto, or a conditional jump that pops what it tests. Either way the
+    // stack has to be empty afterwards.
+    void jump(int opcode, Label target) {
+        op(opcode, opcode == GOTO ? 0 : -1);
+        target.jumps.add(new int[] {code.size() - 1, code.size()});
+        u2(0);
+        if (opcode == GOTO) reachable = false;
+    }
+
+    void bind(Label label) {
+        label.position = code.size();
+        frames.add(label.position);
+        reachable = true;
+        if (label.caught != null) {
+            caught.put(label.position, label.caught);
+            stack = 1;
+            if (stack > maxStack) maxStack = stack;
+        }
+    }
+
+    // Sends an exception of the given class thrown from the code between
+    // 'start' and 'end' to 'handler', which has to be bound after this,
+    // and starts with the exception on the stack. Where the code is
+    // covered by more than one handler, the first one added is tried first.
+    void handler(Label start, Label end, Label handler, String type) {
+        handler.caught = type;
+        handlers.add(new Handler(start, end, handler, classRef(type)));
+    }
+
+    // The class file
+
+    byte[] toBytes() {
+        byte[] body = code.toByteArray();
+        for (Label label : labels) {
+            for (int[] jump : label.jumps) {
+                int offset = label.position - jump[0];
+                if (offset > Short.MAX_VALUE || offset < Short.MIN_VALUE) throw new IllegalStateException("Jump too far.");
+                body[jump[1]] = (byte)(offset >> 8);
+                body[jump[1] + 1] = (byte)offset;
+            }
+        }
+
+        // Sets every local but 'this' and the parameters to null or zero.
+        ByteArrayOutputStream prologue = new ByteArrayOutputStream();
+        int index = 0;
+        for (int i = 0; i < locals.size(); i++) {
+            String type = locals.get(i);
+            if (i > parameters) {
+                if (type.equals("I")) initialize(prologue, ICONST_0, ISTORE, index);
+                else if (type.equals("D")) initialize(prologue, DCONST_0, DSTORE, index);
+                else initialize(prologue, ACONST_NULL, ASTORE, index);
+            }
+            index += type.equals("D") ? 2 : 1;
+        }
+        if (maxStack < 2) maxStack = 2;
+
+        int codeName = utf8("Code");
+        int thisClass = classRef(name);
+        int superClass = classRef(superName);
+        int constructorName = utf8("<init>");
+        int constructorType = utf8("([Ljava/lang/Object;)V");
+        int superConstructor = member(10, superName, "<init>", "([Ljava/lang/Object;)V");
+        int methodName = utf8(method);
+        int methodType = utf8(descriptor);
+        byte[] table = stackMapTable(prologue.size());
+        int tableName = utf8("StackMapTable");
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(52);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(0x0010 | 0x0020); // ACC_FINAL | ACC_SUPER
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(2); // methods
+
+            byte[] constructor = {
+                (byte)ALOAD, 0, (byte)ALOAD, 1,
+                (byte)INVOKESPECIAL, (byte)(superConstructor >> 8), (byte)superConstructor,
+                (byte)RETURN
+            };
+            out.writeShort(0x0001); // ACC_PUBLIC
+            out.writeShort(constructorName);
+            out.writeShort(constructorType);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + constructor.length);
+            out.writeShort(2);
+            out.writeShort(2);
+            out.writeInt(constructor.length);
+            out.write(constructor);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+
+            int length = prologue.size() + body.length;
+            out.writeShort(0x0001);
+            out.writeShort(methodName);
+            out.writeShort(methodType);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + length + 8*handlers.size() + (frames.isEmpty() ? 0 : 6 + table.length));
+            out.writeShort(maxStack);
+            out.writeShort(slots);
+            out.writeInt(length);
+            prologue.writeTo(out);
+            out.write(body);
+            out.writeShort(handlers.size());
+            for (Handler handler : handlers) {
+                out.writeShort(prologue.size() + handler.start.position);
+                out.writeShort(prologue.size() + handler.end.position);
+                out.writeShort(prologue.size() + handler.handler.position);
+                out.writeShort(handler.type);
+            }
+            if (frames.isEmpty()) {
+                out.writeShort(0);
+            } else {
+                out.writeShort(1);
+                out.writeShort(tableName);
+                out.writeInt(table.length);
+                out.write(table);
+            }
+
+            out.writeShort(0); // class attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void initialize(ByteArrayOutputStream out, int constant, int store, int index) {
+        out.write(constant);
+        if (index > 255) {
+            out.write(WIDE);
+            out.write(store);
+            out.write(index >> 8);
+            out.write(index);
+        } else {
+            out.write(store);
+            out.write(index);
+        }
+    }
+
+    // A full frame with every local and an empty stack (or what a handler
+    // caught) at each position, moved along by the prologue.
+    private byte[] stackMapTable(int shift) {
+        ByteArrayOutputStream locals = new ByteArrayOutputStream();
+        for (String type : this.locals) {
+            if (type.equals("I")) {
+                locals.write(1);
+            } else if (type.equals("D")) {
+                locals.write(3);
+            } else {
+                int index = classRef(type);
+                locals.write(7);
+                locals.write(index >> 8);
+                locals.write(index);
+            }
+        }
+        byte[] types = locals.toByteArray();
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        table.write(frames.size() >> 8);
+        table.write(frames.size());
+        int previous = -1;
+        for (int frame : frames) {
+            int position = frame + shift;
+            int delta = previous < 0 ? position : position - previous - 1;
+            previous = position;
+            table.write(255);
+            table.write(delta >> 8);
+            table.write(delta);
+            table.write(this.locals.size() >> 8);
+            table.write(this.locals.size());
+            table.write(types, 0, types.length);
+            String type = caught.get(frame);
+            if (type == null) {
+                table.write(0);
+                table.write(0);
+            } else {
+                int index = classRef(type);
+                table.write(0);
+                table.write(1);
+                table.write(7);
+                table.write(index >> 8);
+                table.write(index);
+            }
+        }
+        return table.toByteArray();
+    }
+}
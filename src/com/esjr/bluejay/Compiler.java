@@ -0,0 +1,673 @@
+package com.esjr.bluejay;
+
+import java.util.*;
+import static com.esjr.bluejay.TokenType.*;
+
+// Compiles a resolved program into bytecode for the VM. Locals are given
+// fixed slots in their function's frame (the compiler does its own scope
+// tracking, mirroring the Resolver), anything declared at the top level is
+// a global, and variables of enclosing functions are reached through
+// upvalues.
+class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private static class Local {
+        final String name;
+        final int depth;
+        final int slot;
+        boolean captured = false;
+
+        Local(String name, int depth, int slot) {
+            this.name = name;
+            this.depth = depth;
+            this.slot = slot;
+        }
+    }
+
+    private static class Loop {
+        final Loop enclosing;
+        // Number of locals alive when the loop started; a break closes any
+        // upvalues above this before jumping out.
+        final int slots;
+        // Where the body starts.
+        int body;
+        final List<Integer> exits = new ArrayList<>();
+        // Entries of dynamic break tables that need the loop's exit address.
+        final List<int[]> tables = new ArrayList<>();
+        final List<Integer> tableIndices = new ArrayList<>();
+
+        Loop(Loop enclosing, int slots) {
+            this.enclosing = enclosing;
+            this.slots = slots;
+        }
+    }
+
+    private static class Function {
+        final Function enclosing;
+        final FunctionProto proto;
+        final Chunk chunk;
+        final List<Local> locals = new ArrayList<>();
+        final List<Integer> upvalues = new ArrayList<>();
+        int scopeDepth = 0;
+        Loop loop = null;
+
+        Function(Function enclosing, FunctionProto proto) {
+            this.enclosing = enclosing;
+            this.proto = proto;
+            this.chunk = proto.chunk;
+        }
+    }
+
+    private Function current = null;
+
+    FunctionProto compile(List<Stmt> statements) {
+        current = new Function(null, new FunctionProto("<script>", null, 0));
+        current.locals.add(new Local("", 0, 0));
+        try {
+            block(statements);
+            emit(OpCode.NULL);
+            emit(OpCode.RETURN);
+        } catch (RuntimeError error) {
+            Bluejay.runtimeError(error);
+            return null;
+        }
+        return current.proto;
+    }
+
+    public Void visit(Stmt.Block stmt) {
+        beginScope();
+        block(stmt.statements);
+        endScope();
+        return null;
+    }
+
+    public Void visit(Stmt.Break stmt) {
+        int amount = -1;
+        if (stmt.value == null) {
+            amount = 1;
+        } else if (stmt.value instanceof Expr.Literal && ((Expr.Literal)stmt.value).value instanceof Value.Number) {
+            double value = ((Value.Number)((Expr.Literal)stmt.value).value).value;
+            if (value % 1 == 0) amount = (int)value;
+        }
+
+        Loop loop = current.loop;
+        for (int i = 1; i < amount && loop != null; i++) loop = loop.enclosing;
+        if (amount == -1 || amount >= 1 && loop == null) {
+            // The amount is only known at runtime, or goes past this
+            // function's loops into those of whatever called it, so hand the
+            // VM a table of every loop here we could be breaking out of.
+            if (stmt.value == null) emit(OpCode.CONSTANT, constant(Builtins.makeNumberValue(1)));
+            else compile(stmt.value);
+            List<Loop> loops = new ArrayList<>();
+            for (Loop outer = current.loop; outer != null; outer = outer.enclosing) loops.add(outer);
+            int[] table = new int[loops.size() * 2];
+            for (int i = 0; i < loops.size(); i++) {
+                loops.get(i).tables.add(table);
+                loops.get(i).tableIndices.add(i * 2);
+                table[i * 2 + 1] = loops.get(i).slots;
+            }
+            emit(OpCode.BREAK, constant(table), constant(stmt));
+            return null;
+        }
+        if (amount < 1) {
+            emit(OpCode.RAISE, constant("Break outside of loop."), constant(stmt.keyword));
+            return null;
+        }
+        if (current.locals.size() > loop.slots) emit(OpCode.CLOSE_UPVALUES, loop.slots);
+        loop.exits.add(emitJump(OpCode.JUMP));
+        return null;
+    }
+
+    public Void visit(Stmt.Class stmt) {
+        Local local = declare(stmt.name);
+        if (stmt.inherits != null) {
+            compile(stmt.inherits);
+        } else {
+            emit(OpCode.NULL);
+        }
+        for (Stmt mthd : stmt.methods) {
+            Stmt.Method method = (Stmt.Method)mthd;
+            function(method, method.name, method.parameters, method.body);
+        }
+        emit(OpCode.CLASS, constant(stmt), stmt.methods.size());
+        define(stmt.name, local);
+        return null;
+    }
+
+    public Void visit(Stmt.Expression stmt) {
+        compile(stmt.expression);
+        emit(OpCode.POP);
+        return null;
+    }
+
+    public Void visit(Stmt.Foreach stmt) {
+        compile(stmt.iter);
+        beginScope();
+        int state = addLocal("").slot;
+        emit(OpCode.FOREACH_PREP, constant(stmt.loopVar));
+        emit(OpCode.DEFINE_LOCAL, state);
+        int loopVar = addLocal(stmt.loopVar.lexeme).slot;
+        emit(OpCode.NULL);
+        emit(OpCode.DEFINE_LOCAL, loopVar);
+
+        Loop loop = beginLoop(state);
+        int start = current.chunk.count;
+        emit(OpCode.FOREACH_NEXT, state, loopVar);
+        int exit = emitJumpOperand();
+        loop.body = current.chunk.count;
+        compile(stmt.body);
+        emitLoop(start);
+        patchJump(exit);
+        endScope();
+        endLoop(loop);
+        return null;
+    }
+
+    public Void visit(Stmt.Function stmt) {
+        Local local = declare(stmt.name);
+        function(stmt, stmt.name, stmt.parameters, stmt.body);
+        define(stmt.name, local);
+        return null;
+    }
+
+    public Void visit(Stmt.If stmt) {
+        List<Integer> elseJumps = branch(stmt.condition, false);
+        compile(stmt.thenBranch);
+        if (stmt.elseBranch != null) {
+            int endJump = emitJump(OpCode.JUMP);
+            patchJumps(elseJumps);
+            compile(stmt.elseBranch);
+            patchJump(endJump);
+        } else {
+            patchJumps(elseJumps);
+        }
+        return null;
+    }
+
+    public Void visit(Stmt.Import stmt) {
+        emit(OpCode.IMPORT);
+        return null;
+    }
+
+    public Void visit(Stmt.Method stmt) {
+        throw new UnsupportedOperationException("Stmt.Method should only be compiled as part of a class.");
+    }
+
+    public Void visit(Stmt.Print stmt) {
+        throw new UnsupportedOperationException("Stmt.Print has been deprecated.");
+    }
+
+    public Void visit(Stmt.Repeat stmt) {
+        compile(stmt.amount);
+        beginScope();
+        int state = addLocal("").slot;
+        emit(OpCode.REPEAT_PREP, constant(stmt.paren));
+        emit(OpCode.DEFINE_LOCAL, state);
+
+        Loop loop = beginLoop(state);
+        int start = current.chunk.count;
+        emit(OpCode.REPEAT_NEXT, state);
+        int exit = emitJumpOperand();
+        loop.body = current.chunk.count;
+        compile(stmt.body);
+        emitLoop(start);
+        patchJump(exit);
+        endScope();
+        endLoop(loop);
+        return null;
+    }
+
+    public Void visit(Stmt.Return stmt) {
+        if (stmt.value != null) {
+            compile(stmt.value);
+        } else {
+            emit(OpCode.NULL);
+        }
+        if (current.enclosing == null) {
+            emit(OpCode.POP);
+            emit(OpCode.RAISE, constant("Return outside of function or method."), constant(stmt.keyword));
+        } else {
+            emit(OpCode.RETURN);
+        }
+        return null;
+    }
+
+    public Void visit(Stmt.Var stmt) {
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        } else {
+            emit(OpCode.NULL);
+        }
+        define(stmt.name, declare(stmt.name));
+        return null;
+    }
+
+    public Void visit(Stmt.While stmt) {
+        if (stmt.counter != null) return counted(stmt);
+        int start = current.chunk.count;
+        List<Integer> exits = branch(stmt.condition, false);
+        Loop loop = beginLoop(current.locals.size());
+        loop.body = current.chunk.count;
+        compile(stmt.body);
+        emitLoop(start);
+        patchJumps(exits);
+        endLoop(loop);
+        return null;
+    }
+
+    // A counted loop (see Resolver.counted). A hidden local holds the
+    // counter as a double, unless the variable didn't start out as a
+    // number; then COUNT_TEST compares the variable itself and COUNT_STEP
+    // falls through to the increment as written.
+    private Void counted(Stmt.While stmt) {
+        Expr.Binary condition = (Expr.Binary)stmt.condition;
+        List<Stmt> body = ((Stmt.Block)stmt.body).statements;
+        int counter = resolveLocal(current, stmt.counter.name.lexeme);
+        beginScope();
+        int state = addLocal("").slot;
+        emit(OpCode.COUNT_PREP, counter);
+        emit(OpCode.DEFINE_LOCAL, state);
+
+        Loop loop = beginLoop(state);
+        int start = current.chunk.count;
+        compile(condition.right);
+        emit(OpCode.COUNT_TEST, counter, state, comparison(condition.operator.type));
+        int exit = emitJumpOperand();
+        loop.body = current.chunk.count;
+        block(body.subList(0, body.size()-1));
+        emit(OpCode.COUNT_STEP, counter, state, constant(stmt));
+        int skip = emitJumpOperand();
+        compile(body.get(body.size()-1));
+        patchJump(skip);
+        emitLoop(start);
+        patchJump(exit);
+        endScope();
+        endLoop(loop);
+        return null;
+    }
+
+    public Void visit(Expr.Assign expr) {
+        if (expr.value != null) {
+            compile(expr.value);
+        } else {
+            emit(OpCode.NULL);
+        }
+        boolean plain = expr.operator.type == EQUAL;
+        int slot = resolveLocal(current, expr.name.lexeme);
+        if (slot != -1) {
+            if (plain) emit(OpCode.SET_LOCAL, slot);
+            else emit(OpCode.ASSIGN_LOCAL, slot, constant(expr.operator));
+            return null;
+        }
+        int upvalue = resolveUpvalue(current, expr.name.lexeme);
+        if (upvalue != -1) {
+            if (plain) emit(OpCode.SET_UPVALUE, upvalue);
+            else emit(OpCode.ASSIGN_UPVALUE, upvalue, constant(expr.operator));
+            return null;
+        }
+        emit(OpCode.ASSIGN_GLOBAL, constant(expr.name), constant(expr.operator));
+        return null;
+    }
+
+    public Void visit(Expr.Get expr) {
+        compile(expr.expr);
+        emit(OpCode.GET_ATTR, constant(expr.name), constant(new InlineCache()));
+        return null;
+    }
+
+    public Void visit(Expr.Set expr) {
+        compile(expr.expr);
+        if (expr.value != null) {
+            compile(expr.value);
+        } else {
+            emit(OpCode.NULL);
+        }
+        emit(OpCode.SET_ATTR, constant(expr.name), constant(expr.operator), constant(new InlineCache()));
+        return null;
+    }
+
+    public Void visit(Expr.Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+        switch (expr.operator.type) {
+            case PLUS: emit(OpCode.ADD); break;
+            case MINUS: emit(OpCode.SUB); break;
+            case STAR: emit(OpCode.MUL); break;
+            case SLASH: emit(OpCode.DIV); break;
+            case PERCENT: emit(OpCode.MOD); break;
+            case STAR_STAR: emit(OpCode.POW); break;
+            case EQUAL_EQUAL: emit(OpCode.EQ); break;
+            case BANG_EQUAL: emit(OpCode.NE); break;
+            case LESS: emit(OpCode.LT); break;
+            case LESS_EQUAL: emit(OpCode.LE); break;
+            case GREATER: emit(OpCode.GT); break;
+            case GREATER_EQUAL: emit(OpCode.GE); break;
+            default:
+                throw new UnsupportedOperationException("Token "+expr.operator.lexeme+" is not a valid operator.");
+        }
+        return null;
+    }
+
+    public Void visit(Expr.Call expr) {
+        if (expr.callee instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get)expr.callee;
+            compile(get.expr);
+            for (Expr argument : expr.arguments) {
+                compile(argument);
+            }
+            emit(OpCode.INVOKE, constant(get.name), constant(new InlineCache()), expr.arguments.size(), constant(expr.paren));
+            return null;
+        }
+        compile(expr.callee);
+        for (Expr argument : expr.arguments) {
+            compile(argument);
+        }
+        emit(OpCode.CALL, expr.arguments.size(), constant(expr.paren));
+        return null;
+    }
+
+    public Void visit(Expr.Dict expr) {
+        for (int i=0; i<expr.keys.size(); i++) {
+            compile(expr.keys.get(i));
+            compile(expr.values.get(i));
+        }
+        emit(OpCode.BUILD_DICT, expr.keys.size());
+        return null;
+    }
+
+    public Void visit(Expr.Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    public Void visit(Expr.Index expr) {
+        compile(expr.expr);
+        compile(expr.index);
+        emit(OpCode.GET_INDEX);
+        return null;
+    }
+
+    public Void visit(Expr.SetIndex expr) {
+        compile(expr.value);
+        compile(expr.expr);
+        compile(expr.index);
+        emit(OpCode.SET_INDEX, constant(expr.operator));
+        return null;
+    }
+
+    public Void visit(Expr.ListLiteral expr) {
+        for (Expr e : expr.elements) {
+            compile(e);
+        }
+        emit(OpCode.BUILD_LIST, expr.elements.size());
+        return null;
+    }
+
+    public Void visit(Expr.Literal expr) {
+        emit(OpCode.CONSTANT, constant(expr.constant));
+        return null;
+    }
+
+    public Void visit(Expr.Logical expr) {
+        compile(expr.left);
+        switch (expr.operator.type) {
+            case AND: {
+                int end = emitJump(OpCode.JUMP_IF_FALSE_OR_POP);
+                compile(expr.right);
+                patchJump(end);
+                break;
+            }
+            case OR: {
+                int end = emitJump(OpCode.JUMP_IF_TRUE_OR_POP);
+                compile(expr.right);
+                patchJump(end);
+                break;
+            }
+            case XOR:
+                compile(expr.right);
+                emit(OpCode.XOR);
+                break;
+            default:
+                throw new UnsupportedOperationException("Token "+expr.operator.lexeme+" is not a valid operator.");
+        }
+        return null;
+    }
+
+    public Void visit(Expr.Unary expr) {
+        compile(expr.right);
+        switch (expr.operator.type) {
+            case MINUS: emit(OpCode.NEG); break;
+            case PLUS: emit(OpCode.UADD); break;
+            case BANG:
+            case NOT: emit(OpCode.NOT); break;
+            default:
+                throw new UnsupportedOperationException("Token "+expr.operator.lexeme+" is not a valid operator.");
+        }
+        return null;
+    }
+
+    public Void visit(Expr.Var expr) {
+        int slot = resolveLocal(current, expr.name.lexeme);
+        if (slot != -1) {
+            emit(OpCode.GET_LOCAL, slot);
+            return null;
+        }
+        int upvalue = resolveUpvalue(current, expr.name.lexeme);
+        if (upvalue != -1) {
+            emit(OpCode.GET_UPVALUE, upvalue);
+            return null;
+        }
+        emit(OpCode.GET_GLOBAL, constant(expr.name));
+        return null;
+    }
+
+    private void function(Stmt declaration, Token name, LinkedHashMap<Token,Object> parameters, Stmt body) {
+        FunctionProto proto = new FunctionProto(name.lexeme, declaration, parameters.size());
+        current = new Function(current, proto);
+        current.scopeDepth = 1;
+        current.locals.add(new Local(declaration instanceof Stmt.Method ? "this" : "", 1, 0));
+        for (Token param : parameters.keySet()) {
+            addLocal(param.lexeme);
+        }
+        block(((Stmt.Block)body).statements);
+        emit(OpCode.NULL);
+        emit(OpCode.END);
+
+        proto.upvalues = new int[current.upvalues.size()];
+        for (int i = 0; i < proto.upvalues.length; i++) proto.upvalues[i] = current.upvalues.get(i);
+        current = current.enclosing;
+        emit(OpCode.CLOSURE, constant(proto));
+    }
+
+    // Declares a name in the current scope before its value is compiled, so
+    // that functions and classes can refer to themselves. Returns null for
+    // globals, which only exist once defined.
+    private Local declare(Token name) {
+        if (current.scopeDepth == 0) return null;
+        for (int i = current.locals.size() - 1; i >= 0; i--) {
+            Local local = current.locals.get(i);
+            if (local.depth < current.scopeDepth) break;
+            if (local.name.equals(name.lexeme)) return local;
+        }
+        return addLocal(name.lexeme);
+    }
+
+    private void define(Token name, Local local) {
+        if (local == null) {
+            emit(OpCode.DEFINE_GLOBAL, constant(name));
+        } else {
+            emit(OpCode.DEFINE_LOCAL, local.slot);
+        }
+    }
+
+    private Local addLocal(String name) {
+        Local local = new Local(name, current.scopeDepth, current.locals.size());
+        current.locals.add(local);
+        if (current.locals.size() > current.proto.slots) current.proto.slots = current.locals.size();
+        return local;
+    }
+
+    private int resolveLocal(Function function, String name) {
+        for (int i = function.locals.size() - 1; i >= 0; i--) {
+            Local local = function.locals.get(i);
+            if (local.depth > 0 && local.name.equals(name)) return local.slot;
+        }
+        return -1;
+    }
+
+    private int resolveUpvalue(Function function, String name) {
+        if (function.enclosing == null) return -1;
+        for (int i = function.enclosing.locals.size() - 1; i >= 0; i--) {
+            Local local = function.enclosing.locals.get(i);
+            if (local.depth > 0 && local.name.equals(name)) {
+                local.captured = true;
+                return addUpvalue(function, 1, local.slot);
+            }
+        }
+        int upvalue = resolveUpvalue(function.enclosing, name);
+        if (upvalue != -1) return addUpvalue(function, 0, upvalue);
+        return -1;
+    }
+
+    private int addUpvalue(Function function, int isLocal, int index) {
+        for (int i = 0; i < function.upvalues.size(); i += 2) {
+            if (function.upvalues.get(i) == isLocal && function.upvalues.get(i + 1) == index) return i / 2;
+        }
+        function.upvalues.add(isLocal);
+        function.upvalues.add(index);
+        return function.upvalues.size() / 2 - 1;
+    }
+
+    private void beginScope() {
+        current.scopeDepth++;
+    }
+
+    private void endScope() {
+        current.scopeDepth--;
+        List<Local> locals = current.locals;
+        int first = -1;
+        boolean captured = false;
+        while (!locals.isEmpty() && locals.get(locals.size() - 1).depth > current.scopeDepth) {
+            Local local = locals.remove(locals.size() - 1);
+            captured |= local.captured;
+            first = local.slot;
+        }
+        if (captured) emit(OpCode.CLOSE_UPVALUES, first);
+    }
+
+    private Loop beginLoop(int slots) {
+        current.loop = new Loop(current.loop, slots);
+        return current.loop;
+    }
+
+    private void endLoop(Loop loop) {
+        for (int exit : loop.exits) patchJump(exit);
+        for (int i = 0; i < loop.tables.size(); i++) {
+            loop.tables.get(i)[loop.tableIndices.get(i)] = current.chunk.count;
+        }
+        current.chunk.loops.add(new int[] {loop.body, current.chunk.count, loop.slots});
+        current.loop = loop.enclosing;
+    }
+
+    private int emitJump(byte op) {
+        emit(op);
+        return emitJumpOperand();
+    }
+
+    private int emitJumpOperand() {
+        current.chunk.writeShort(0xffff);
+        return current.chunk.count - 2;
+    }
+
+    private void patchJump(int at) {
+        int offset = current.chunk.count - at - 2;
+        if (offset > 0xffff) throw new RuntimeError("Too much code to jump over.");
+        current.chunk.patchShort(at, offset);
+    }
+
+    private void patchJumps(List<Integer> jumps) {
+        for (int at : jumps) patchJump(at);
+    }
+
+    // Compiles a condition that jumps when it comes out as 'jumpWhen' and
+    // falls through otherwise, and returns the jumps that still need
+    // patching. and, or and not become more jumps, and comparisons jump on
+    // their result directly, so no boolean value is made along the way.
+    private List<Integer> branch(Expr condition, boolean jumpWhen) {
+        if (condition instanceof Expr.Grouping) {
+            return branch(((Expr.Grouping)condition).expression, jumpWhen);
+        }
+        if (condition instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary)condition;
+            if (unary.operator.type == NOT || unary.operator.type == BANG) return branch(unary.right, !jumpWhen);
+        }
+        List<Integer> jumps = new ArrayList<>();
+        if (condition instanceof Expr.Logical && ((Expr.Logical)condition).operator.type != XOR) {
+            Expr.Logical logical = (Expr.Logical)condition;
+            boolean and = logical.operator.type == AND;
+            if (and != jumpWhen) {
+                // A false operand of an and (or a true one of an or) decides
+                // it, and that's also when we jump.
+                jumps.addAll(branch(logical.left, jumpWhen));
+                jumps.addAll(branch(logical.right, jumpWhen));
+            } else {
+                // Here the left operand deciding means falling through.
+                List<Integer> skip = branch(logical.left, !jumpWhen);
+                jumps.addAll(branch(logical.right, jumpWhen));
+                patchJumps(skip);
+            }
+            return jumps;
+        }
+        byte comparison = condition instanceof Expr.Binary ? comparison(((Expr.Binary)condition).operator.type) : -1;
+        if (comparison != -1) {
+            compile(((Expr.Binary)condition).left);
+            compile(((Expr.Binary)condition).right);
+            emit(jumpWhen ? OpCode.COMPARE_JUMP_IF_TRUE : OpCode.COMPARE_JUMP_IF_FALSE, comparison);
+            jumps.add(emitJumpOperand());
+            return jumps;
+        }
+        compile(condition);
+        jumps.add(emitJump(jumpWhen ? OpCode.JUMP_IF_TRUE : OpCode.JUMP_IF_FALSE));
+        return jumps;
+    }
+
+    private static byte comparison(TokenType type) {
+        switch (type) {
+            case EQUAL_EQUAL: return OpCode.EQ;
+            case BANG_EQUAL: return OpCode.NE;
+            case LESS: return OpCode.LT;
+            case LESS_EQUAL: return OpCode.LE;
+            case GREATER: return OpCode.GT;
+            case GREATER_EQUAL: return OpCode.GE;
+            default: return -1;
+        }
+    }
+
+    private void emitLoop(int start) {
+        emit(OpCode.LOOP);
+        int offset = current.chunk.count - start + 2;
+        if (offset > 0xffff) throw new RuntimeError("Loop body too large.");
+        current.chunk.writeShort(offset);
+    }
+
+    private void emit(byte op, int... operands) {
+        current.chunk.write(op);
+        for (int operand : operands) current.chunk.writeShort(operand);
+    }
+
+    private int constant(Object value) {
+        return current.chunk.addConstant(value);
+    }
+
+    private void block(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            compile(statement);
+        }
+    }
+
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+}
@@ -2,22 +2,80 @@ package com.esjr.bluejay;
 
 import java.util.*;
 
+// Globals are looked up by name in 'values'. Local
+// scopes are given a fixed number of slots by the Resolver instead, and
+// their variables are addressed by (distance, slot). The distance only
+// counts the scopes of the function doing the lookup: a call's environment
+// has no enclosing one, and locals of the functions around it are reached
+// through the cells in its closure (see Cell).
 class Environment {
     final Environment enclosing;
-    final Map<String, Value> values = new HashMap<>();
+    final Map<String, Value> values;
+    final Value[] slots;
+    // Cells for the captured variables of this scope, by slot. Only made
+    // once the scope declares one.
+    Cell[] cells;
+    // Shared by every scope of one call.
+    final Cell[] closure;
 
     Environment() {
         enclosing = null;
+        values = new HashMap<>();
+        slots = null;
+        closure = Cell.NONE;
     }
 
-    Environment(Environment enclosing) {
+    Environment(Environment enclosing, int size) {
         this.enclosing = enclosing;
+        values = null;
+        slots = new Value[size];
+        closure = enclosing.closure;
+    }
+
+    // The outermost scope of a call.
+    Environment(Cell[] closure, int size) {
+        enclosing = null;
+        values = null;
+        slots = new Value[size];
+        this.closure = closure;
     }
     
     void define(String name, Value value) {
         values.put(name, value);
     }
 
+    void define(int slot, Value value) {
+        slots[slot] = value;
+    }
+
+    // Declares a captured variable. Each declaration gets a new cell, so
+    // closures made in different iterations of a loop don't share one.
+    Cell box(int slot, Value value) {
+        if (cells == null) cells = new Cell[slots.length];
+        return cells[slot] = new Cell(value);
+    }
+
+    // Moves the given slots (parameters filled in by a call) into cells.
+    void box(int[] slots) {
+        for (int slot : slots) {
+            box(slot, this.slots[slot]);
+        }
+    }
+
+    // Collects the cells a function declared in this scope needs, as
+    // (depth, slot) pairs listed by the Resolver. A depth of Expr.UPVALUE
+    // takes the cell from this function's own closure instead.
+    Cell[] capture(int[] upvalues) {
+        if (upvalues.length == 0) return Cell.NONE;
+        Cell[] captured = new Cell[upvalues.length / 2];
+        for (int i = 0; i < captured.length; i++) {
+            int depth = upvalues[i * 2];
+            int slot = upvalues[i * 2 + 1];
+            captured[i] = depth == Expr.UPVALUE ? closure[slot] : ancestor(depth).cells[slot];
+        }
+        return captured;
+    }
+
     Value get(Token name) {
         if (values.containsKey(name.lexeme)) return values.get(name.lexeme);
 
@@ -28,43 +86,7 @@ class Environment {
 
     void assign(Interpreter i, Token name, Token operator, Value value) {
         if (values.containsKey(name.lexeme)) {
-            switch (operator.type) {
-                case EQUAL:
-                    values.put(name.lexeme, value);
-                    break;
-                case PLUS_EQUAL:
-                    values.put(name.lexeme, values.get(name.lexeme).add(i, value));
-                    break;
-                case MINUS_EQUAL:
-                    values.put(name.lexeme, values.get(name.lexeme).sub(i, value));
-                    break;
-                case STAR_EQUAL:
-                    values.put(name.lexeme, values.get(name.lexeme).mul(i, value));
-                    break;
-                case SLASH_EQUAL:
-                    values.put(name.lexeme, values.get(name.lexeme).div(i, value));
-                    break;
-                case PERCENT_EQUAL:
-                    values.put(name.lexeme, values.get(name.lexeme).mod(i, value));
-                    break;
-                case STAR_STAR_EQUAL:
-                    values.put(name.lexeme, values.get(name.lexeme).pow(i, value));
-                    break;
-                case PLUS_PLUS:
-                    List<Value> args = new ArrayList<>();
-                    args.add(new Value.Number(1));
-                    Value one = Builtins.numberClass.call(i, args);
-                    values.put(name.lexeme, values.get(name.lexeme).add(i, one));
-                    break;
-                case MINUS_MINUS:
-                    args = new ArrayList<>();
-                    args.add(new Value.Number(1));
-                    one = Builtins.numberClass.call(i, args);
-                    values.put(name.lexeme, values.get(name.lexeme).sub(i, one));
-                    break;
-                default:
-                    throw new UnsupportedOperationException("Token "+operator.lexeme+" is not a valid assignment operator.");
-            }
+            values.put(name.lexeme, operate(i, operator, values.get(name.lexeme), value));
             return;
         }
 
@@ -76,54 +98,6 @@ class Environment {
         throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
     }
 
-    void assignStr(Interpreter i, String name, Token operator, Value value) {
-        if (values.containsKey(name)) {
-            switch (operator.type) {
-                case EQUAL:
-                    values.put(name, value);
-                    break;
-                case PLUS_EQUAL:
-                    values.put(name, values.get(name).add(i, value));
-                    break;
-                case MINUS_EQUAL:
-                    values.put(name, values.get(name).sub(i, value));
-                    break;
-                case STAR_EQUAL:
-                    values.put(name, values.get(name).mul(i, value));
-                    break;
-                case SLASH_EQUAL:
-                    values.put(name, values.get(name).div(i, value));
-                    break;
-                case PERCENT_EQUAL:
-                    values.put(name, values.get(name).mod(i, value));
-                    break;
-                case STAR_STAR_EQUAL:
-                    values.put(name, values.get(name).pow(i, value));
-                    break;
-                    case PLUS_PLUS:
-                        List<Value> args = new ArrayList<>();
-                        args.add(new Value.Number(1));
-                        Value one = Builtins.numberClass.call(i, args);
-                        values.put(name, values.get(name).add(i, one));
-                        break;
-                    case MINUS_MINUS:
-                        args = new ArrayList<>();
-                        args.add(new Value.Number(1));
-                        one = Builtins.numberClass.call(i, args);
-                        values.put(name, values.get(name).sub(i, one));
-                        break;
-                default:
-                    throw new UnsupportedOperationException("Token "+operator.lexeme+" is not a valid assignment operator.");
-            }
-            return;
-        }
-
-        if (enclosing != null) {
-            enclosing.assignStr(i, name, operator, value);
-            return;
-        }
-    }
-
     Environment ancestor(int distance) {
         Environment environment = this;
         for (int i = 0; i < distance; i++) {
@@ -133,46 +107,52 @@ class Environment {
         return environment;
     }
 
-    Value getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
+    Value getAt(int distance, int slot) {
+        return ancestor(distance).slots[slot];
+    }
+
+    void assignAt(Interpreter i, int distance, int slot, Token operator, Value value) {
+        Value[] slots = ancestor(distance).slots;
+        slots[slot] = operate(i, operator, slots[slot], value);
+    }
+
+    Value getCellAt(int distance, int slot) {
+        return ancestor(distance).cells[slot].value;
+    }
+
+    void assignCellAt(Interpreter i, int distance, int slot, Token operator, Value value) {
+        Cell cell = ancestor(distance).cells[slot];
+        cell.value = operate(i, operator, cell.value, value);
+    }
+
+    void assignUpvalue(Interpreter i, int index, Token operator, Value value) {
+        Cell cell = closure[index];
+        cell.value = operate(i, operator, cell.value, value);
     }
 
-    void assignAt(Interpreter i, int distance, String name, Token operator, Value value) {
-        Environment e = ancestor(distance);
+    // Applies an assignment operator ('=', '+=', '++', ...) to the current
+    // value of a variable and returns the value to store back. The VM uses
+    // this directly so both engines agree on compound assignment.
+    static Value operate(Interpreter i, Token operator, Value current, Value value) {
         switch (operator.type) {
             case EQUAL:
-                e.values.put(name, value);
-                break;
+                return value;
             case PLUS_EQUAL:
-                e.values.put(name, e.values.get(name).add(i, value));
-                break;
+                return current.add(i, value);
             case MINUS_EQUAL:
-                e.values.put(name, e.values.get(name).sub(i, value));
-                break;
+                return current.sub(i, value);
             case STAR_EQUAL:
-                e.values.put(name, e.values.get(name).mul(i, value));
-                break;
+                return current.mul(i, value);
             case SLASH_EQUAL:
-                e.values.put(name, e.values.get(name).div(i, value));
-                break;
+                return current.div(i, value);
             case PERCENT_EQUAL:
-                e.values.put(name, e.values.get(name).mod(i, value));
-                break;
+                return current.mod(i, value);
             case STAR_STAR_EQUAL:
-                e.values.put(name, e.values.get(name).pow(i, value));
-                break;
-                case PLUS_PLUS:
-                    List<Value> args = new ArrayList<>();
-                    args.add(new Value.Number(1));
-                    Value one = Builtins.numberClass.call(i, args);
-                    e.values.put(name, e.values.get(name).add(i, one));
-                    break;
-                case MINUS_MINUS:
-                    args = new ArrayList<>();
-                    args.add(new Value.Number(1));
-                    one = Builtins.numberClass.call(i, args);
-                    e.values.put(name, e.values.get(name).sub(i, one));
-                    break;
+                return current.pow(i, value);
+            case PLUS_PLUS:
+                return current.add(i, Builtins.makeNumberValue(1));
+            case MINUS_MINUS:
+                return current.sub(i, Builtins.makeNumberValue(1));
             default:
                 throw new UnsupportedOperationException("Token "+operator.lexeme+" is not a valid assignment operator.");
         }
@@ -3,6 +3,13 @@ package com.esjr.bluejay;
 import java.util.*;
 
 abstract class Expr {
+    // Resolved depth (or declaration slot) of a name that isn't local to any
+    // scope, i.e. one that lives in the globals.
+    static final int GLOBAL = -1;
+    // Resolved depth of a local of an enclosing function. The slot is then an
+    // index into the closure of the function doing the lookup.
+    static final int UPVALUE = -2;
+
     public interface Visitor<T> {
         T visit(Assign expr);
         T visit(Get expr);
@@ -35,6 +42,9 @@ abstract class Expr {
         public final Token name;
         public final Token operator;
         public final Expr value;
+        int depth = GLOBAL;
+        int slot;
+        boolean captured;
     }
 
     static class Get extends Expr {
@@ -50,6 +60,7 @@ abstract class Expr {
 
         public final Expr expr;
         public final Token name;
+        final InlineCache cache = new InlineCache();
     }
 
     static class Set extends Expr {
@@ -69,6 +80,7 @@ abstract class Expr {
         public final Token name;
         public final Token operator;
         public final Expr value;
+        final InlineCache cache = new InlineCache();
     }
 
     static class Binary extends Expr {
@@ -191,6 +203,7 @@ abstract class Expr {
         }
 
         public final Value value;
+        Value constant;
     }
 
     static class Logical extends Expr {
@@ -236,6 +249,9 @@ abstract class Expr {
         }
 
         public final Token name;
+        int depth = GLOBAL;
+        int slot;
+        boolean captured;
     }
 
     abstract <T> T accept(Visitor<T> visitor);
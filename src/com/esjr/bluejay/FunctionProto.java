@@ -0,0 +1,27 @@
+package com.esjr.bluejay;
+
+// The compiled form of a function, method, or the top-level script. At
+// runtime the CLOSURE instruction pairs a proto with its captured upvalues
+// to make a VMFunction or VMMethod.
+class FunctionProto {
+    final String name;
+    final Stmt declaration; // Stmt.Function, Stmt.Method, or null for the script
+    final int arity;
+    final Chunk chunk = new Chunk();
+    // Size of a call frame. Slot 0 holds the callee (or 'this' for methods),
+    // the arguments follow, then every other local.
+    int slots = 1;
+    // (isLocal, index) pairs telling CLOSURE where to find each upvalue:
+    // a slot of the enclosing frame, or one of the enclosing upvalues.
+    int[] upvalues = new int[0];
+
+    FunctionProto(String name, Stmt declaration, int arity) {
+        this.name = name;
+        this.declaration = declaration;
+        this.arity = arity;
+    }
+
+    boolean isMethod() {
+        return declaration instanceof Stmt.Method;
+    }
+}
@@ -0,0 +1,67 @@
+package com.esjr.bluejay;
+
+// Remembers what an attribute name resolved to for a single place in the
+// program (an Expr.Get or Expr.Set, or the matching VM instruction). Entries
+// are keyed by the object's Shape, which pins down both which slot its own
+// attributes are in and (since every class has its own root shape) its
+// class; built-in values have no shape and are keyed by class instead. Most
+// sites only ever see one or two shapes, so a handful of entries makes the
+// lookup an identity check and an array index almost every time. Sites that
+// see more shapes than that just stop caching.
+//
+// Entries are thrown away whenever any class's statics change (see
+// BluejayClass.epoch).
+class InlineCache {
+    private static final int SIZE = 4;
+
+    private final Object[] keys = new Object[SIZE];
+    // The attribute's slot in the object's fields, or -1 if it isn't one of
+    // them; 'values' then has what the class lookup found.
+    private final int[] slots = new int[SIZE];
+    private final Value[] values = new Value[SIZE];
+    // For assignments: the shape the object has afterwards, which is
+    // a different one if the assignment adds the attribute.
+    private final Shape[] shapes = new Shape[SIZE];
+    private int count = 0;
+    private int epoch = -1;
+
+    Value lookup(BluejayObj obj, String name) {
+        if (epoch != BluejayClass.epoch) {
+            count = 0;
+            epoch = BluejayClass.epoch;
+        }
+        Object key = obj.shape != null ? obj.shape : obj.class_;
+        for (int i = 0; i < count; i++) {
+            if (keys[i] == key) return slots[i] >= 0 ? obj.fields[slots[i]] : values[i];
+        }
+        int slot = obj.shape != null ? obj.shape.slot(name) : -1;
+        Value value = slot >= 0 ? null : obj.class_.getStatic(name);
+        if (count < SIZE) {
+            keys[count] = key;
+            slots[count] = slot;
+            values[count] = value;
+            count++;
+        }
+        return slot >= 0 ? obj.fields[slot] : value;
+    }
+
+    // Like BluejayObj.slot, for an object that has a shape. A site always
+    // passes the same 'add', since it only depends on the operator.
+    int slot(BluejayObj obj, String name, boolean add) {
+        Shape shape = obj.shape;
+        for (int i = 0; i < count; i++) {
+            if (keys[i] == shape) {
+                if (shapes[i] != shape) obj.reshape(shapes[i]);
+                return slots[i];
+            }
+        }
+        int slot = obj.slot(name, add);
+        if (count < SIZE) {
+            keys[count] = shape;
+            slots[count] = slot;
+            shapes[count] = obj.shape;
+            count++;
+        }
+        return slot;
+    }
+}
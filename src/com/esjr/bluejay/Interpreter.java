@@ -6,12 +6,16 @@ import static com.esjr.bluejay.TokenType.*;
 class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
     final Environment globals = Builtins.globals;
     public Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
 
+    // Break and Return unwind to the enclosing loop or call. They're thrown
+    // on every break and return rather than in exceptional cases, so they
+    // leave out the stack trace, which would cost far more than the rest of
+    // the unwinding put together.
     public static class Break extends RuntimeException {
         int amount;
         Stmt.Break statement;
         Break(int amount, Stmt.Break statement) {
+            super(null, null, false, false);
             this.amount = amount;
             this.statement = statement;
         }
@@ -21,6 +25,7 @@ class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
         Value value;
         Stmt.Return statement;
         Return(Value value, Stmt.Return statement) {
+            super(null, null, false, false);
             this.value = value;
             this.statement = statement;
         }
@@ -57,7 +62,8 @@ class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
     }
 
     public Void visit(Stmt.Block stmt) {
-        executeBlock(stmt.statements, new Environment(environment));
+        if (stmt.scopeSize == 0) exec(stmt.statements);
+        else executeBlock(stmt.statements, new Environment(environment, stmt.scopeSize));
         return null;
     }
 
@@ -72,8 +78,16 @@ class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
     public Void visit(Stmt.Class stmt) {
         Value inherits = stmt.inherits != null ? eval(stmt.inherits) : null;
         if (!(inherits instanceof BluejayClass) && inherits != null) throw new RuntimeError(stmt.inherits.name, "A class can only inherit from another classes.");
-        BluejayClass class_ = new BluejayClass(stmt, (BluejayClass)inherits);
-        environment.define(stmt.name.lexeme, class_);
+        // A captured class gets its cell first, so its methods can refer to it.
+        Cell cell = stmt.captured ? environment.box(stmt.slot, null) : null;
+        Map<String, Value> methods = new HashMap<>();
+        for (Stmt mthd : stmt.methods) {
+            Stmt.Method method = (Stmt.Method)mthd;
+            methods.put(method.name.lexeme, new BluejayMethod(method, environment.capture(method.upvalues)));
+        }
+        BluejayClass class_ = new BluejayClass(stmt, (BluejayClass)inherits, methods);
+        if (cell != null) cell.value = class_;
+        else define(stmt.slot, stmt.name, class_);
         return null;
     }
 
@@ -83,30 +97,29 @@ class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
     }
 
     public Void visit(Stmt.Foreach stmt) {
-        Value iter = eval(stmt.iter);
-        if (!(iter instanceof BluejayObj)) throw new RuntimeError(stmt.loopVar, "Cannot iterate over object of type '"+typeOf(iter)+"'.");
-        while (((BluejayObj)iter).class_ != Builtins.listClass) {
-            if (!(iter instanceof BluejayObj)) throw new RuntimeError(stmt.loopVar, "Cannot iterate over object of type '"+typeOf(iter)+"'.");
-            Value iterMthd = ((BluejayObj)iter).class_.getStatic("$iter");
-            if (iterMthd instanceof BluejayMethod && iterMthd != null) {
-                iter = ((BluejayRegisteredMethod)((BluejayMethod)iterMthd).register((BluejayObj)iter)).call(this, new ArrayList<>());
-            } else {
-                throw new RuntimeError(stmt.loopVar, "Cannot iterate over object of type '"+typeOf(iter)+"'.");
-            }
-        }
+        List<Value> iterable = iterate(eval(stmt.iter), stmt.loopVar);
         Environment previous = environment;
         try {
-            environment = new Environment(environment);
-            environment.define(stmt.loopVar.lexeme, new Value.Null());
-            @SuppressWarnings("unchecked")
-            List<Value> iterable = (List<Value>)((BluejayObj)iter).specialAttrs.get("elements");
-            for (Value v : iterable) {
-                environment.assign(this, stmt.loopVar, new Token(EQUAL, "="), v);
+            environment = new Environment(environment, stmt.scopeSize);
+            environment.define(0, Builtins.nullValue);
+            // Like the VM, every iteration shares the one loop variable.
+            Cell cell = stmt.captured ? environment.box(0, Builtins.nullValue) : null;
+            Iterator<Value> values = iterable.iterator();
+            while (values.hasNext()) {
+                if (compiled(stmt.loop) != null) {
+                    stmt.loop.code.run(this, environment, values);
+                    break;
+                }
+                Value v = values.next();
+                stmt.profile.hotness++;
+                if (cell != null) cell.value = v;
+                else environment.define(0, v);
                 try {
-                    exec(stmt.body);
+                    iteration(stmt.loop, stmt, stmt.body);
                 } catch (Break b) {
                     if (b.amount == 1) break;
-                    else throw new Break(b.amount-1, b.statement);
+                    b.amount--;
+                    throw b;
                 }
             }
         } finally {
@@ -116,14 +129,16 @@ class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
     }
 
     public Void visit(Stmt.Function stmt) {
-        BluejayFunction function = new BluejayFunction(stmt);
-        environment.define(stmt.name.lexeme, function);
+        // Likewise for a captured function, which may call itself.
+        Cell cell = stmt.captured ? environment.box(stmt.slot, null) : null;
+        BluejayFunction function = new BluejayFunction(stmt, environment.capture(stmt.upvalues));
+        if (cell != null) cell.value = function;
+        else define(stmt.slot, stmt.name, function);
         return null;
     }
 
     public Void visit(Stmt.If stmt) {
-        Value cond = eval(stmt.condition);
-        if (truthy(cond)) {
+        if (test(stmt.condition)) {
             exec(stmt.thenBranch);
         } else if (stmt.elseBranch != null) {
             exec(stmt.elseBranch);
@@ -148,11 +163,17 @@ class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
         if (amount instanceof BluejayObj && ((BluejayObj)amount).class_ == Builtins.numberClass) {
             double num = ((BluejayObj)amount).toNumber(this);
             for (int i=0; i<num; i++) {
+                if (compiled(stmt.loop) != null) {
+                    stmt.loop.code.run(this, environment, num - i);
+                    break;
+                }
+                stmt.profile.hotness++;
                 try {
-                    exec(stmt.body);
+                    iteration(stmt.loop, stmt, stmt.body);
                 } catch (Break b) {
                     if (b.amount == 1) break;
-                    else throw new Break(b.amount-1, b.statement);
+                    b.amount--;
+                    throw b;
                 }
             }
         } else {
@@ -162,50 +183,155 @@ class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
     }
 
     public Void visit(Stmt.Return stmt) {
-        Value v = stmt.value == null ? new Value.Null() : eval(stmt.value);
+        Value v = stmt.value == null ? Builtins.nullValue : eval(stmt.value);
         throw new Return(v, stmt);
     }
 
     public Void visit(Stmt.Var stmt) {
-        environment.define(stmt.name.lexeme, stmt.initializer == null ? new Value.Null() : eval(stmt.initializer));
+        Value value = stmt.initializer == null ? Builtins.nullValue : eval(stmt.initializer);
+        if (stmt.captured) environment.box(stmt.slot, value);
+        else define(stmt.slot, stmt.name, value);
         return null;
     }
 
     public Void visit(Stmt.While stmt) {
-        Value cond = eval(stmt.condition);
-        while (truthy(cond)) {
+        if (stmt.counter != null && environment.slots[stmt.counter.slot] instanceof NativeNumber) {
+            count(stmt);
+            return null;
+        }
+        // A counted loop is only traced from count(), which runs it with
+        // its counter in a local.
+        while (true) {
+            if (stmt.counter == null && compiled(stmt.loop) != null) {
+                stmt.loop.code.run(this, environment, null);
+                break;
+            }
+            if (!test(stmt.condition)) break;
+            stmt.profile.hotness++;
             try {
-                exec(stmt.body);
+                if (stmt.counter == null) iteration(stmt.loop, stmt, stmt.body);
+                else exec(stmt.body);
             } catch (Break b) {
                 if (b.amount == 1) break;
-                else throw new Break(b.amount-1, b.statement);
+                b.amount--;
+                throw b;
             }
-            cond = eval(stmt.condition);
         }
         return null;
     }
 
+    // Runs an iteration of a loop's body, or once the loop is hot, records
+    // its trace from it (see Jit.Loop).
+    private void iteration(Jit.Loop loop, Stmt stmt, Stmt body) {
+        if (++loop.iterations == Jit.THRESHOLD) Jit.trace(loop, stmt, Collections.singletonList(body), this);
+        else exec(body);
+    }
+
+    // The trace a loop is handed over to, if it has one. The handover is
+    // outside the loop's catch of Break, since the trace has already taken
+    // any break its loop should (see TraceCode.run).
+    TraceCode compiled(Jit.Loop loop) {
+        return loop.code;
+    }
+
+    // A counted loop (see Resolver.counted) whose counter starts out as a
+    // number. The counter is a double here, the increment at the end of
+    // the body is skipped in favour of adding the step to it, and the
+    // variable is only updated if something reads it.
+    private void count(Stmt.While stmt) {
+        Expr.Binary condition = (Expr.Binary)stmt.condition;
+        List<Stmt> body = ((Stmt.Block)stmt.body).statements;
+        int last = body.size()-1;
+        Environment env = environment;
+        int slot = stmt.counter.slot;
+        double i = ((NativeNumber)env.slots[slot]).value;
+        while (true) {
+            if (compiled(stmt.loop) != null) {
+                env.define(slot, Builtins.makeNumberValue(i));
+                stmt.loop.code.run(this, env, null);
+                break;
+            }
+            Value limit = eval(condition.right);
+            if (limit instanceof NativeNumber) {
+                if (!compare(condition.operator.type, i, ((NativeNumber)limit).value)) break;
+            } else if (!truthy(binary(condition.operator, Builtins.makeNumberValue(i), limit))) {
+                break;
+            }
+            stmt.profile.hotness++;
+            try {
+                if (++stmt.loop.iterations == Jit.THRESHOLD) Jit.trace(stmt.loop, stmt, body.subList(0, last), this);
+                else for (int j = 0; j < last; j++) exec(body.get(j));
+            } catch (Break b) {
+                if (b.amount == 1) break;
+                b.amount--;
+                throw b;
+            }
+            i += stmt.step;
+            if (stmt.counterRead) env.define(slot, Builtins.makeNumberValue(i));
+        }
+    }
+
+    static boolean compare(TokenType operator, double left, double right) {
+        switch (operator) {
+            case LESS: return left < right;
+            case LESS_EQUAL: return left <= right;
+            case GREATER: return left > right;
+            case GREATER_EQUAL: return left >= right;
+            default: throw new UnsupportedOperationException("Token "+operator+" is not a comparison.");
+        }
+    }
+
+    // Evaluates a condition straight to a Java boolean. and, or and not
+    // are followed through here, so a condition built from them never has
+    // to make a boolean value for its parts.
+    boolean test(Expr condition) {
+        if (condition instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical)condition;
+            switch (logical.operator.type) {
+                case AND: return test(logical.left) && test(logical.right);
+                case OR: return test(logical.left) || test(logical.right);
+                default: break;
+            }
+        } else if (condition instanceof Expr.Unary) {
+            TokenType type = ((Expr.Unary)condition).operator.type;
+            if (type == NOT || type == BANG) return !test(((Expr.Unary)condition).right);
+        }
+        return truthy(eval(condition));
+    }
+
     public Value visit(Expr.Assign expr) {
         Value v = (expr.value != null) ? eval(expr.value) : null;
-        assignVariable(expr.name, expr, expr.operator, v);
+        if (expr.depth == Expr.GLOBAL) {
+            globals.assign(this, expr.name, expr.operator, v);
+        } else if (expr.depth == Expr.UPVALUE) {
+            environment.assignUpvalue(this, expr.slot, expr.operator, v);
+        } else if (expr.captured) {
+            environment.assignCellAt(this, expr.depth, expr.slot, expr.operator, v);
+        } else {
+            environment.assignAt(this, expr.depth, expr.slot, expr.operator, v);
+        }
         return v;
     }
 
     public Value visit(Expr.Get expr) {
-        return eval(expr.expr).getAttr(this, expr.name);
+        return eval(expr.expr).getAttr(this, expr.name, expr.cache);
     }
 
     public Value visit(Expr.Set expr) {
         Value obj = eval(expr.expr);
         Value v = (expr.value != null) ? eval(expr.value) : null;
-        obj.setAttr(this, expr.name.lexeme, expr.operator, v);
+        obj.setAttr(this, expr.name.lexeme, expr.operator, v, expr.cache);
         return v;
     }
 
     public Value visit(Expr.Binary expr) {
         Value left = eval(expr.left);
         Value right = eval(expr.right);
-        switch (expr.operator.type) {
+        return binary(expr.operator, left, right);
+    }
+
+    Value binary(Token operator, Value left, Value right) {
+        switch (operator.type) {
             case PLUS: return left.add(this, right);
             case MINUS: return left.sub(this, right);
             case STAR: return left.mul(this, right);
@@ -219,12 +345,45 @@ class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
             case GREATER: return left.gt(this, right);
             case GREATER_EQUAL: return left.gte(this, right);
             default:
-                throw new UnsupportedOperationException("Token "+expr.operator.lexeme+" is not a valid operator.");
+                throw new UnsupportedOperationException("Token "+operator.lexeme+" is not a valid operator.");
         }
     }
 
     public Value visit(Expr.Call expr) {
-        Value callee = eval(expr.callee);
+        Value callee;
+        if (expr.callee instanceof Expr.Get) {
+            // obj.name(...): call a method with obj as its receiver instead
+            // of making a bound method only to call it once.
+            Expr.Get get = (Expr.Get)expr.callee;
+            Value object = eval(get.expr);
+            if (object instanceof BluejayObj) {
+                callee = ((BluejayObj)object).findAttr(get.name, get.cache);
+                if (callee instanceof BluejayMethod && ((BluejayMethod)callee).arity == expr.arguments.size()) {
+                    return callMethod((BluejayMethod)callee, object, expr);
+                }
+                if (callee instanceof BluejayMethod || callee instanceof NativeMethod) {
+                    return invoke(expr, (BluejayObj)object, callee);
+                }
+            } else {
+                callee = object.getAttr(this, get.name, get.cache);
+            }
+        } else {
+            callee = eval(expr.callee);
+        }
+        // Calls to Bluejay functions and methods with the right number of
+        // arguments evaluate them straight into the new environment. Anything
+        // else, including arity errors, goes through the general path below.
+        if (callee instanceof BluejayFunction && ((BluejayFunction)callee).arity == expr.arguments.size()) {
+            BluejayFunction function = (BluejayFunction)callee;
+            Environment frame = function.frame();
+            for (int i = 0; i < function.arity; i++) {
+                frame.define(i, eval(expr.arguments.get(i)));
+            }
+            return function.run(this, frame);
+        }
+        if (callee instanceof BluejayRegisteredMethod && ((BluejayRegisteredMethod)callee).arity == expr.arguments.size()) {
+            return callMethod(((BluejayRegisteredMethod)callee).method, ((BluejayRegisteredMethod)callee).obj, expr);
+        }
         List<Value> arguments = new ArrayList<>();
         for (Expr argument : expr.arguments) { 
             arguments.add(eval(argument));
@@ -245,6 +404,33 @@ class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
         }
     }
 
+    private Value callMethod(BluejayMethod method, Value object, Expr.Call expr) {
+        Environment frame = method.frame(object);
+        for (int i = 0; i < method.arity; i++) {
+            frame.define(i + 1, eval(expr.arguments.get(i)));
+        }
+        return method.result(this, frame);
+    }
+
+    private Value invoke(Expr.Call expr, BluejayObj object, Value method) {
+        List<Value> arguments = new ArrayList<>();
+        for (Expr argument : expr.arguments) {
+            arguments.add(eval(argument));
+        }
+        int arity = method instanceof BluejayMethod ? ((BluejayMethod)method).arity() : ((NativeMethod)method).arity();
+        if (arguments.size() != arity) {
+            throw new RuntimeError(expr.paren, "Expected " +
+                arity + " arguments but got " +
+                arguments.size() + ".");
+        }
+        try {
+            if (method instanceof BluejayMethod) return ((BluejayMethod)method).call(this, arguments, object);
+            return ((NativeMethod)method).call(this, arguments, object);
+        } catch (Return returnVal) {
+            return returnVal.value;
+        }
+    }
+
     public Value visit(Expr.Dict expr) {
         Map<Value,Value> map = new HashMap<>();
         for (int i=0; i<expr.keys.size(); i++) {
@@ -307,67 +493,56 @@ class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
     }
 
     public Value visit(Expr.ListLiteral expr) {
-        BluejayObj list = (BluejayObj)Builtins.listClass.call(this, new ArrayList<Value>());
-        try {
-            @SuppressWarnings("unchecked")
-            List<Value> elems = (List<Value>)list.specialAttrs.get("elements");
-            for (Expr e : expr.elements) {
-                elems.add(eval(e));
-            }
-        } catch (ClassCastException e) {
-            System.err.println("Cannot access elements of list.");
+        NativeList list = new NativeList(new ArrayList<>(expr.elements.size()));
+        for (Expr e : expr.elements) {
+            list.elements.add(eval(e));
         }
         return list;
     }
 
     public Value visit(Expr.Literal expr) {
-        if (expr.value instanceof Value.BluejayString) {
-            List<Value> args = new ArrayList<>();
-            args.add(expr.value);
-            return (BluejayObj)Builtins.stringClass.call(this, args);
-        } else if (expr.value instanceof Value.Number) {
-            List<Value> args = new ArrayList<>();
-            args.add(expr.value);
-            return (BluejayObj)Builtins.numberClass.call(this, args);
-        } else {
-            return expr.value;
-        }
+        return expr.constant;
     }
 
     public Value visit(Expr.Logical expr) {
         Value left = eval(expr.left);
-        Value right = eval(expr.right);
         switch (expr.operator.type) {
             case AND:
                 if (!truthy(left)) return left;
-                return right;
+                return eval(expr.right);
             case OR:
                 if (truthy(left)) return left;
-                return right;
+                return eval(expr.right);
             case XOR:
-                return new Value.BluejayBoolean(truthy(left) != truthy(right));
+                return Builtins.makeBooleanValue(truthy(left) != truthy(eval(expr.right)));
             default:
                 throw new UnsupportedOperationException("Token "+expr.operator.lexeme+" is not a valid operator.");
         }
     }
 
     public Value visit(Expr.Unary expr) {
-        Value right = eval(expr.right);
-        switch (expr.operator.type) {
+        return unary(expr.operator, eval(expr.right));
+    }
+
+    Value unary(Token operator, Value right) {
+        switch (operator.type) {
             case MINUS:
                 return right.neg(this);
             case PLUS:
                 return right.uadd(this);
             case BANG:
             case NOT:
-                return new Value.BluejayBoolean(!truthy(right));
+                return Builtins.makeBooleanValue(!truthy(right));
             default:
-                throw new UnsupportedOperationException("Token "+expr.operator.lexeme+" is not a valid operator.");
+                throw new UnsupportedOperationException("Token "+operator.lexeme+" is not a valid operator.");
         }
     }
 
     public Value visit(Expr.Var expr) {
-        return lookUpVariable(expr.name, expr);
+        if (expr.depth == Expr.GLOBAL) return globals.get(expr.name);
+        if (expr.depth == Expr.UPVALUE) return environment.closure[expr.slot].value;
+        if (expr.captured) return environment.getCellAt(expr.depth, expr.slot);
+        return environment.getAt(expr.depth, expr.slot);
     }
 
     void executeBlock(List<Stmt> statements, Environment environment) {
@@ -382,35 +557,56 @@ class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
         }
     }
 
-    public void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
+    // The value a literal evaluates to. These are never mutated, so each
+    // literal's is made once (by the Resolver) and handed out every time.
+    static Value literal(Value value) {
+        if (value instanceof Value.BluejayString) {
+            return Builtins.makeStringValue(((Value.BluejayString)value).value);
+        } else if (value instanceof Value.Number) {
+            return Builtins.makeNumberValue(((Value.Number)value).value);
+        } else {
+            return value;
+        }
     }
 
-    private Value lookUpVariable(Token name, Expr expr) {
-        //if (name.type == THIS) return environment.get(name);
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            return environment.getAt(distance, name.lexeme);
-        } else {
-            return globals.get(name);
+    // Resolves the target of a foreach loop to the list it walks over,
+    // following '$iter' methods until we reach a built-in List.
+    List<Value> iterate(Value iter, Token loopVar) {
+        if (!(iter instanceof BluejayObj)) throw new RuntimeError(loopVar, "Cannot iterate over object of type '"+typeOf(iter)+"'.");
+        while (!(iter instanceof NativeList)) {
+            Value iterMthd = ((BluejayObj)iter).class_.getStatic("$iter");
+            if (iterMthd instanceof BluejayMethod) {
+                try {
+                    iter = ((BluejayMethod)iterMthd).call(this, new ArrayList<>(), iter);
+                } catch (Return r) {
+                    iter = r.value;
+                }
+            } else {
+                throw new RuntimeError(loopVar, "Cannot iterate over object of type '"+typeOf(iter)+"'.");
+            }
+            if (!(iter instanceof BluejayObj)) throw new RuntimeError(loopVar, "Cannot iterate over object of type '"+typeOf(iter)+"'.");
         }
+        return ((NativeList)iter).elements;
     }
 
-    private void assignVariable(Token name, Expr expr, Token operator, Value value) {
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            environment.assignAt(this, distance, name.lexeme, operator, value);
+    private void define(int slot, Token name, Value value) {
+        if (slot == Expr.GLOBAL) {
+            environment.define(name.lexeme, value);
         } else {
-            globals.assign(this, name, operator, value);
+            environment.define(slot, value);
         }
     }
 
     public String typeOf(Value x) {
+        // Built-in objects like NativeNumber are still just objects to the user.
+        if (x instanceof BluejayObj) return BluejayObj.class.getSimpleName();
         return x.getClass().getSimpleName();
     }
 
     public boolean truthy(Value x) {
-        if (x instanceof Value.BluejayBoolean) {
+        if (x instanceof BluejayObj) {
+            return ((BluejayObj)x).toBoolean(this);
+        } else if (x instanceof Value.BluejayBoolean) {
             return ((Value.BluejayBoolean)x).value;
         } else if (x instanceof Value.Number) {
             return ((Value.Number)x).value != 0;
@@ -422,8 +618,6 @@ class Interpreter implements Expr.Visitor<Value>, Stmt.Visitor<Object> {
             return ((Value.Dict)x).elements.size() > 0;
         } else if (x instanceof Value.Null) {
             return false;
-        } else if (x instanceof BluejayObj) {
-            return ((BluejayObj)x).toBoolean(this);
         }
         return false;
     }
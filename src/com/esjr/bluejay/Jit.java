@@ -0,0 +1,156 @@
+package com.esjr.bluejay;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Tiered execution for the tree-walking engines. Every function and method
+// declaration has a Profile counting its calls and the loop iterations run
+// in it while it's interpreted; once that reaches THRESHOLD, the next call
+// compiles the body to a JVM class (see JitCompiler) and from then on every
+// call, from every closure of the declaration, runs that instead, where
+// HotSpot can compile it like any other Java code.
+//
+// On the tree engine, a loop that goes round that many times while it's
+// interpreted is traced as well, which gets the loops of a function called
+// only once (or of the top level) compiled too: see Loop.
+//
+// A body using something the compiler doesn't handle just keeps being
+// interpreted, as does everything when Bluejay.jit (--no-jit) is off.
+// --jit-log reports each function and loop as it's compiled or turned down.
+class Jit {
+    static final int THRESHOLD = 1000;
+
+    static class Profile {
+        int hotness = 0;
+        JitCode code;
+    }
+
+    // The trace of a while, foreach or repeat loop. The interpreter counts
+    // the loop's back-edges in 'iterations'; once that reaches THRESHOLD,
+    // the next iteration runs in a TraceRecorder, which notes the path it
+    // takes in 'seen': which branch of each if ran, and whether each
+    // operator only got numbers. JitCompiler then compiles the whole loop,
+    // keeping to that path, and from then on the interpreter hands the loop
+    // over to 'code' (wherever it's got to) every time it runs.
+    //
+    // The compiled loop checks that the path still holds as it goes. A
+    // branch that wasn't taken while recording is a side exit: the
+    // interpreter runs it, in the same environment, and the compiled code
+    // carries on after it. An operator guarded on numbers that gets
+    // something else calls the operator method like the interpreter does.
+    static class Loop {
+        // For if statements.
+        static final int THEN = 1, ELSE = 2;
+        // For operators.
+        static final int NUMBERS = 1, OTHERS = 2;
+
+        int iterations = 0;
+        TraceCode code;
+        final Map<Object, Integer> seen = new IdentityHashMap<>();
+
+        void see(Object node, int what) {
+            seen.merge(node, what, (a, b) -> a | b);
+        }
+
+        // What was seen of a node, or 0 if the recording never got to it.
+        int seen(Object node) {
+            return seen.getOrDefault(node, 0);
+        }
+    }
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static int classes = 0;
+
+    static JitCode compile(Profile profile, String kind, Token name, Stmt.Block body, int scopeSize, int parameters, int[] capturedParams) {
+        // Whatever happens, this is the only try.
+        profile.hotness = Integer.MIN_VALUE;
+        if (!Bluejay.jit) return null;
+        String description = kind + " " + name.lexeme;
+        try {
+            JitCompiler.Constants constants = new JitCompiler.Constants();
+            JitCompiler compiler = new JitCompiler(constants, body.statements, scopeSize, parameters, capturedParams, false);
+            // HotSpot leaves methods bigger than this to its own interpreter.
+            byte[] bytes = compiler.compile("com/esjr/bluejay/Jit$" + name.lexeme.replaceAll("\\W", "_") + "$" + classes++, 8000);
+            Class<?> generated = define(bytes);
+            profile.code = (JitCode)generated.getDeclaredConstructor(Object[].class).newInstance((Object)constants.values.toArray());
+            if (Bluejay.jitLog) System.err.println("[jit] compiled " + description + " (" + bytes.length + " bytes)");
+        } catch (JitCompiler.Unsupported e) {
+            if (Bluejay.jitLog) System.err.println("[jit] " + description + " stays interpreted: " + e.getMessage());
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // A bug in the compiler shouldn't take a working program down
+            // with it: the code just stays interpreted.
+            if (Bluejay.jitLog) System.err.println("[jit] " + description + " stays interpreted: " + e);
+        }
+        return profile.code;
+    }
+
+    // Runs the next iteration of a hot loop's body (all but the increment,
+    // for a counted loop) in a TraceRecorder, then compiles the loop from
+    // what it saw. 'in.environment' is the scope the compiled loop will be
+    // handed: the one the loop itself runs in, or for a foreach loop, the
+    // scope of its variable.
+    static void trace(Loop loop, Stmt statement, List<Stmt> body, Interpreter in) {
+        // Whatever happens, this is the only try.
+        loop.iterations = Integer.MIN_VALUE;
+        if (!Bluejay.jit) {
+            in.exec(body);
+            return;
+        }
+        try {
+            new TraceRecorder(in, loop).exec(body);
+        } finally {
+            // Even if the iteration broke out of the loop, what it saw is
+            // good for the next time the loop runs.
+            compile(loop, statement, in.environment);
+        }
+    }
+
+    private static void compile(Loop loop, Stmt statement, Environment environment) {
+        String description = statement instanceof Stmt.While ? "while loop"
+            : statement instanceof Stmt.Repeat ? "repeat loop"
+            : "foreach loop over " + ((Stmt.Foreach)statement).loopVar.lexeme;
+        try {
+            JitCompiler.Constants constants = new JitCompiler.Constants();
+            JitCompiler compiler = new JitCompiler(constants, statement, loop, environment);
+            byte[] bytes = compiler.compile("com/esjr/bluejay/Trace$" + classes++, 8000);
+            Class<?> generated = define(bytes);
+            loop.code = (TraceCode)generated.getDeclaredConstructor(Object[].class).newInstance((Object)constants.values.toArray());
+            if (Bluejay.jitLog) System.err.println("[jit] compiled " + description + " (" + bytes.length + " bytes)");
+        } catch (JitCompiler.Unsupported e) {
+            if (Bluejay.jitLog) System.err.println("[jit] " + description + " stays interpreted: " + e.getMessage());
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            if (Bluejay.jitLog) System.err.println("[jit] " + description + " stays interpreted: " + e);
+        }
+    }
+
+    // Loads a generated class as a hidden class where the JVM has them
+    // (15 and up), which can be unloaded once nothing uses it, and as an
+    // ordinary class in this package otherwise.
+    private static Class<?> define(byte[] bytes) throws ReflectiveOperationException {
+        if (defineHidden != null) {
+            return ((MethodHandles.Lookup)defineHidden.invoke(lookup, bytes, true, noOptions)).lookupClass();
+        }
+        return lookup.defineClass(bytes);
+    }
+
+    private static final Method defineHidden;
+    private static final Object noOptions;
+
+    static {
+        Method method = null;
+        Object options = null;
+        try {
+            Class<?> option = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            options = Array.newInstance(option, 0);
+            method = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, options.getClass());
+        } catch (ReflectiveOperationException e) {
+            // Before Java 15.
+        }
+        defineHidden = method;
+        noOptions = options;
+    }
+}
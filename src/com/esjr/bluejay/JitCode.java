@@ -0,0 +1,229 @@
+package com.esjr.bluejay;
+
+import java.util.*;
+
+// A function or method compiled by JitCompiler, or a run of top-level
+// statements compiled by AotCompiler. The generated subclass's run() is the
+// whole body; 'constants' has the tokens, caches, literal values and
+// declarations it refers to.
+//
+// The static methods are the parts of the interpreter that compiled code
+// calls instead of inlining, each doing exactly what the matching visit()
+// does. Simple operators are called on the values directly, which lets
+// HotSpot see which kinds of values each place in a program gets.
+abstract class JitCode {
+    // What run() returns when the body runs to the end without a return
+    // statement. It's a value of its own, since `return` can give null.
+    static final Value END = new Value.Null();
+
+    final Object[] constants;
+    // The return statement run() last returned from, for
+    // BluejayMethod.initialize to rethrow.
+    Stmt.Return returned;
+
+    JitCode(Object[] constants) {
+        this.constants = constants;
+    }
+
+    // Runs the body in a frame made by BluejayFunction.frame or
+    // BluejayMethod.frame. Returns the value of a return statement, or
+    // END.
+    abstract Value run(Interpreter in, Environment environment);
+
+    static Value call(Interpreter in, Value callee, Value[] arguments, Token paren) {
+        if (callee instanceof BluejayFunction && ((BluejayFunction)callee).arity == arguments.length) {
+            BluejayFunction function = (BluejayFunction)callee;
+            Environment frame = function.frame();
+            for (int i = 0; i < arguments.length; i++) {
+                frame.define(i, arguments[i]);
+            }
+            return function.run(in, frame);
+        }
+        if (callee instanceof BluejayRegisteredMethod && ((BluejayRegisteredMethod)callee).arity == arguments.length) {
+            return callMethod(in, ((BluejayRegisteredMethod)callee).method, ((BluejayRegisteredMethod)callee).obj, arguments);
+        }
+        if (!(callee instanceof BluejayCallable)) {
+            throw new RuntimeError(paren, "Object of type '"+in.typeOf(callee)+"' is not callable.");
+        }
+        BluejayCallable function = (BluejayCallable)callee;
+        if (arguments.length != function.arity()) {
+            throw new RuntimeError(paren, "Expected " +
+                function.arity() + " arguments but got " +
+                arguments.length + ".");
+        }
+        try {
+            return function.call(in, Arrays.asList(arguments));
+        } catch (Interpreter.Return r) {
+            return r.value;
+        }
+    }
+
+    // The callee of obj.name(...), looked up before the arguments are
+    // evaluated.
+    static Value lookup(Interpreter in, Value object, Token name, InlineCache cache) {
+        if (object instanceof BluejayObj) return ((BluejayObj)object).findAttr(name, cache);
+        return object.getAttr(in, name, cache);
+    }
+
+    static Value invoke(Interpreter in, Value object, Value callee, Value[] arguments, Token paren) {
+        if (object instanceof BluejayObj) {
+            if (callee instanceof BluejayMethod && ((BluejayMethod)callee).arity == arguments.length) {
+                return callMethod(in, (BluejayMethod)callee, object, arguments);
+            }
+            if (callee instanceof BluejayMethod || callee instanceof NativeMethod) {
+                int arity = callee instanceof BluejayMethod ? ((BluejayMethod)callee).arity() : ((NativeMethod)callee).arity();
+                if (arguments.length != arity) {
+                    throw new RuntimeError(paren, "Expected " +
+                        arity + " arguments but got " +
+                        arguments.length + ".");
+                }
+                try {
+                    if (callee instanceof BluejayMethod) return ((BluejayMethod)callee).call(in, Arrays.asList(arguments), object);
+                    return ((NativeMethod)callee).call(in, Arrays.asList(arguments), (BluejayObj)object);
+                } catch (Interpreter.Return r) {
+                    return r.value;
+                }
+            }
+        }
+        return call(in, callee, arguments, paren);
+    }
+
+    private static Value callMethod(Interpreter in, BluejayMethod method, Value object, Value[] arguments) {
+        Environment frame = method.frame(object);
+        for (int i = 0; i < arguments.length; i++) {
+            frame.define(i + 1, arguments[i]);
+        }
+        return method.result(in, frame);
+    }
+
+    // Comparisons as conditions.
+
+    static boolean eq(Interpreter in, Value left, Value right) {
+        if (left instanceof NativeNumber && right instanceof NativeNumber) return ((NativeNumber)left).value == ((NativeNumber)right).value;
+        return in.truthy(left.eq(in, right));
+    }
+
+    static boolean ne(Interpreter in, Value left, Value right) {
+        if (left instanceof NativeNumber && right instanceof NativeNumber) return ((NativeNumber)left).value != ((NativeNumber)right).value;
+        return in.truthy(left.ne(in, right));
+    }
+
+    static boolean lt(Interpreter in, Value left, Value right) {
+        if (left instanceof NativeNumber && right instanceof NativeNumber) return ((NativeNumber)left).value < ((NativeNumber)right).value;
+        return in.truthy(left.lt(in, right));
+    }
+
+    static boolean le(Interpreter in, Value left, Value right) {
+        if (left instanceof NativeNumber && right instanceof NativeNumber) return ((NativeNumber)left).value <= ((NativeNumber)right).value;
+        return in.truthy(left.lte(in, right));
+    }
+
+    static boolean gt(Interpreter in, Value left, Value right) {
+        if (left instanceof NativeNumber && right instanceof NativeNumber) return ((NativeNumber)left).value > ((NativeNumber)right).value;
+        return in.truthy(left.gt(in, right));
+    }
+
+    static boolean ge(Interpreter in, Value left, Value right) {
+        if (left instanceof NativeNumber && right instanceof NativeNumber) return ((NativeNumber)left).value >= ((NativeNumber)right).value;
+        return in.truthy(left.gte(in, right));
+    }
+
+    static Value xor(Interpreter in, Value left, Value right) {
+        return Builtins.makeBooleanValue(in.truthy(left) != in.truthy(right));
+    }
+
+    static Value setIndex(Interpreter in, Value object, Value index, Token operator, Value value) {
+        if (operator.type == TokenType.EQUAL) {
+            object.setItem(in, index, value);
+            return value;
+        }
+        Value current = object.getItem(in, index);
+        switch (operator.type) {
+            case PLUS_EQUAL: value = current.add(in, value); break;
+            case MINUS_EQUAL: value = current.sub(in, value); break;
+            case STAR_EQUAL: value = current.mul(in, value); break;
+            case SLASH_EQUAL: value = current.div(in, value); break;
+            case PERCENT_EQUAL: value = current.mod(in, value); break;
+            case STAR_STAR_EQUAL: value = current.pow(in, value); break;
+            default:
+                throw new UnsupportedOperationException("Token "+operator.lexeme+" is not a valid operator.");
+        }
+        object.setItem(in, index, value);
+        return value;
+    }
+
+    static Value list(Value[] elements) {
+        return new NativeList(new ArrayList<>(Arrays.asList(elements)));
+    }
+
+    // Keys and values alternate.
+    static Value dict(Value[] entries) {
+        Map<Value,Value> map = new HashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            map.put(entries[i], entries[i + 1]);
+        }
+        return new Value.Dict(map);
+    }
+
+    static Value superclass(Value inherits, Token name) {
+        if (!(inherits instanceof BluejayClass)) throw new RuntimeError(name, "A class can only inherit from another classes.");
+        return inherits;
+    }
+
+    static Value declareClass(Stmt.Class declaration, Value inherits, Value[] methods) {
+        Map<String, Value> statics = new HashMap<>();
+        for (Value method : methods) {
+            statics.put(((BluejayMethod)method).declaration.name.lexeme, method);
+        }
+        return new BluejayClass(declaration, (BluejayClass)inherits, statics);
+    }
+
+    // The amount of a break that may leave the compiled code; 'amount' is
+    // null for a plain `break`.
+    static int breakAmount(Interpreter in, Value amount, Stmt.Break stmt) {
+        Value v = amount == null ? new Value.Number(1) : amount;
+        if (v instanceof BluejayObj && ((BluejayObj)v).class_ == Builtins.numberClass)
+            v = new Value.Number(v.toNumber(in));
+        if (!(v instanceof Value.Number) || ((Value.Number)v).value%1 != 0) throw new RuntimeError(stmt.keyword, "Break amount must be an integer.");
+        return (int)((Value.Number)v).value;
+    }
+
+    static Interpreter.Break breakOut(int amount, Stmt.Break stmt) {
+        return new Interpreter.Break(amount, stmt);
+    }
+
+    static Interpreter.Return returnOut(Value value, Stmt.Return stmt) {
+        return new Interpreter.Return(value, stmt);
+    }
+
+    // A side exit from a trace: runs a statement the trace left out in the
+    // interpreter, in the scope the compiled code has got to.
+    static void interpret(Interpreter in, Environment environment, Stmt stmt) {
+        Environment previous = in.environment;
+        try {
+            in.environment = environment;
+            stmt.accept(in);
+        } finally {
+            in.environment = previous;
+        }
+    }
+
+    // Whether a break coming out of a loop stops there, as the
+    // interpreter's loops decide it; if not, it's one loop closer to it.
+    static boolean land(Interpreter.Break b) {
+        if (b.amount == 1) return true;
+        b.amount--;
+        return false;
+    }
+
+    static RuntimeException unsupported(String message) {
+        return new UnsupportedOperationException(message);
+    }
+
+    static double repeatAmount(Interpreter in, Value amount, Token paren) {
+        if (amount instanceof BluejayObj && ((BluejayObj)amount).class_ == Builtins.numberClass) {
+            return ((BluejayObj)amount).toNumber(in);
+        }
+        throw new RuntimeError(paren, "Amount for 'repeat' statement must be a number.");
+    }
+}
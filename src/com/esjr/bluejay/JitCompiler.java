@@ -0,0 +1,1265 @@
+package com.esjr.bluejay;
+
+import java.util.*;
+import static com.esjr.bluejay.ClassAssembler.*;
+import static com.esjr.bluejay.TokenType.*;
+
+// Compiles the body of a function or method (or, for AotCompiler, some of
+// a script's statements) to the run() method of a JitCode subclass, doing
+// just what the tree-walking interpreter would. Locals become JVM locals
+// instead of Environment slots, captured ones holding their Cell, control
+// flow becomes jumps (break and return included, so neither throws unless
+// it leaves the code, or a break's amount is only known when it runs),
+// and everything else is a call into the same runtime code the interpreter
+// uses (see JitCode). Each loop catches the breaks thrown inside it, as
+// the interpreter's do.
+//
+// Every expression leaves its value in a local of its own rather than on
+// the operand stack, so the stack is empty at every jump, which is what
+// ClassAssembler needs; HotSpot sees straight through the extra locals.
+//
+// It also compiles hot loops of interpreted code to the run() method of a
+// TraceCode subclass (see Jit.Loop). A trace carries on in the interpreter's
+// own environments, since the statements it leaves out (side exits) are
+// handed back to the interpreter in the middle of it, and keeps to the path
+// its recording took: operators that only got numbers do the arithmetic
+// inline, behind a check that they still do.
+//
+// compile() throws Unsupported if the code comes out bigger than it's
+// allowed to be.
+class JitCompiler implements Expr.Visitor<Integer>, Stmt.Visitor<Void> {
+    static class Unsupported extends RuntimeException {
+        Unsupported(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private static final String VALUE = "com/esjr/bluejay/Value";
+    private static final String INTERPRETER = "com/esjr/bluejay/Interpreter";
+    private static final String ENVIRONMENT = "com/esjr/bluejay/Environment";
+    private static final String CELL = "com/esjr/bluejay/Cell";
+    private static final String TOKEN = "com/esjr/bluejay/Token";
+    private static final String CACHE = "com/esjr/bluejay/InlineCache";
+    private static final String NUMBER = "com/esjr/bluejay/NativeNumber";
+    private static final String JIT_CODE = "com/esjr/bluejay/JitCode";
+    private static final String TRACE_CODE = "com/esjr/bluejay/TraceCode";
+    private static final String BREAK = "com/esjr/bluejay/Interpreter$Break";
+    private static final String CELLS = "[Lcom/esjr/bluejay/Cell;";
+    private static final String ENVIRONMENT_OPERATE = "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Token;Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Value;)Lcom/esjr/bluejay/Value;";
+    private static final String OPERATOR = "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Value;)Lcom/esjr/bluejay/Value;";
+    private static final String COMPARISON = "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Value;)Z";
+
+    // Locals 1 and 2 are run()'s parameters, and for a trace, 3 as well.
+    private static final int IN = 1, ENV = 2, REST = 3;
+
+    // The objects compiled code refers to, which its class is given as an
+    // array. A program compiled ahead of time has one for all its classes.
+    static class Constants {
+        final List<Object> values = new ArrayList<>();
+        private final Map<Object, Integer> indices = new IdentityHashMap<>();
+
+        int indexOf(Object value) {
+            Integer index = indices.get(value);
+            if (index == null) {
+                index = values.size();
+                values.add(value);
+                indices.put(value, index);
+            }
+            return index;
+        }
+    }
+
+    private final Constants constants;
+    private final List<Stmt> body;
+    private final int scopeSize;
+    private final int parameters;
+    private final int[] capturedParams;
+    // Whether the code is top-level statements, where a return or a break
+    // out of every loop can only throw.
+    private final boolean script;
+    // For a trace, the loop and what its recording saw, and how many local
+    // scopes there are around the one it's handed.
+    private final Stmt traced;
+    private final Jit.Loop trace;
+    private final int outer;
+
+    private ClassAssembler code;
+    private int closure;
+    private int constantsLocal;
+    // The JVM local for each slot of each scope, innermost last, or -1 for
+    // one that hasn't been needed yet.
+    private final List<int[]> scopes = new ArrayList<>();
+    // Where a break out of each enclosing loop goes, innermost last.
+    private final List<Label> loops = new ArrayList<>();
+    private final Deque<Integer> temps = new ArrayDeque<>();
+    // In a trace, the JVM local holding the Environment of each scope,
+    // innermost last.
+    private final List<Integer> environments = new ArrayList<>();
+    // Where a loop's handler keeps the break it caught.
+    private int caught = -1;
+
+    // 'parameters' is how many of the first slots the caller has filled in
+    // (including `this` for methods).
+    JitCompiler(Constants constants, List<Stmt> body, int scopeSize, int parameters, int[] capturedParams, boolean script) {
+        this.constants = constants;
+        this.body = body;
+        this.scopeSize = scopeSize;
+        this.parameters = parameters;
+        this.capturedParams = capturedParams;
+        this.script = script;
+        this.traced = null;
+        this.trace = null;
+        this.outer = 0;
+    }
+
+    // A trace of 'statement', a while, repeat or foreach loop, to be handed
+    // 'environment' or one like it (see TraceCode.run). A return, or a
+    // break out of the loop and beyond, throws as it does at the top level.
+    JitCompiler(Constants constants, Stmt statement, Jit.Loop loop, Environment environment) {
+        this.constants = constants;
+        this.body = null;
+        this.scopeSize = 0;
+        this.parameters = 0;
+        this.capturedParams = new int[0];
+        this.script = true;
+        this.traced = statement;
+        this.trace = loop;
+        int outer = 0;
+        for (Environment e = environment.enclosing; e != null && e.slots != null; e = e.enclosing) outer++;
+        this.outer = outer;
+    }
+
+    // 'limit' is the most bytes of code the method may have.
+    byte[] compile(String className, int limit) {
+        if (trace != null) return compileTrace(className, limit);
+        code = new ClassAssembler(className, JIT_CODE, "run",
+            "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Environment;)Lcom/esjr/bluejay/Value;",
+            INTERPRETER, ENVIRONMENT);
+        start();
+
+        beginScope(scopeSize);
+        for (int i = 0; i < parameters; i++) {
+            int value = temp();
+            code.aload(ENV);
+            code.field(GETFIELD, ENVIRONMENT, "slots", "[Lcom/esjr/bluejay/Value;");
+            code.iconst(i);
+            code.insn(AALOAD, -1);
+            code.astore(value);
+            boolean captured = false;
+            for (int slot : capturedParams) captured |= slot == i;
+            if (captured) {
+                box(local(0, i, true), value);
+            } else {
+                code.aload(value);
+                code.astore(local(0, i, false));
+            }
+            free(value);
+        }
+        for (Stmt stmt : body) compile(stmt);
+        code.field(GETSTATIC, JIT_CODE, "END", "Lcom/esjr/bluejay/Value;");
+        code.insn(ARETURN, -1);
+
+        if (code.size() > limit) throw new Unsupported("it's too big");
+        return code.toBytes();
+    }
+
+    private byte[] compileTrace(String className, int limit) {
+        code = new ClassAssembler(className, TRACE_CODE, "run",
+            "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Environment;Ljava/lang/Object;)V",
+            INTERPRETER, ENVIRONMENT, "java/lang/Object");
+        start();
+
+        // The scopes around the loop's, outermost first, which don't change
+        // while it runs.
+        int[] scopes = new int[outer];
+        int inner = ENV;
+        for (int i = outer-1; i >= 0; i--) {
+            scopes[i] = code.local(ENVIRONMENT);
+            code.aload(inner);
+            code.field(GETFIELD, ENVIRONMENT, "enclosing", "Lcom/esjr/bluejay/Environment;");
+            code.astore(scopes[i]);
+            inner = scopes[i];
+        }
+        for (int scope : scopes) environments.add(scope);
+        environments.add(ENV);
+
+        if (traced instanceof Stmt.While) {
+            Stmt.While stmt = (Stmt.While)traced;
+            // A counted loop is only handed over from Interpreter.count,
+            // with the counter stored in its variable.
+            if (stmt.counter != null) count(stmt);
+            else visit(stmt);
+        } else if (traced instanceof Stmt.Repeat) {
+            int amount = code.local("D");
+            code.aload(REST);
+            code.type(CHECKCAST, "java/lang/Double", 0);
+            code.invoke(INVOKEVIRTUAL, "java/lang/Double", "doubleValue", "()D");
+            code.dstore(amount);
+            repeat((Stmt.Repeat)traced, amount);
+        } else {
+            int iterator = code.local("java/util/Iterator");
+            code.aload(REST);
+            code.type(CHECKCAST, "java/util/Iterator", 0);
+            code.astore(iterator);
+            foreach((Stmt.Foreach)traced, iterator);
+        }
+        code.insn(ClassAssembler.RETURN, 0);
+
+        if (code.size() > limit) throw new Unsupported("it's too big");
+        return code.toBytes();
+    }
+
+    // Loads the closure and the constants into locals of their own.
+    private void start() {
+        closure = code.local("[Lcom/esjr/bluejay/Cell;");
+        constantsLocal = code.local("[Ljava/lang/Object;");
+        code.aload(ENV);
+        code.field(GETFIELD, ENVIRONMENT, "closure", "[Lcom/esjr/bluejay/Cell;");
+        code.astore(closure);
+        code.aload(0);
+        code.field(GETFIELD, trace != null ? TRACE_CODE : JIT_CODE, "constants", "[Ljava/lang/Object;");
+        code.astore(constantsLocal);
+    }
+
+    // Helpers
+
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    // Compiles an expression, returning the temporary local its value ends
+    // up in, which the caller frees once it's done with it.
+    private int value(Expr expr) {
+        return expr.accept(this);
+    }
+
+    private int temp() {
+        return temps.isEmpty() ? code.local(VALUE) : temps.pop();
+    }
+
+    private void free(int temp) {
+        temps.push(temp);
+    }
+
+    // In a trace, a scope is an Environment like the interpreter's.
+    private void beginScope(int size) {
+        if (trace != null) {
+            int environment = code.local(ENVIRONMENT);
+            code.type(NEW, ENVIRONMENT, 1);
+            code.insn(DUP, 1);
+            code.aload(environments.get(environments.size()-1));
+            code.iconst(size);
+            code.invoke(INVOKESPECIAL, ENVIRONMENT, "<init>", "(Lcom/esjr/bluejay/Environment;I)V");
+            code.astore(environment);
+            environments.add(environment);
+            return;
+        }
+        int[] scope = new int[size];
+        Arrays.fill(scope, -1);
+        scopes.add(scope);
+    }
+
+    private void endScope() {
+        if (trace != null) environments.remove(environments.size()-1);
+        else scopes.remove(scopes.size()-1);
+    }
+
+    // In a trace, the JVM local holding the Environment 'depth' scopes out.
+    private int environment(int depth) {
+        return environments.get(environments.size()-1-depth);
+    }
+
+    // Pushes the value of a variable 'depth' scopes out that isn't captured.
+    private void load(int depth, int slot) {
+        if (trace == null) {
+            code.aload(local(depth, slot, false));
+            return;
+        }
+        code.aload(environment(depth));
+        code.field(GETFIELD, ENVIRONMENT, "slots", "[Lcom/esjr/bluejay/Value;");
+        code.iconst(slot);
+        code.insn(AALOAD, -1);
+    }
+
+    // Stores the value in the temporary 'value' in such a variable.
+    private void store(int depth, int slot, int value) {
+        if (trace == null) {
+            code.aload(value);
+            code.astore(local(depth, slot, false));
+            return;
+        }
+        code.aload(environment(depth));
+        code.field(GETFIELD, ENVIRONMENT, "slots", "[Lcom/esjr/bluejay/Value;");
+        code.iconst(slot);
+        code.aload(value);
+        code.insn(AASTORE, -3);
+    }
+
+    // The JVM local for a slot 'depth' scopes out, made the first time it's
+    // asked for. A captured variable's local holds its Cell.
+    private int local(int depth, int slot, boolean captured) {
+        int[] scope = scopes.get(scopes.size()-1-depth);
+        if (scope[slot] < 0) scope[slot] = code.local(captured ? CELL : VALUE);
+        return scope[slot];
+    }
+
+    // Pushes the Cell of a captured variable or an upvalue.
+    private void cell(int depth, int slot) {
+        if (depth == Expr.UPVALUE) {
+            code.aload(closure);
+            code.iconst(slot);
+            code.insn(AALOAD, -1);
+        } else if (trace != null) {
+            code.aload(environment(depth));
+            code.field(GETFIELD, ENVIRONMENT, "cells", CELLS);
+            code.iconst(slot);
+            code.insn(AALOAD, -1);
+        } else {
+            code.aload(local(depth, slot, true));
+        }
+    }
+
+    // In a trace, declares a captured variable in the current scope with
+    // Environment.box, holding the value in the temporary 'value', or
+    // nothing if that's -1. The Cell is left on the stack.
+    private void boxSlot(int slot, int value) {
+        code.aload(environment(0));
+        code.iconst(slot);
+        if (value < 0) code.insn(ACONST_NULL, 1);
+        else code.aload(value);
+        code.invoke(INVOKEVIRTUAL, ENVIRONMENT, "box", "(ILcom/esjr/bluejay/Value;)Lcom/esjr/bluejay/Cell;");
+    }
+
+    // Stores a new Cell in 'local', holding the value in the temporary
+    // 'value', or nothing if that's -1.
+    private void box(int local, int value) {
+        code.type(NEW, CELL, 1);
+        code.insn(DUP, 1);
+        if (value < 0) code.insn(ACONST_NULL, 1);
+        else code.aload(value);
+        code.invoke(INVOKESPECIAL, CELL, "<init>", "(Lcom/esjr/bluejay/Value;)V");
+        code.astore(local);
+    }
+
+    // Pushes the Cell[] Environment.capture would make from the given
+    // pairs of depth and slot.
+    private void closure(int[] upvalues) {
+        if (upvalues.length == 0) {
+            code.field(GETSTATIC, CELL, "NONE", CELLS);
+            return;
+        }
+        code.iconst(upvalues.length / 2);
+        code.type(ANEWARRAY, CELL, 0);
+        for (int i = 0; i < upvalues.length; i += 2) {
+            code.insn(DUP, 1);
+            code.iconst(i / 2);
+            cell(upvalues[i], upvalues[i + 1]);
+            code.insn(AASTORE, -3);
+        }
+    }
+
+    // Defines a variable declared in the current scope as the value in the
+    // temporary 'value', the way Interpreter.define does.
+    private void define(int slot, Token name, boolean captured, int value) {
+        if (slot == Expr.GLOBAL) {
+            code.aload(trace != null ? environment(0) : ENV);
+            code.sconst(name.lexeme);
+            code.aload(value);
+            code.invoke(INVOKEVIRTUAL, ENVIRONMENT, "define", "(Ljava/lang/String;Lcom/esjr/bluejay/Value;)V");
+        } else if (captured && trace != null) {
+            boxSlot(slot, value);
+            code.insn(POP, -1);
+        } else if (captured) {
+            box(local(0, slot, true), value);
+        } else {
+            store(0, slot, value);
+        }
+    }
+
+    // Defines a function or class declared in the current scope, which is
+    // in the temporary 'value'. A captured one's cell was made beforehand
+    // by declare(), so its body can refer to it.
+    private void define(int slot, Token name, int cell, int value) {
+        if (cell < 0) {
+            define(slot, name, false, value);
+            return;
+        }
+        code.aload(cell);
+        code.aload(value);
+        code.field(PUTFIELD, CELL, "value", "Lcom/esjr/bluejay/Value;");
+    }
+
+    private int declare(int slot, boolean captured) {
+        if (!captured) return -1;
+        if (trace != null) {
+            int cell = code.local(CELL);
+            boxSlot(slot, -1);
+            code.astore(cell);
+            return cell;
+        }
+        int cell = local(0, slot, true);
+        box(cell, -1);
+        return cell;
+    }
+
+    // Pushes a constant, cast to the given type.
+    private void constant(Object value, String type) {
+        code.aload(constantsLocal);
+        code.iconst(constants.indexOf(value));
+        code.insn(AALOAD, -1);
+        code.type(CHECKCAST, type, 0);
+    }
+
+    // Throws what a static method of JitCode with the given descriptor
+    // returns, the arguments being on the stack already.
+    private void raise(String method, String descriptor) {
+        code.invoke(INVOKESTATIC, JIT_CODE, method, descriptor);
+        code.insn(ATHROW, -1);
+    }
+
+    private void nullValue() {
+        code.field(GETSTATIC, "com/esjr/bluejay/Builtins", "nullValue", "Lcom/esjr/bluejay/Value$Null;");
+    }
+
+    // Pushes a Value[] of the values in the given temporaries, and frees them.
+    private void array(List<Integer> values) {
+        code.iconst(values.size());
+        code.type(ANEWARRAY, VALUE, 0);
+        for (int i = 0; i < values.size(); i++) {
+            code.insn(DUP, 1);
+            code.iconst(i);
+            code.aload(values.get(i));
+            code.insn(AASTORE, -3);
+            free(values.get(i));
+        }
+    }
+
+    // Leaves on the stack the Value[] of a list or dict literal's elements.
+    // The ones that are literals come from a copy of an array of them kept
+    // with the constants, so only the rest take any code: a list of
+    // thousands of numbers is one constant, not thousands of stores.
+    private void elements(List<Expr> exprs) {
+        Value[] literals = new Value[exprs.size()];
+        boolean any = false;
+        for (int i = 0; i < literals.length; i++) {
+            boolean literal = exprs.get(i) instanceof Expr.Literal;
+            literals[i] = literal ? ((Expr.Literal)exprs.get(i)).constant : Builtins.nullValue;
+            any |= literal;
+        }
+        if (!any) {
+            array(values(exprs));
+            return;
+        }
+        Map<Integer, Integer> values = new LinkedHashMap<>();
+        for (int i = 0; i < literals.length; i++) {
+            if (!(exprs.get(i) instanceof Expr.Literal)) values.put(i, value(exprs.get(i)));
+        }
+        constant(literals, "[Lcom/esjr/bluejay/Value;");
+        code.invoke(INVOKEVIRTUAL, "[Lcom/esjr/bluejay/Value;", "clone", "()Ljava/lang/Object;");
+        code.type(CHECKCAST, "[Lcom/esjr/bluejay/Value;", 0);
+        for (Map.Entry<Integer, Integer> value : values.entrySet()) {
+            code.insn(DUP, 1);
+            code.iconst(value.getKey());
+            code.aload(value.getValue());
+            code.insn(AASTORE, -3);
+            free(value.getValue());
+        }
+    }
+
+    private List<Integer> values(List<Expr> exprs) {
+        List<Integer> values = new ArrayList<>();
+        for (Expr expr : exprs) values.add(value(expr));
+        return values;
+    }
+
+    private void truthy(int value) {
+        code.aload(IN);
+        code.aload(value);
+        code.invoke(INVOKEVIRTUAL, INTERPRETER, "truthy", "(Lcom/esjr/bluejay/Value;)Z");
+    }
+
+    // Jumps to 'target' if the condition comes out as 'jumpWhen', following
+    // and, or and not the way Interpreter.test does.
+    private void branch(Expr condition, boolean jumpWhen, Label target) {
+        if (condition instanceof Expr.Logical) {
+            TokenType type = ((Expr.Logical)condition).operator.type;
+            if (type == AND || type == OR) {
+                Expr.Logical logical = (Expr.Logical)condition;
+                if ((type == AND) != jumpWhen) {
+                    // Either side alone can decide to jump.
+                    branch(logical.left, jumpWhen, target);
+                    branch(logical.right, jumpWhen, target);
+                } else {
+                    Label skip = code.label();
+                    branch(logical.left, !jumpWhen, skip);
+                    branch(logical.right, jumpWhen, target);
+                    code.bind(skip);
+                }
+                return;
+            }
+        } else if (condition instanceof Expr.Unary) {
+            TokenType type = ((Expr.Unary)condition).operator.type;
+            if (type == NOT || type == BANG) {
+                branch(((Expr.Unary)condition).right, !jumpWhen, target);
+                return;
+            }
+        } else if (condition instanceof Expr.Binary) {
+            String comparison = comparison(((Expr.Binary)condition).operator.type);
+            if (comparison != null) {
+                int left = value(((Expr.Binary)condition).left);
+                int right = value(((Expr.Binary)condition).right);
+                code.aload(IN);
+                code.aload(left);
+                code.aload(right);
+                code.invoke(INVOKESTATIC, JIT_CODE, comparison, COMPARISON);
+                free(left);
+                free(right);
+                code.jump(jumpWhen ? IFNE : IFEQ, target);
+                return;
+            }
+        }
+        int value = value(condition);
+        truthy(value);
+        free(value);
+        code.jump(jumpWhen ? IFNE : IFEQ, target);
+    }
+
+    private static String comparison(TokenType type) {
+        switch (type) {
+            case EQUAL_EQUAL: return "eq";
+            case BANG_EQUAL: return "ne";
+            case LESS: return "lt";
+            case LESS_EQUAL: return "le";
+            case GREATER: return "gt";
+            case GREATER_EQUAL: return "ge";
+            default: return null;
+        }
+    }
+
+    // Statements
+
+    public Void visit(Stmt.Block stmt) {
+        if (stmt.scopeSize == 0) {
+            for (Stmt statement : stmt.statements) compile(statement);
+            return null;
+        }
+        beginScope(stmt.scopeSize);
+        for (Stmt statement : stmt.statements) compile(statement);
+        endScope();
+        return null;
+    }
+
+    public Void visit(Stmt.Break stmt) {
+        int amount = -1;
+        if (stmt.value == null) {
+            amount = 1;
+        } else if (stmt.value instanceof Expr.Literal && ((Expr.Literal)stmt.value).value instanceof Value.Number) {
+            double value = ((Value.Number)((Expr.Literal)stmt.value).value).value;
+            if (value % 1 == 0 && value >= 1) amount = (int)value;
+        }
+        if (amount >= 1 && amount <= loops.size()) {
+            code.jump(GOTO, loops.get(loops.size()-amount));
+            return null;
+        }
+
+        // Otherwise it's thrown, and counted down by the handler of each
+        // loop it leaves (see leaveLoop) as the interpreter's loops do.
+        code.aload(IN);
+        if (stmt.value == null) {
+            code.insn(ACONST_NULL, 1);
+        } else {
+            int value = value(stmt.value);
+            code.aload(value);
+            free(value);
+        }
+        constant(stmt, "com/esjr/bluejay/Stmt$Break");
+        code.invoke(INVOKESTATIC, JIT_CODE, "breakAmount", "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Stmt$Break;)I");
+        constant(stmt, "com/esjr/bluejay/Stmt$Break");
+        raise("breakOut", "(ILcom/esjr/bluejay/Stmt$Break;)Lcom/esjr/bluejay/Interpreter$Break;");
+        return null;
+    }
+
+    public Void visit(Stmt.Class stmt) {
+        int superclass;
+        if (stmt.inherits == null) {
+            superclass = temp();
+            code.insn(ACONST_NULL, 1);
+            code.astore(superclass);
+        } else {
+            superclass = value(stmt.inherits);
+            code.aload(superclass);
+            constant(stmt.inherits.name, TOKEN);
+            code.invoke(INVOKESTATIC, JIT_CODE, "superclass", "(Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Token;)Lcom/esjr/bluejay/Value;");
+            code.astore(superclass);
+        }
+        int cell = declare(stmt.slot, stmt.captured);
+        List<Integer> methods = new ArrayList<>();
+        for (Stmt method : stmt.methods) {
+            int value = temp();
+            code.type(NEW, "com/esjr/bluejay/BluejayMethod", 1);
+            code.insn(DUP, 1);
+            constant(method, "com/esjr/bluejay/Stmt$Method");
+            closure(((Stmt.Method)method).upvalues);
+            code.invoke(INVOKESPECIAL, "com/esjr/bluejay/BluejayMethod", "<init>", "(Lcom/esjr/bluejay/Stmt$Method;[Lcom/esjr/bluejay/Cell;)V");
+            code.astore(value);
+            methods.add(value);
+        }
+        constant(stmt, "com/esjr/bluejay/Stmt$Class");
+        code.aload(superclass);
+        array(methods);
+        code.invoke(INVOKESTATIC, JIT_CODE, "declareClass", "(Lcom/esjr/bluejay/Stmt$Class;Lcom/esjr/bluejay/Value;[Lcom/esjr/bluejay/Value;)Lcom/esjr/bluejay/Value;");
+        code.astore(superclass);
+        define(stmt.slot, stmt.name, cell, superclass);
+        free(superclass);
+        return null;
+    }
+
+    public Void visit(Stmt.Expression stmt) {
+        free(value(stmt.expression));
+        return null;
+    }
+
+    public Void visit(Stmt.Foreach stmt) {
+        int iterable = value(stmt.iter);
+        int iterator = code.local("java/util/Iterator");
+        code.aload(IN);
+        code.aload(iterable);
+        constant(stmt.loopVar, TOKEN);
+        code.invoke(INVOKEVIRTUAL, INTERPRETER, "iterate", "(Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Token;)Ljava/util/List;");
+        code.invoke(INVOKEINTERFACE, "java/util/List", "iterator", "()Ljava/util/Iterator;");
+        code.astore(iterator);
+        free(iterable);
+
+        beginScope(stmt.scopeSize);
+        // A captured loop variable has one cell for the whole loop, as in
+        // the interpreter.
+        if (stmt.captured && trace != null) {
+            boxSlot(0, -1);
+            code.insn(POP, -1);
+        } else if (stmt.captured) {
+            box(local(0, 0, true), -1);
+        }
+        foreach(stmt, iterator);
+        endScope();
+        return null;
+    }
+
+    // The loop itself, in the scope of its variable.
+    private void foreach(Stmt.Foreach stmt, int iterator) {
+        Label top = code.label();
+        Label exit = code.label();
+        code.bind(top);
+        code.aload(iterator);
+        code.invoke(INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z");
+        code.jump(IFEQ, exit);
+        int value = temp();
+        code.aload(iterator);
+        code.invoke(INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;");
+        code.type(CHECKCAST, VALUE, 0);
+        code.astore(value);
+        if (stmt.captured) {
+            cell(0, 0);
+            code.aload(value);
+            code.field(PUTFIELD, CELL, "value", "Lcom/esjr/bluejay/Value;");
+        } else {
+            store(0, 0, value);
+        }
+        free(value);
+        Label body = enterLoop(exit);
+        compile(stmt.body);
+        code.jump(GOTO, top);
+        leaveLoop(body, exit);
+        code.bind(exit);
+    }
+
+    public Void visit(Stmt.Function stmt) {
+        int cell = declare(stmt.slot, stmt.captured);
+        int function = temp();
+        code.type(NEW, "com/esjr/bluejay/BluejayFunction", 1);
+        code.insn(DUP, 1);
+        constant(stmt, "com/esjr/bluejay/Stmt$Function");
+        closure(stmt.upvalues);
+        code.invoke(INVOKESPECIAL, "com/esjr/bluejay/BluejayFunction", "<init>", "(Lcom/esjr/bluejay/Stmt$Function;[Lcom/esjr/bluejay/Cell;)V");
+        code.astore(function);
+        define(stmt.slot, stmt.name, cell, function);
+        free(function);
+        return null;
+    }
+
+    // In a trace, a branch the recording saw the other side of, but not
+    // this one, is a side exit.
+    public Void visit(Stmt.If stmt) {
+        int seen = trace != null ? trace.seen(stmt) : 0;
+        Label otherwise = code.label();
+        branch(stmt.condition, false, otherwise);
+        if (seen == Jit.Loop.ELSE) exit(stmt.thenBranch);
+        else compile(stmt.thenBranch);
+        if (stmt.elseBranch == null) {
+            code.bind(otherwise);
+            return null;
+        }
+        Label end = code.label();
+        code.jump(GOTO, end);
+        code.bind(otherwise);
+        if (seen == Jit.Loop.THEN) exit(stmt.elseBranch);
+        else compile(stmt.elseBranch);
+        code.bind(end);
+        return null;
+    }
+
+    // Runs a statement in the interpreter, in the current scope, and then
+    // carries on with the trace. A break it throws is taken by the loops
+    // it's in like one from a call.
+    private void exit(Stmt stmt) {
+        code.aload(IN);
+        code.aload(environment(0));
+        constant(stmt, "com/esjr/bluejay/Stmt");
+        code.invoke(INVOKESTATIC, JIT_CODE, "interpret", "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Environment;Lcom/esjr/bluejay/Stmt;)V");
+    }
+
+    public Void visit(Stmt.Import stmt) {
+        code.sconst("Imports not implemented yet.");
+        raise("unsupported", "(Ljava/lang/String;)Ljava/lang/RuntimeException;");
+        return null;
+    }
+
+    public Void visit(Stmt.Method stmt) {
+        throw new UnsupportedOperationException("Stmt.Method should never be directly compiled.");
+    }
+
+    public Void visit(Stmt.Print stmt) {
+        code.sconst("Stmt.Print has been deprecated.");
+        raise("unsupported", "(Ljava/lang/String;)Ljava/lang/RuntimeException;");
+        return null;
+    }
+
+    public Void visit(Stmt.Repeat stmt) {
+        int amount = value(stmt.amount);
+        int limit = code.local("D");
+        code.aload(IN);
+        code.aload(amount);
+        constant(stmt.paren, TOKEN);
+        code.invoke(INVOKESTATIC, JIT_CODE, "repeatAmount", "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Token;)D");
+        code.dstore(limit);
+        free(amount);
+        repeat(stmt, limit);
+        return null;
+    }
+
+    // The loop itself, going round as many times as the double local
+    // 'limit' says.
+    private void repeat(Stmt.Repeat stmt, int limit) {
+        int count = code.local("I");
+        code.iconst(0);
+        code.istore(count);
+
+        Label top = code.label();
+        Label exit = code.label();
+        code.bind(top);
+        code.iload(count);
+        code.insn(I2D, 1);
+        code.dload(limit);
+        code.insn(DCMPG, -3);
+        code.jump(IFGE, exit);
+        Label body = enterLoop(exit);
+        compile(stmt.body);
+        code.iinc(count, 1);
+        code.jump(GOTO, top);
+        leaveLoop(body, exit);
+        code.bind(exit);
+    }
+
+    public Void visit(Stmt.Return stmt) {
+        if (!script) {
+            code.aload(0);
+            constant(stmt, "com/esjr/bluejay/Stmt$Return");
+            code.field(PUTFIELD, JIT_CODE, "returned", "Lcom/esjr/bluejay/Stmt$Return;");
+        }
+        if (stmt.value == null) {
+            nullValue();
+        } else {
+            int value = value(stmt.value);
+            code.aload(value);
+            free(value);
+        }
+        if (script) {
+            constant(stmt, "com/esjr/bluejay/Stmt$Return");
+            raise("returnOut", "(Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Stmt$Return;)Lcom/esjr/bluejay/Interpreter$Return;");
+        } else {
+            code.insn(ARETURN, -1);
+        }
+        return null;
+    }
+
+    public Void visit(Stmt.Var stmt) {
+        int value;
+        if (stmt.initializer == null) {
+            value = temp();
+            nullValue();
+            code.astore(value);
+        } else {
+            value = value(stmt.initializer);
+        }
+        define(stmt.slot, stmt.name, stmt.captured, value);
+        free(value);
+        return null;
+    }
+
+    public Void visit(Stmt.While stmt) {
+        if (stmt.counter != null && stmt.counter.initializer instanceof Expr.Literal
+            && ((Expr.Literal)stmt.counter.initializer).constant instanceof NativeNumber) {
+            count(stmt);
+            return null;
+        }
+        Label top = code.label();
+        Label exit = code.label();
+        code.bind(top);
+        branch(stmt.condition, false, exit);
+        Label body = enterLoop(exit);
+        compile(stmt.body);
+        code.jump(GOTO, top);
+        leaveLoop(body, exit);
+        code.bind(exit);
+        return null;
+    }
+
+    // A counted loop (see Resolver.counted) whose counter starts out as a
+    // number literal, or that a trace is handed with a number in it, so
+    // it's known to be a number: it's kept in a double local, as
+    // Interpreter.count does, and only stored in the variable when
+    // something reads it.
+    private void count(Stmt.While stmt) {
+        Expr.Binary condition = (Expr.Binary)stmt.condition;
+        List<Stmt> body = ((Stmt.Block)stmt.body).statements;
+        int counter = code.local("D");
+        load(0, stmt.counter.slot);
+        code.type(CHECKCAST, NUMBER, 0);
+        code.field(GETFIELD, NUMBER, "value", "D");
+        code.dstore(counter);
+
+        Label top = code.label();
+        Label generic = code.label();
+        Label run = code.label();
+        Label exit = code.label();
+        code.bind(top);
+        int limit = value(condition.right);
+        code.aload(limit);
+        code.type(INSTANCEOF, NUMBER, 0);
+        code.jump(IFEQ, generic);
+        code.dload(counter);
+        code.aload(limit);
+        code.type(CHECKCAST, NUMBER, 0);
+        code.field(GETFIELD, NUMBER, "value", "D");
+        // Jumps out unless the comparison holds, NaN included.
+        switch (condition.operator.type) {
+            case LESS: code.insn(DCMPG, -3); code.jump(IFGE, exit); break;
+            case LESS_EQUAL: code.insn(DCMPG, -3); code.jump(IFGT, exit); break;
+            case GREATER: code.insn(DCMPL, -3); code.jump(IFLE, exit); break;
+            default: code.insn(DCMPL, -3); code.jump(IFLT, exit); break;
+        }
+        code.jump(GOTO, run);
+        code.bind(generic);
+        code.aload(IN);
+        constant(condition.operator, TOKEN);
+        number(counter);
+        code.aload(limit);
+        code.invoke(INVOKEVIRTUAL, INTERPRETER, "binary", "(Lcom/esjr/bluejay/Token;Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Value;)Lcom/esjr/bluejay/Value;");
+        code.astore(limit);
+        truthy(limit);
+        code.jump(IFEQ, exit);
+        code.bind(run);
+        free(limit);
+
+        Label start = enterLoop(exit);
+        for (int i = 0; i < body.size()-1; i++) compile(body.get(i));
+        code.dload(counter);
+        code.dconst(stmt.step);
+        code.insn(DADD, -2);
+        code.dstore(counter);
+        if (stmt.counterRead) {
+            int value = temp();
+            number(counter);
+            code.astore(value);
+            store(0, stmt.counter.slot, value);
+            free(value);
+        }
+        code.jump(GOTO, top);
+        leaveLoop(start, exit);
+        code.bind(exit);
+    }
+
+    // Starts the body of a loop that a break leaves for 'exit', returning
+    // where it starts.
+    private Label enterLoop(Label exit) {
+        Label body = code.label();
+        code.bind(body);
+        loops.add(exit);
+        return body;
+    }
+
+    // Ends a loop's body, after its jump back to the top. A function can
+    // break out of its caller's loops, so a break thrown by anything the
+    // body calls (or by a break with an amount only known when it runs)
+    // is caught here and decided the way the interpreter's loops do: it
+    // either stops at this loop or is thrown on to the next one out.
+    private void leaveLoop(Label body, Label exit) {
+        loops.remove(loops.size()-1);
+        if (caught < 0) caught = code.local(BREAK);
+        Label handler = code.label();
+        code.handler(body, handler, handler, BREAK);
+        code.bind(handler);
+        code.astore(caught);
+        code.aload(caught);
+        code.invoke(INVOKESTATIC, JIT_CODE, "land", "(Lcom/esjr/bluejay/Interpreter$Break;)Z");
+        code.jump(IFNE, exit);
+        code.aload(caught);
+        code.insn(ATHROW, -1);
+    }
+
+    // Pushes the number in a double local as a Value.
+    private void number(int local) {
+        code.dload(local);
+        code.invoke(INVOKESTATIC, "com/esjr/bluejay/Builtins", "makeNumberValue", "(D)Lcom/esjr/bluejay/Value;");
+    }
+
+    // Expressions
+
+    public Integer visit(Expr.Assign expr) {
+        int value;
+        if (expr.value != null) {
+            value = value(expr.value);
+        } else {
+            value = temp();
+            code.insn(ACONST_NULL, 1);
+            code.astore(value);
+        }
+        boolean plain = expr.operator.type == EQUAL;
+        if (expr.depth == Expr.GLOBAL) {
+            code.field(GETSTATIC, "com/esjr/bluejay/Builtins", "globals", "Lcom/esjr/bluejay/Environment;");
+            code.aload(IN);
+            constant(expr.name, TOKEN);
+            constant(expr.operator, TOKEN);
+            code.aload(value);
+            code.invoke(INVOKEVIRTUAL, ENVIRONMENT, "assign", "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Token;Lcom/esjr/bluejay/Token;Lcom/esjr/bluejay/Value;)V");
+        } else if (expr.depth == Expr.UPVALUE || expr.captured) {
+            cell(expr.depth, expr.slot);
+            if (plain) {
+                code.aload(value);
+            } else {
+                code.aload(IN);
+                constant(expr.operator, TOKEN);
+                cell(expr.depth, expr.slot);
+                code.field(GETFIELD, CELL, "value", "Lcom/esjr/bluejay/Value;");
+                code.aload(value);
+                code.invoke(INVOKESTATIC, ENVIRONMENT, "operate", ENVIRONMENT_OPERATE);
+            }
+            code.field(PUTFIELD, CELL, "value", "Lcom/esjr/bluejay/Value;");
+        } else if (trace != null) {
+            if (plain) {
+                store(expr.depth, expr.slot, value);
+            } else {
+                int result = temp();
+                code.aload(IN);
+                constant(expr.operator, TOKEN);
+                load(expr.depth, expr.slot);
+                code.aload(value);
+                code.invoke(INVOKESTATIC, ENVIRONMENT, "operate", ENVIRONMENT_OPERATE);
+                code.astore(result);
+                store(expr.depth, expr.slot, result);
+                free(result);
+            }
+        } else {
+            int local = local(expr.depth, expr.slot, false);
+            if (plain) {
+                code.aload(value);
+            } else {
+                code.aload(IN);
+                constant(expr.operator, TOKEN);
+                code.aload(local);
+                code.aload(value);
+                code.invoke(INVOKESTATIC, ENVIRONMENT, "operate", ENVIRONMENT_OPERATE);
+            }
+            code.astore(local);
+        }
+        return value;
+    }
+
+    public Integer visit(Expr.Get expr) {
+        int object = value(expr.expr);
+        code.aload(object);
+        code.aload(IN);
+        constant(expr.name, TOKEN);
+        constant(expr.cache, CACHE);
+        code.invoke(INVOKEVIRTUAL, VALUE, "getAttr", "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Token;Lcom/esjr/bluejay/InlineCache;)Lcom/esjr/bluejay/Value;");
+        code.astore(object);
+        return object;
+    }
+
+    public Integer visit(Expr.Set expr) {
+        int object = value(expr.expr);
+        int value;
+        if (expr.value != null) {
+            value = value(expr.value);
+        } else {
+            value = temp();
+            code.insn(ACONST_NULL, 1);
+            code.astore(value);
+        }
+        code.aload(object);
+        code.aload(IN);
+        code.sconst(expr.name.lexeme);
+        constant(expr.operator, TOKEN);
+        code.aload(value);
+        constant(expr.cache, CACHE);
+        code.invoke(INVOKEVIRTUAL, VALUE, "setAttr", "(Lcom/esjr/bluejay/Interpreter;Ljava/lang/String;Lcom/esjr/bluejay/Token;Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/InlineCache;)V");
+        free(object);
+        return value;
+    }
+
+    public Integer visit(Expr.Binary expr) {
+        String method;
+        switch (expr.operator.type) {
+            case PLUS: method = "add"; break;
+            case MINUS: method = "sub"; break;
+            case STAR: method = "mul"; break;
+            case SLASH: method = "div"; break;
+            case PERCENT: method = "mod"; break;
+            case STAR_STAR: method = "pow"; break;
+            case EQUAL_EQUAL: method = "eq"; break;
+            case BANG_EQUAL: method = "ne"; break;
+            case LESS: method = "lt"; break;
+            case LESS_EQUAL: method = "lte"; break;
+            case GREATER: method = "gt"; break;
+            case GREATER_EQUAL: method = "gte"; break;
+            default: throw new Unsupported("it uses the operator " + expr.operator.lexeme);
+        }
+        int left = value(expr.left);
+        int right = value(expr.right);
+        Label end = code.label();
+        if (trace != null && trace.seen(expr) == Jit.Loop.NUMBERS) arithmetic(expr.operator.type, left, right, end);
+        code.aload(left);
+        code.aload(IN);
+        code.aload(right);
+        code.invoke(INVOKEVIRTUAL, VALUE, method, OPERATOR);
+        code.astore(left);
+        code.bind(end);
+        free(right);
+        return left;
+    }
+
+    // In a trace, an arithmetic operator that only got numbers works on
+    // their doubles, as NativeNumber would, leaving the result in 'left'
+    // and jumping to 'end'. It falls through to the operator method if
+    // either side isn't a number, or for / and %, if the right one is 0.
+    private void arithmetic(TokenType operator, int left, int right, Label end) {
+        int opcode;
+        switch (operator) {
+            case PLUS: opcode = DADD; break;
+            case MINUS: opcode = DSUB; break;
+            case STAR: opcode = DMUL; break;
+            case SLASH: opcode = DDIV; break;
+            case PERCENT: opcode = DREM; break;
+            case STAR_STAR: opcode = -1; break;
+            default: return;
+        }
+        Label generic = code.label();
+        code.aload(left);
+        code.type(INSTANCEOF, NUMBER, 0);
+        code.jump(IFEQ, generic);
+        code.aload(right);
+        code.type(INSTANCEOF, NUMBER, 0);
+        code.jump(IFEQ, generic);
+        if (opcode == DDIV || opcode == DREM) {
+            code.aload(right);
+            code.type(CHECKCAST, NUMBER, 0);
+            code.field(GETFIELD, NUMBER, "value", "D");
+            code.dconst(0);
+            code.insn(DCMPL, -3);
+            code.jump(IFEQ, generic);
+        }
+        code.type(NEW, NUMBER, 1);
+        code.insn(DUP, 1);
+        code.aload(left);
+        code.type(CHECKCAST, NUMBER, 0);
+        code.field(GETFIELD, NUMBER, "value", "D");
+        code.aload(right);
+        code.type(CHECKCAST, NUMBER, 0);
+        code.field(GETFIELD, NUMBER, "value", "D");
+        if (opcode < 0) code.invoke(INVOKESTATIC, "java/lang/Math", "pow", "(DD)D");
+        else code.insn(opcode, -2);
+        code.invoke(INVOKESPECIAL, NUMBER, "<init>", "(D)V");
+        code.astore(left);
+        code.jump(GOTO, end);
+        code.bind(generic);
+    }
+
+    public Integer visit(Expr.Call expr) {
+        int result;
+        if (expr.callee instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get)expr.callee;
+            int object = value(get.expr);
+            int callee = temp();
+            code.aload(IN);
+            code.aload(object);
+            constant(get.name, TOKEN);
+            constant(get.cache, CACHE);
+            code.invoke(INVOKESTATIC, JIT_CODE, "lookup", "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Token;Lcom/esjr/bluejay/InlineCache;)Lcom/esjr/bluejay/Value;");
+            code.astore(callee);
+            List<Integer> arguments = values(expr.arguments);
+            code.aload(IN);
+            code.aload(object);
+            code.aload(callee);
+            array(arguments);
+            constant(expr.paren, TOKEN);
+            code.invoke(INVOKESTATIC, JIT_CODE, "invoke", "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Value;[Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Token;)Lcom/esjr/bluejay/Value;");
+            free(callee);
+            result = object;
+        } else {
+            int callee = value(expr.callee);
+            List<Integer> arguments = values(expr.arguments);
+            code.aload(IN);
+            code.aload(callee);
+            array(arguments);
+            constant(expr.paren, TOKEN);
+            code.invoke(INVOKESTATIC, JIT_CODE, "call", "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Value;[Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Token;)Lcom/esjr/bluejay/Value;");
+            result = callee;
+        }
+        code.astore(result);
+        return result;
+    }
+
+    public Integer visit(Expr.Dict expr) {
+        List<Expr> entries = new ArrayList<>();
+        for (int i = 0; i < expr.keys.size(); i++) {
+            entries.add(expr.keys.get(i));
+            entries.add(expr.values.get(i));
+        }
+        elements(entries);
+        code.invoke(INVOKESTATIC, JIT_CODE, "dict", "([Lcom/esjr/bluejay/Value;)Lcom/esjr/bluejay/Value;");
+        int result = temp();
+        code.astore(result);
+        return result;
+    }
+
+    public Integer visit(Expr.Grouping expr) {
+        return value(expr.expression);
+    }
+
+    public Integer visit(Expr.Index expr) {
+        int object = value(expr.expr);
+        int index = value(expr.index);
+        code.aload(object);
+        code.aload(IN);
+        code.aload(index);
+        code.invoke(INVOKEVIRTUAL, VALUE, "getItem", OPERATOR);
+        code.astore(object);
+        free(index);
+        return object;
+    }
+
+    public Integer visit(Expr.SetIndex expr) {
+        int value = value(expr.value);
+        int object = value(expr.expr);
+        int index = value(expr.index);
+        code.aload(IN);
+        code.aload(object);
+        code.aload(index);
+        constant(expr.operator, TOKEN);
+        code.aload(value);
+        code.invoke(INVOKESTATIC, JIT_CODE, "setIndex", "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Token;Lcom/esjr/bluejay/Value;)Lcom/esjr/bluejay/Value;");
+        code.astore(value);
+        free(object);
+        free(index);
+        return value;
+    }
+
+    public Integer visit(Expr.ListLiteral expr) {
+        elements(expr.elements);
+        code.invoke(INVOKESTATIC, JIT_CODE, "list", "([Lcom/esjr/bluejay/Value;)Lcom/esjr/bluejay/Value;");
+        int result = temp();
+        code.astore(result);
+        return result;
+    }
+
+    public Integer visit(Expr.Literal expr) {
+        int result = temp();
+        constant(expr.constant, VALUE);
+        code.astore(result);
+        return result;
+    }
+
+    public Integer visit(Expr.Logical expr) {
+        switch (expr.operator.type) {
+            case AND:
+            case OR: {
+                int result = value(expr.left);
+                Label end = code.label();
+                truthy(result);
+                code.jump(expr.operator.type == AND ? IFEQ : IFNE, end);
+                int right = value(expr.right);
+                code.aload(right);
+                code.astore(result);
+                free(right);
+                code.bind(end);
+                return result;
+            }
+            case XOR: {
+                int left = value(expr.left);
+                int right = value(expr.right);
+                code.aload(IN);
+                code.aload(left);
+                code.aload(right);
+                code.invoke(INVOKESTATIC, JIT_CODE, "xor", "(Lcom/esjr/bluejay/Interpreter;Lcom/esjr/bluejay/Value;Lcom/esjr/bluejay/Value;)Lcom/esjr/bluejay/Value;");
+                code.astore(left);
+                free(right);
+                return left;
+            }
+            default:
+                throw new Unsupported("it uses the operator " + expr.operator.lexeme);
+        }
+    }
+
+    public Integer visit(Expr.Unary expr) {
+        int right = value(expr.right);
+        Label end = code.label();
+        if (trace != null && expr.operator.type == MINUS && trace.seen(expr) == Jit.Loop.NUMBERS) {
+            Label generic = code.label();
+            code.aload(right);
+            code.type(INSTANCEOF, NUMBER, 0);
+            code.jump(IFEQ, generic);
+            code.type(NEW, NUMBER, 1);
+            code.insn(DUP, 1);
+            code.aload(right);
+            code.type(CHECKCAST, NUMBER, 0);
+            code.field(GETFIELD, NUMBER, "value", "D");
+            code.insn(DNEG, 0);
+            code.invoke(INVOKESPECIAL, NUMBER, "<init>", "(D)V");
+            code.astore(right);
+            code.jump(GOTO, end);
+            code.bind(generic);
+        }
+        code.aload(IN);
+        constant(expr.operator, TOKEN);
+        code.aload(right);
+        code.invoke(INVOKEVIRTUAL, INTERPRETER, "unary", "(Lcom/esjr/bluejay/Token;Lcom/esjr/bluejay/Value;)Lcom/esjr/bluejay/Value;");
+        code.astore(right);
+        code.bind(end);
+        return right;
+    }
+
+    public Integer visit(Expr.Var expr) {
+        int result = temp();
+        if (expr.depth == Expr.GLOBAL) {
+            code.field(GETSTATIC, "com/esjr/bluejay/Builtins", "globals", "Lcom/esjr/bluejay/Environment;");
+            constant(expr.name, TOKEN);
+            code.invoke(INVOKEVIRTUAL, ENVIRONMENT, "get", "(Lcom/esjr/bluejay/Token;)Lcom/esjr/bluejay/Value;");
+        } else if (expr.depth == Expr.UPVALUE || expr.captured) {
+            cell(expr.depth, expr.slot);
+            code.field(GETFIELD, CELL, "value", "Lcom/esjr/bluejay/Value;");
+        } else {
+            load(expr.depth, expr.slot);
+        }
+        code.astore(result);
+        return result;
+    }
+}
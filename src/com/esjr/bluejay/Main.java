@@ -4,20 +4,55 @@ import java.io.IOException;
 
 public class Main {
     public static void main(String[] args) {
-        if (args.length == 1) {
+        String file = null;
+        for (String arg : args) {
+            if (arg.equals("--engine=vm")) {
+                Bluejay.engine = Bluejay.Engine.VM;
+            } else if (arg.equals("--engine=nodes")) {
+                Bluejay.engine = Bluejay.Engine.NODES;
+            } else if (arg.equals("--engine=tree")) {
+                Bluejay.engine = Bluejay.Engine.TREE;
+            } else if (arg.equals("--no-optimize")) {
+                Bluejay.optimize = false;
+            } else if (arg.equals("--no-jit")) {
+                Bluejay.jit = false;
+            } else if (arg.equals("--jit-log")) {
+                Bluejay.jitLog = true;
+            } else if (arg.startsWith("-") || file != null) {
+                usage();
+                return;
+            } else {
+                file = arg;
+            }
+        }
+
+        if (file != null) {
             try {
-                Bluejay.runFile(args[0]);
+                Bluejay.runFile(file);
             } catch (IOException e) {
                 System.out.println("No such file or directory.");
             }
-        } else if (args.length == 0) {
+        } else {
             try {
                 Bluejay.runPrompt();
             } catch (IOException e) {
                 System.out.println("An error occured.");
             }
-        } else {
-            System.out.println("Someone should maybe make a usage message.");
         }
     }
-}
\ No newline at end of file
+
+    private static void usage() {
+        System.out.println("Usage: bluejay [options] [file]");
+        System.out.println();
+        System.out.println("Runs a Bluejay file, or starts the REPL if no file is given.");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println("  --engine=vm     Compile to bytecode and run it on the VM (default).");
+        System.out.println("  --engine=nodes  Convert the syntax tree to executable nodes and run those.");
+        System.out.println("  --engine=tree   Use the original tree-walking interpreter.");
+        System.out.println("  --no-optimize   Run the program as written, without folding constants first.");
+        System.out.println("  --no-jit        Never compile hot functions or loops to JVM code (nodes and tree engines).");
+        System.out.println("  --jit-log       Report each function and loop as it's compiled or left interpreted.");
+        System.exit(64);
+    }
+}
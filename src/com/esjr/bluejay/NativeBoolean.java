@@ -0,0 +1,25 @@
+package com.esjr.bluejay;
+
+// An instance of the built-in Boolean class. There are only two, true and
+// false (Builtins.trueValue and falseValue), so like numbers they can't
+// have attributes of their own.
+class NativeBoolean extends BluejayObj {
+    final boolean value;
+
+    NativeBoolean(boolean value) {
+        super(Builtins.booleanClass, null);
+        this.value = value;
+    }
+
+    public void setAttr(Interpreter i, String attr, Token operator, Value v, InlineCache cache) {
+        throw new RuntimeError.AttributeError(operator, "Cannot assign attributes of "+class_.name+" object");
+    }
+
+    public String toString(Interpreter i) {
+        return value ? "true" : "false";
+    }
+
+    public boolean toBoolean(Interpreter i) {
+        return value;
+    }
+}
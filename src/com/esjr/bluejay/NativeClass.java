@@ -6,10 +6,13 @@ class NativeClass extends BluejayClass {
     NativeClass(String name, BluejayClass inherits) {
         super(null, inherits);
         this.name = name;
+        if (subclasses == null) subclasses = new ArrayList<>();
     }
 
     public void addStatic(String name, Value v) {
         statics.put(name, v);
+        inherit(name, v);
+        epoch++;
     }
 
     public String toString(Interpreter i) {
@@ -17,16 +20,16 @@ class NativeClass extends BluejayClass {
     }
 
     public int arity() {
-        if (!(statics.containsKey(name))) return 0;
         Value possibleInit = statics.get(name);
+        if (possibleInit == null) return 0;
         if (!(possibleInit instanceof NativeMethod)) throw new RuntimeError("The attribute name '"+name+"' is reserved for the initializer of "+name);
         return ((NativeMethod)possibleInit).arity();
     }
 
     public Value call(Interpreter interpreter, List<Value> arguments) {
         BluejayObj obj = new BluejayObj(this);
-        if (statics.containsKey(name)) {
-            Value possibleInit = statics.get(name);
+        Value possibleInit = statics.get(name);
+        if (possibleInit != null) {
             if (!(possibleInit instanceof NativeMethod)) throw new RuntimeError("The attribute name '"+name+"' is reserved for the initializer of "+name);
             ((NativeMethod)possibleInit).call(interpreter, arguments, obj);
         }
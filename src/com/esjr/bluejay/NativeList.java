@@ -0,0 +1,45 @@
+package com.esjr.bluejay;
+
+import java.util.*;
+
+// An instance of the built-in List class, holding its elements directly.
+// Indexing with an in-range integer skips the $getitem and $setitem
+// methods, which are left to report everything else.
+class NativeList extends BluejayObj {
+    final List<Value> elements;
+
+    NativeList(List<Value> elements) {
+        super(Builtins.listClass, null);
+        this.elements = elements;
+    }
+
+    NativeList() {
+        this(new ArrayList<Value>());
+    }
+
+    public String toString(Interpreter i) {
+        List<String> elems = new ArrayList<>();
+        for (Value e : elements) {
+            elems.add(e.toString(i));
+        }
+        return "[" + String.join(", ", elems) + "]";
+    }
+
+    public Value getItem(Interpreter i, Value index) {
+        if (index instanceof NativeNumber) {
+            double n = ((NativeNumber)index).value;
+            if (n % 1 == 0 && n >= 0 && n < elements.size()) return elements.get((int)n);
+        }
+        return super.getItem(i, index);
+    }
+    public Value setItem(Interpreter i, Value index, Value v) {
+        if (index instanceof NativeNumber) {
+            double n = ((NativeNumber)index).value;
+            if (n % 1 == 0 && n >= 0 && n < elements.size()) {
+                elements.set((int)n, v);
+                return Builtins.nullValue;
+            }
+        }
+        return super.setItem(i, index, v);
+    }
+}
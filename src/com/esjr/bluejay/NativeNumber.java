@@ -0,0 +1,89 @@
+package com.esjr.bluejay;
+
+// An instance of the built-in Number class. The value is kept in a plain
+// double, and numbers have no attributes of their own, so making one is a
+// single allocation.
+//
+// Operators on two numbers are done here directly instead of looking up and
+// calling the class's $-methods. Anything else falls back to those, which
+// also produce the error messages.
+class NativeNumber extends BluejayObj {
+    final double value;
+
+    NativeNumber(double value) {
+        super(Builtins.numberClass, null);
+        this.value = value;
+    }
+
+    public void setAttr(Interpreter i, String attr, Token operator, Value v, InlineCache cache) {
+        throw new RuntimeError.AttributeError(operator, "Cannot assign attributes of "+class_.name+" object");
+    }
+
+    public String toString(Interpreter i) {
+        if (value % 1 == 0) return String.valueOf((int)value);
+        return String.valueOf(value);
+    }
+
+    public double toNumber(Interpreter i) {
+        return value;
+    }
+
+    public boolean toBoolean(Interpreter i) {
+        return value != 0;
+    }
+
+    public Value add(Interpreter i, Value other) {
+        if (other instanceof NativeNumber) return new NativeNumber(value + ((NativeNumber)other).value);
+        return super.add(i, other);
+    }
+    public Value sub(Interpreter i, Value other) {
+        if (other instanceof NativeNumber) return new NativeNumber(value - ((NativeNumber)other).value);
+        return super.sub(i, other);
+    }
+    public Value mul(Interpreter i, Value other) {
+        if (other instanceof NativeNumber) return new NativeNumber(value * ((NativeNumber)other).value);
+        return super.mul(i, other);
+    }
+    public Value div(Interpreter i, Value other) {
+        if (other instanceof NativeNumber && ((NativeNumber)other).value != 0) return new NativeNumber(value / ((NativeNumber)other).value);
+        return super.div(i, other);
+    }
+    public Value mod(Interpreter i, Value other) {
+        if (other instanceof NativeNumber && ((NativeNumber)other).value != 0) return new NativeNumber(value % ((NativeNumber)other).value);
+        return super.mod(i, other);
+    }
+    public Value pow(Interpreter i, Value other) {
+        if (other instanceof NativeNumber) return new NativeNumber(Math.pow(value, ((NativeNumber)other).value));
+        return super.pow(i, other);
+    }
+    public Value eq(Interpreter i, Value other) {
+        if (other instanceof NativeNumber) return Builtins.makeBooleanValue(value == ((NativeNumber)other).value);
+        return super.eq(i, other);
+    }
+    public Value ne(Interpreter i, Value other) {
+        if (other instanceof NativeNumber) return Builtins.makeBooleanValue(value != ((NativeNumber)other).value);
+        return super.ne(i, other);
+    }
+    public Value lt(Interpreter i, Value other) {
+        if (other instanceof NativeNumber) return Builtins.makeBooleanValue(value < ((NativeNumber)other).value);
+        return super.lt(i, other);
+    }
+    public Value lte(Interpreter i, Value other) {
+        if (other instanceof NativeNumber) return Builtins.makeBooleanValue(value <= ((NativeNumber)other).value);
+        return super.lte(i, other);
+    }
+    public Value gt(Interpreter i, Value other) {
+        if (other instanceof NativeNumber) return Builtins.makeBooleanValue(value > ((NativeNumber)other).value);
+        return super.gt(i, other);
+    }
+    public Value gte(Interpreter i, Value other) {
+        if (other instanceof NativeNumber) return Builtins.makeBooleanValue(value >= ((NativeNumber)other).value);
+        return super.gte(i, other);
+    }
+    public Value neg(Interpreter i) {
+        return new NativeNumber(-value);
+    }
+    public Value uadd(Interpreter i) {
+        return this;
+    }
+}
@@ -0,0 +1,29 @@
+package com.esjr.bluejay;
+
+// An instance of the built-in String class. Like NativeNumber it keeps its
+// value in a Java field and has no attributes of its own.
+class NativeString extends BluejayObj {
+    final String value;
+
+    NativeString(String value) {
+        super(Builtins.stringClass, null);
+        this.value = value;
+    }
+
+    public String toString(Interpreter i) {
+        return value;
+    }
+
+    public boolean toBoolean(Interpreter i) {
+        return value.length() > 0;
+    }
+
+    public Value add(Interpreter i, Value other) {
+        if (other instanceof NativeString) return Builtins.makeStringValue(value + ((NativeString)other).value);
+        return super.add(i, other);
+    }
+    public Value eq(Interpreter i, Value other) {
+        if (other instanceof NativeString) return Builtins.makeBooleanValue(value.equals(((NativeString)other).value));
+        return super.eq(i, other);
+    }
+}
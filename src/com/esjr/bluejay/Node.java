@@ -0,0 +1,1207 @@
+package com.esjr.bluejay;
+
+import java.util.*;
+
+// Executable nodes for the "nodes" engine. NodeCompiler turns each resolved
+// Expr and Stmt into one of these once, up front. A node holds its children
+// directly, along with whatever the Resolver worked out for it (depth, slot,
+// scope size), and each operator gets its own node class. Running a program
+// is then just eval() calls down the tree: no visitor dispatch and no
+// switching on token types while it runs.
+//
+// Nodes keep their state in the Interpreter they're given, so values,
+// environments, functions and classes are the same ones the tree-walking
+// interpreter uses. Statements return null.
+abstract class Node {
+    abstract Value eval(Interpreter in);
+
+    // Evaluates the node as the condition of an if or a loop. Comparisons
+    // and logical operators override this to get to the answer without
+    // making a boolean value.
+    boolean test(Interpreter in) {
+        return in.truthy(eval(in));
+    }
+
+    static void define(Interpreter in, int slot, Token name, Value value) {
+        if (slot == Expr.GLOBAL) {
+            in.environment.define(name.lexeme, value);
+        } else {
+            in.environment.define(slot, value);
+        }
+    }
+
+    // The top level of a program.
+    static class Script {
+        final Node[] statements;
+
+        Script(Node[] statements) {
+            this.statements = statements;
+        }
+
+        void run(Interpreter in) {
+            try {
+                for (Node statement : statements) {
+                    try {
+                        statement.eval(in);
+                    } catch (Interpreter.Break b) {
+                        throw new RuntimeError(b.statement.keyword, "Break outside of loop.");
+                    } catch (Interpreter.Return r) {
+                        throw new RuntimeError(r.statement.keyword, "Return outside of function or method.");
+                    }
+                }
+            } catch (RuntimeError error) {
+                Bluejay.runtimeError(error);
+            }
+        }
+    }
+
+    // Statements
+
+    static class Block extends Node {
+        final Node[] statements;
+        final int scopeSize;
+
+        Block(Node[] statements, int scopeSize) {
+            this.statements = statements;
+            this.scopeSize = scopeSize;
+        }
+
+        Value eval(Interpreter in) {
+            Environment previous = in.environment;
+            try {
+                in.environment = new Environment(previous, scopeSize);
+                for (Node statement : statements) {
+                    statement.eval(in);
+                }
+            } finally {
+                in.environment = previous;
+            }
+            return null;
+        }
+    }
+
+    // A block that declares nothing, and so runs in the enclosing
+    // environment.
+    static class Sequence extends Node {
+        final Node[] statements;
+
+        Sequence(Node[] statements) {
+            this.statements = statements;
+        }
+
+        Value eval(Interpreter in) {
+            for (Node statement : statements) {
+                statement.eval(in);
+            }
+            return null;
+        }
+    }
+
+    static class Break extends Node {
+        final Node value;
+        final Stmt.Break statement;
+
+        Break(Node value, Stmt.Break statement) {
+            this.value = value;
+            this.statement = statement;
+        }
+
+        Value eval(Interpreter in) {
+            Value v = value == null ? new Value.Number(1) : value.eval(in);
+            if (v instanceof BluejayObj && ((BluejayObj)v).class_ == Builtins.numberClass)
+                v = new Value.Number(v.toNumber(in));
+            if (!(v instanceof Value.Number) || ((Value.Number)v).value%1 != 0) throw new RuntimeError(statement.keyword, "Break amount must be an integer.");
+            throw new Interpreter.Break((int)((Value.Number)v).value, statement);
+        }
+    }
+
+    static class Class extends Node {
+        final Stmt.Class declaration;
+        final Node inherits;
+        final Node[][] methodBodies;
+
+        Class(Stmt.Class declaration, Node inherits, Node[][] methodBodies) {
+            this.declaration = declaration;
+            this.inherits = inherits;
+            this.methodBodies = methodBodies;
+        }
+
+        Value eval(Interpreter in) {
+            Value superclass = inherits != null ? inherits.eval(in) : null;
+            if (!(superclass instanceof BluejayClass) && superclass != null) throw new RuntimeError(declaration.inherits.name, "A class can only inherit from another classes.");
+            Cell cell = declaration.captured ? in.environment.box(declaration.slot, null) : null;
+            Map<String, Value> methods = new HashMap<>();
+            for (int i = 0; i < methodBodies.length; i++) {
+                Stmt.Method method = (Stmt.Method)declaration.methods.get(i);
+                methods.put(method.name.lexeme, new NodeMethod(method, methodBodies[i], in.environment.capture(method.upvalues)));
+            }
+            BluejayClass class_ = new BluejayClass(declaration, (BluejayClass)superclass, methods);
+            if (cell != null) cell.value = class_;
+            else define(in, declaration.slot, declaration.name, class_);
+            return null;
+        }
+    }
+
+    static class Expression extends Node {
+        final Node expression;
+
+        Expression(Node expression) {
+            this.expression = expression;
+        }
+
+        Value eval(Interpreter in) {
+            expression.eval(in);
+            return null;
+        }
+    }
+
+    static class Foreach extends Node {
+        final Node iter;
+        final Node body;
+        final Token loopVar;
+        final int scopeSize;
+        final boolean captured;
+        final Jit.Profile profile;
+
+        Foreach(Node iter, Node body, Token loopVar, int scopeSize, boolean captured, Jit.Profile profile) {
+            this.iter = iter;
+            this.body = body;
+            this.loopVar = loopVar;
+            this.scopeSize = scopeSize;
+            this.captured = captured;
+            this.profile = profile;
+        }
+
+        Value eval(Interpreter in) {
+            List<Value> iterable = in.iterate(iter.eval(in), loopVar);
+            Environment previous = in.environment;
+            try {
+                Environment environment = new Environment(previous, scopeSize);
+                in.environment = environment;
+                environment.define(0, Builtins.nullValue);
+                Cell cell = captured ? environment.box(0, Builtins.nullValue) : null;
+                for (Value v : iterable) {
+                    profile.hotness++;
+                    if (cell != null) cell.value = v;
+                    else environment.define(0, v);
+                    try {
+                        body.eval(in);
+                    } catch (Interpreter.Break b) {
+                        if (b.amount == 1) break;
+                        b.amount--;
+                        throw b;
+                    }
+                }
+            } finally {
+                in.environment = previous;
+            }
+            return null;
+        }
+    }
+
+    static class Function extends Node {
+        final Stmt.Function declaration;
+        final Node[] body;
+
+        Function(Stmt.Function declaration, Node[] body) {
+            this.declaration = declaration;
+            this.body = body;
+        }
+
+        Value eval(Interpreter in) {
+            Cell cell = declaration.captured ? in.environment.box(declaration.slot, null) : null;
+            NodeFunction function = new NodeFunction(declaration, body, in.environment.capture(declaration.upvalues));
+            if (cell != null) cell.value = function;
+            else define(in, declaration.slot, declaration.name, function);
+            return null;
+        }
+    }
+
+    static class If extends Node {
+        final Node condition;
+        final Node thenBranch;
+        final Node elseBranch;
+
+        If(Node condition, Node thenBranch, Node elseBranch) {
+            this.condition = condition;
+            this.thenBranch = thenBranch;
+            this.elseBranch = elseBranch;
+        }
+
+        Value eval(Interpreter in) {
+            if (condition.test(in)) {
+                thenBranch.eval(in);
+            } else if (elseBranch != null) {
+                elseBranch.eval(in);
+            }
+            return null;
+        }
+    }
+
+    // Statements that compile but can't be run (imports, print).
+    static class Unsupported extends Node {
+        final String message;
+
+        Unsupported(String message) {
+            this.message = message;
+        }
+
+        Value eval(Interpreter in) {
+            throw new UnsupportedOperationException(message);
+        }
+    }
+
+    // A counted loop (see Resolver.counted). 'body' is the loop's body
+    // without the increment at the end; 'loop' is the whole loop as an
+    // ordinary While, for when the counter doesn't start out as a number.
+    static class Count extends Node {
+        final While loop;
+        final int slot;
+        final Token operator;
+        final Node limit;
+        final Node[] body;
+        final double step;
+        final boolean read;
+
+        Count(While loop, int slot, Token operator, Node[] body, double step, boolean read) {
+            this.loop = loop;
+            this.slot = slot;
+            this.operator = operator;
+            this.limit = ((Binary)loop.condition).right;
+            this.body = body;
+            this.step = step;
+            this.read = read;
+        }
+
+        Value eval(Interpreter in) {
+            Environment env = in.environment;
+            if (!(env.slots[slot] instanceof NativeNumber)) return loop.eval(in);
+            double i = ((NativeNumber)env.slots[slot]).value;
+            while (true) {
+                Value limit = this.limit.eval(in);
+                if (limit instanceof NativeNumber) {
+                    if (!Interpreter.compare(operator.type, i, ((NativeNumber)limit).value)) break;
+                } else if (!in.truthy(in.binary(operator, Builtins.makeNumberValue(i), limit))) {
+                    break;
+                }
+                loop.profile.hotness++;
+                try {
+                    for (Node statement : body) statement.eval(in);
+                } catch (Interpreter.Break b) {
+                    if (b.amount == 1) break;
+                    b.amount--;
+                    throw b;
+                }
+                i += step;
+                if (read) env.define(slot, Builtins.makeNumberValue(i));
+            }
+            return null;
+        }
+    }
+
+    static class Repeat extends Node {
+        final Node amount;
+        final Node body;
+        final Token paren;
+        final Jit.Profile profile;
+
+        Repeat(Node amount, Node body, Token paren, Jit.Profile profile) {
+            this.amount = amount;
+            this.body = body;
+            this.paren = paren;
+            this.profile = profile;
+        }
+
+        Value eval(Interpreter in) {
+            Value amount = this.amount.eval(in);
+            if (!(amount instanceof BluejayObj && ((BluejayObj)amount).class_ == Builtins.numberClass)) {
+                throw new RuntimeError(paren, "Amount for 'repeat' statement must be a number.");
+            }
+            double num = ((BluejayObj)amount).toNumber(in);
+            for (int i=0; i<num; i++) {
+                profile.hotness++;
+                try {
+                    body.eval(in);
+                } catch (Interpreter.Break b) {
+                    if (b.amount == 1) break;
+                    b.amount--;
+                    throw b;
+                }
+            }
+            return null;
+        }
+    }
+
+    static class Return extends Node {
+        final Node value;
+        final Stmt.Return statement;
+
+        Return(Node value, Stmt.Return statement) {
+            this.value = value;
+            this.statement = statement;
+        }
+
+        Value eval(Interpreter in) {
+            Value v = value == null ? Builtins.nullValue : value.eval(in);
+            throw new Interpreter.Return(v, statement);
+        }
+    }
+
+    static class Var extends Node {
+        final Node initializer;
+        final Token name;
+        final int slot;
+
+        Var(Node initializer, Token name, int slot) {
+            this.initializer = initializer;
+            this.name = name;
+            this.slot = slot;
+        }
+
+        Value eval(Interpreter in) {
+            define(in, slot, name, initializer == null ? Builtins.nullValue : initializer.eval(in));
+            return null;
+        }
+    }
+
+    // A variable some closure captures, which gets a new cell each time.
+    static class VarCell extends Node {
+        final Node initializer;
+        final int slot;
+
+        VarCell(Node initializer, int slot) {
+            this.initializer = initializer;
+            this.slot = slot;
+        }
+
+        Value eval(Interpreter in) {
+            in.environment.box(slot, initializer == null ? Builtins.nullValue : initializer.eval(in));
+            return null;
+        }
+    }
+
+    static class While extends Node {
+        final Node condition;
+        final Node body;
+        final Jit.Profile profile;
+
+        While(Node condition, Node body, Jit.Profile profile) {
+            this.condition = condition;
+            this.body = body;
+            this.profile = profile;
+        }
+
+        Value eval(Interpreter in) {
+            while (condition.test(in)) {
+                profile.hotness++;
+                try {
+                    body.eval(in);
+                } catch (Interpreter.Break b) {
+                    if (b.amount == 1) break;
+                    b.amount--;
+                    throw b;
+                }
+            }
+            return null;
+        }
+    }
+
+    // Variables
+
+    static class GetGlobal extends Node {
+        final Token name;
+
+        GetGlobal(Token name) {
+            this.name = name;
+        }
+
+        Value eval(Interpreter in) {
+            return in.globals.get(name);
+        }
+    }
+
+    // A variable in the innermost scope, the most common case.
+    static class GetLocal extends Node {
+        final int slot;
+
+        GetLocal(int slot) {
+            this.slot = slot;
+        }
+
+        Value eval(Interpreter in) {
+            return in.environment.slots[slot];
+        }
+    }
+
+    static class GetEnclosing extends Node {
+        final int depth;
+        final int slot;
+
+        GetEnclosing(int depth, int slot) {
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        Value eval(Interpreter in) {
+            return in.environment.getAt(depth, slot);
+        }
+    }
+
+    // A captured variable of the function doing the lookup.
+    static class GetCell extends Node {
+        final int depth;
+        final int slot;
+
+        GetCell(int depth, int slot) {
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        Value eval(Interpreter in) {
+            return in.environment.getCellAt(depth, slot);
+        }
+    }
+
+    // A variable of an enclosing function, through the closure.
+    static class GetUpvalue extends Node {
+        final int index;
+
+        GetUpvalue(int index) {
+            this.index = index;
+        }
+
+        Value eval(Interpreter in) {
+            return in.environment.closure[index].value;
+        }
+    }
+
+    static class AssignGlobal extends Node {
+        final Token name;
+        final Token operator;
+        final Node value;
+
+        AssignGlobal(Token name, Token operator, Node value) {
+            this.name = name;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        Value eval(Interpreter in) {
+            Value v = value != null ? value.eval(in) : null;
+            in.globals.assign(in, name, operator, v);
+            return v;
+        }
+    }
+
+    static class AssignLocal extends Node {
+        final int depth;
+        final int slot;
+        final Token operator;
+        final Node value;
+
+        AssignLocal(int depth, int slot, Token operator, Node value) {
+            this.depth = depth;
+            this.slot = slot;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        Value eval(Interpreter in) {
+            Value v = value != null ? value.eval(in) : null;
+            in.environment.assignAt(in, depth, slot, operator, v);
+            return v;
+        }
+    }
+
+    static class AssignCell extends Node {
+        final int depth;
+        final int slot;
+        final Token operator;
+        final Node value;
+
+        AssignCell(int depth, int slot, Token operator, Node value) {
+            this.depth = depth;
+            this.slot = slot;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        Value eval(Interpreter in) {
+            Value v = value != null ? value.eval(in) : null;
+            in.environment.assignCellAt(in, depth, slot, operator, v);
+            return v;
+        }
+    }
+
+    static class AssignUpvalue extends Node {
+        final int index;
+        final Token operator;
+        final Node value;
+
+        AssignUpvalue(int index, Token operator, Node value) {
+            this.index = index;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        Value eval(Interpreter in) {
+            Value v = value != null ? value.eval(in) : null;
+            in.environment.assignUpvalue(in, index, operator, v);
+            return v;
+        }
+    }
+
+    // Attributes and indexing
+
+    static class GetAttr extends Node {
+        final Node object;
+        final Token name;
+        final InlineCache cache = new InlineCache();
+
+        GetAttr(Node object, Token name) {
+            this.object = object;
+            this.name = name;
+        }
+
+        Value eval(Interpreter in) {
+            return object.eval(in).getAttr(in, name, cache);
+        }
+    }
+
+    static class SetAttr extends Node {
+        final Node object;
+        final Token name;
+        final Token operator;
+        final Node value;
+        final InlineCache cache = new InlineCache();
+
+        SetAttr(Node object, Token name, Token operator, Node value) {
+            this.object = object;
+            this.name = name;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        Value eval(Interpreter in) {
+            Value obj = object.eval(in);
+            Value v = value != null ? value.eval(in) : null;
+            obj.setAttr(in, name.lexeme, operator, v, cache);
+            return v;
+        }
+    }
+
+    // Indexing specializes itself like the operators below: on lists
+    // indexed by numbers, and on classes with a `$getitem` method.
+    static class GetIndex extends Specializing {
+        GetIndex(Node object, Node index) { super(object, index, "$getitem"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == LISTS && l instanceof NativeList && r instanceof NativeNumber) {
+                List<Value> elements = ((NativeList)l).elements;
+                double n = ((NativeNumber)r).value;
+                if (n % 1 == 0 && n >= 0 && n < elements.size()) return elements.get((int)n);
+                return l.getItem(in, r);
+            }
+            return slow(in, l, r);
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.getItem(in, r); }
+        boolean on(int kind) { return kind == LISTS; }
+    }
+
+    static class SetIndex extends Node {
+        final Node object;
+        final Node index;
+        final Node value;
+
+        SetIndex(Node object, Node index, Node value) {
+            this.object = object;
+            this.index = index;
+            this.value = value;
+        }
+
+        Value eval(Interpreter in) {
+            Value v = value.eval(in);
+            object.eval(in).setItem(in, index.eval(in), v);
+            return v;
+        }
+    }
+
+    // list[i] += value and friends.
+    static class CompoundSetIndex extends Node {
+        final Node object;
+        final Node index;
+        final Token operator;
+        final Node value;
+
+        CompoundSetIndex(Node object, Node index, Token operator, Node value) {
+            this.object = object;
+            this.index = index;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        Value eval(Interpreter in) {
+            Value v = value.eval(in);
+            Value obj = object.eval(in);
+            Value i = index.eval(in);
+            v = Environment.operate(in, operator, obj.getItem(in, i), v);
+            obj.setItem(in, i, v);
+            return v;
+        }
+    }
+
+    // Literals
+
+    static class Literal extends Node {
+        final Value value;
+
+        Literal(Value value) {
+            this.value = value;
+        }
+
+        Value eval(Interpreter in) {
+            return value;
+        }
+    }
+
+    static class ListLiteral extends Node {
+        final Node[] elements;
+
+        ListLiteral(Node[] elements) {
+            this.elements = elements;
+        }
+
+        Value eval(Interpreter in) {
+            NativeList list = new NativeList(new ArrayList<>(elements.length));
+            for (Node e : elements) {
+                list.elements.add(e.eval(in));
+            }
+            return list;
+        }
+    }
+
+    static class Dict extends Node {
+        final Node[] keys;
+        final Node[] values;
+
+        Dict(Node[] keys, Node[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        Value eval(Interpreter in) {
+            Map<Value,Value> map = new HashMap<>();
+            for (int i=0; i<keys.length; i++) {
+                map.put(keys[i].eval(in), values[i].eval(in));
+            }
+            return new Value.Dict(map);
+        }
+    }
+
+    // Calls
+
+    static class Call extends Node {
+        final Node callee;
+        final Node[] arguments;
+        final Token paren;
+
+        Call(Node callee, Node[] arguments, Token paren) {
+            this.callee = callee;
+            this.arguments = arguments;
+            this.paren = paren;
+        }
+
+        Value eval(Interpreter in) {
+            Value callee = this.callee.eval(in);
+            if (callee instanceof BluejayFunction && ((BluejayFunction)callee).arity == arguments.length) {
+                BluejayFunction function = (BluejayFunction)callee;
+                Environment frame = function.frame();
+                for (int i = 0; i < arguments.length; i++) {
+                    frame.define(i, arguments[i].eval(in));
+                }
+                return function.run(in, frame);
+            }
+            if (callee instanceof BluejayRegisteredMethod && ((BluejayRegisteredMethod)callee).arity == arguments.length) {
+                return callMethod(in, ((BluejayRegisteredMethod)callee).method, ((BluejayRegisteredMethod)callee).obj, arguments);
+            }
+            return callValue(in, callee, arguments, paren);
+        }
+    }
+
+    // obj.name(...), which calls methods with obj as the receiver directly.
+    static class Invoke extends Node {
+        final Node object;
+        final Token name;
+        final InlineCache cache = new InlineCache();
+        final Node[] arguments;
+        final Token paren;
+
+        Invoke(Node object, Token name, Node[] arguments, Token paren) {
+            this.object = object;
+            this.name = name;
+            this.arguments = arguments;
+            this.paren = paren;
+        }
+
+        Value eval(Interpreter in) {
+            Value object = this.object.eval(in);
+            if (!(object instanceof BluejayObj)) {
+                return callValue(in, object.getAttr(in, name, cache), arguments, paren);
+            }
+            Value method = ((BluejayObj)object).findAttr(name, cache);
+            if (method instanceof BluejayMethod && ((BluejayMethod)method).arity == arguments.length) {
+                return callMethod(in, (BluejayMethod)method, object, arguments);
+            }
+            if (method instanceof BluejayMethod || method instanceof NativeMethod) {
+                List<Value> args = evalAll(in, arguments);
+                int arity = method instanceof BluejayMethod ? ((BluejayMethod)method).arity : ((NativeMethod)method).arity;
+                checkArity(paren, arity, args.size());
+                try {
+                    if (method instanceof BluejayMethod) return ((BluejayMethod)method).call(in, args, object);
+                    return ((NativeMethod)method).call(in, args, (BluejayObj)object);
+                } catch (Interpreter.Return r) {
+                    return r.value;
+                }
+            }
+            return callValue(in, method, arguments, paren);
+        }
+    }
+
+    static Value callMethod(Interpreter in, BluejayMethod method, Value object, Node[] arguments) {
+        Environment frame = method.frame(object);
+        for (int i = 0; i < arguments.length; i++) {
+            frame.define(i + 1, arguments[i].eval(in));
+        }
+        return method.result(in, frame);
+    }
+
+    static Value callValue(Interpreter in, Value callee, Node[] arguments, Token paren) {
+        List<Value> args = evalAll(in, arguments);
+        if (!(callee instanceof BluejayCallable)) {
+            throw new RuntimeError(paren, "Object of type '"+in.typeOf(callee)+"' is not callable.");
+        }
+        BluejayCallable function = (BluejayCallable)callee;
+        checkArity(paren, function.arity(), args.size());
+        try {
+            return function.call(in, args);
+        } catch (Interpreter.Return r) {
+            return r.value;
+        }
+    }
+
+    static List<Value> evalAll(Interpreter in, Node[] nodes) {
+        List<Value> values = new ArrayList<>(nodes.length);
+        for (Node node : nodes) {
+            values.add(node.eval(in));
+        }
+        return values;
+    }
+
+    static void checkArity(Token paren, int arity, int argc) {
+        if (argc != arity) {
+            throw new RuntimeError(paren, "Expected " + arity + " arguments but got " + argc + ".");
+        }
+    }
+
+    // Operators. Operands are evaluated left first, and both of them are,
+    // except when the left one already decides an and/or.
+    //
+    // Arithmetic, comparisons, unary minus and plus, and indexing specialize
+    // themselves on the operands they get. The first time one runs, it
+    // notes what kind they are and picks a fast path for that kind: plain
+    // numbers, strings, lists, or instances of a class with a `$` method for
+    // the operator (see Overload). From then on every run checks that the
+    // operands are still that kind and takes the fast path. The first time
+    // they aren't, the node deoptimizes to GENERIC for good, and calls the
+    // operator method on the value the way it always has.
+    //
+    // Truffle would rewrite the node into a subclass for each case. A state
+    // field does the same job here without parents having to swap out their
+    // children.
+
+    static final int UNINITIALIZED = 0, NUMBERS = 1, STRINGS = 2, LISTS = 3, OVERLOAD = 4, GENERIC = 5;
+
+    // The `$` method an operator node found on its operand's class, kept
+    // until the statics of some class change (see BluejayClass.epoch).
+    static class Overload {
+        private final String name;
+        private java.lang.Class<?> type;
+        private BluejayClass class_;
+        private Value method;
+        private int epoch;
+
+        Overload(String name) {
+            this.name = name;
+        }
+
+        // Looks the method up on the object's class. Returns false if it
+        // doesn't have one, or if the object's own operator method does
+        // something first that calling the `$` method directly would skip.
+        boolean cache(Value object) {
+            if (!(object instanceof BluejayObj) || overridden(object)) return false;
+            Value method = ((BluejayObj)object).class_.getStatic(name);
+            if (!(method instanceof BluejayMethod) && !(method instanceof NativeMethod)) return false;
+            type = object.getClass();
+            class_ = ((BluejayObj)object).class_;
+            this.method = method;
+            epoch = BluejayClass.epoch;
+            return true;
+        }
+
+        private boolean overridden(Value object) {
+            if (object instanceof NativeNumber) return !name.equals("$getitem");
+            if (object instanceof NativeString) return name.equals("$add") || name.equals("$eq");
+            if (object instanceof NativeList) return name.equals("$getitem");
+            return false;
+        }
+
+        boolean matches(Value object) {
+            return object.getClass() == type && ((BluejayObj)object).class_ == class_ && BluejayClass.epoch == epoch;
+        }
+
+        // Whether the object is of the class the method was cached for,
+        // though the cache may be out of date.
+        boolean sameClass(Value object) {
+            return object.getClass() == type && ((BluejayObj)object).class_ == class_;
+        }
+
+        // What BluejayObj.tryOperator does once it's found the method.
+        Value call(Interpreter in, Value object, Value... arguments) {
+            List<Value> args = new ArrayList<>(Arrays.asList(arguments));
+            try {
+                if (method instanceof BluejayMethod) return ((BluejayMethod)method).call(in, args, object);
+                return ((NativeMethod)method).call(in, args, (BluejayObj)object);
+            } catch (Interpreter.Return r) {
+                return r.value;
+            }
+        }
+    }
+
+    abstract static class Binary extends Node {
+        final Node left;
+        final Node right;
+
+        Binary(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    // A binary operator that specializes itself. Each subclass checks for
+    // its own fast paths in eval() before anything else, so HotSpot sees
+    // them separately for each operator, and leaves the rest to slow().
+    abstract static class Specializing extends Binary {
+        int state = UNINITIALIZED;
+        final Overload overload;
+
+        Specializing(Node left, Node right, String name) {
+            super(left, right);
+            overload = new Overload(name);
+        }
+
+        // The operator method on the left operand, however it's called.
+        abstract Value generic(Interpreter in, Value l, Value r);
+
+        // For operands that didn't take the node's fast path.
+        Value slow(Interpreter in, Value l, Value r) {
+            if (state == GENERIC) return generic(in, l, r);
+            if (state == OVERLOAD && overload.matches(l)) return overload.call(in, l, r);
+            return specialize(in, l, r);
+        }
+
+        // Picks a fast path for the operands the first time, and gives up
+        // on having one the first time they don't fit it. An overload
+        // whose class's statics have changed is just looked up again.
+        private Value specialize(Interpreter in, Value l, Value r) {
+            boolean stale = state == OVERLOAD && overload.sameClass(l);
+            int kind;
+            if (l instanceof NativeNumber && r instanceof NativeNumber && on(NUMBERS)) kind = NUMBERS;
+            else if (l instanceof NativeString && r instanceof NativeString && on(STRINGS)) kind = STRINGS;
+            else if (l instanceof NativeList && r instanceof NativeNumber && on(LISTS)) kind = LISTS;
+            else if ((state == UNINITIALIZED || stale) && overload.cache(l)) kind = OVERLOAD;
+            else kind = GENERIC;
+            state = state == UNINITIALIZED || stale && kind == OVERLOAD ? kind : GENERIC;
+            return generic(in, l, r);
+        }
+
+        // Whether the node has a fast path for the given kind of operands.
+        boolean on(int kind) {
+            return kind == NUMBERS;
+        }
+    }
+
+    static class Add extends Specializing {
+        Add(Node left, Node right) { super(left, right, "$add"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == NUMBERS && l instanceof NativeNumber && r instanceof NativeNumber) return new NativeNumber(((NativeNumber)l).value + ((NativeNumber)r).value);
+            if (state == STRINGS && l instanceof NativeString && r instanceof NativeString) return Builtins.makeStringValue(((NativeString)l).value + ((NativeString)r).value);
+            return slow(in, l, r);
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.add(in, r); }
+        boolean on(int kind) { return kind == NUMBERS || kind == STRINGS; }
+    }
+
+    static class Sub extends Specializing {
+        Sub(Node left, Node right) { super(left, right, "$sub"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == NUMBERS && l instanceof NativeNumber && r instanceof NativeNumber) return new NativeNumber(((NativeNumber)l).value - ((NativeNumber)r).value);
+            return slow(in, l, r);
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.sub(in, r); }
+    }
+
+    static class Mul extends Specializing {
+        Mul(Node left, Node right) { super(left, right, "$mul"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == NUMBERS && l instanceof NativeNumber && r instanceof NativeNumber) return new NativeNumber(((NativeNumber)l).value * ((NativeNumber)r).value);
+            return slow(in, l, r);
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.mul(in, r); }
+    }
+
+    // Division and modulo by zero go the generic way, which is where the
+    // error comes from, without counting as a failed guard.
+    static class Div extends Specializing {
+        Div(Node left, Node right) { super(left, right, "$div"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == NUMBERS && l instanceof NativeNumber && r instanceof NativeNumber) {
+                double divisor = ((NativeNumber)r).value;
+                return divisor != 0 ? new NativeNumber(((NativeNumber)l).value / divisor) : l.div(in, r);
+            }
+            return slow(in, l, r);
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.div(in, r); }
+    }
+
+    static class Mod extends Specializing {
+        Mod(Node left, Node right) { super(left, right, "$mod"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == NUMBERS && l instanceof NativeNumber && r instanceof NativeNumber) {
+                double divisor = ((NativeNumber)r).value;
+                if (divisor == 0) return l.mod(in, r);
+                double dividend = ((NativeNumber)l).value;
+                // The remainder of whole numbers, which it nearly always is,
+                // is a lot quicker to work out as ints. The sign of a zero
+                // still comes from the dividend, like it does for doubles.
+                if ((int)dividend == dividend && (int)divisor == divisor) {
+                    int remainder = (int)dividend % (int)divisor;
+                    return new NativeNumber(remainder == 0 ? Math.copySign(0.0, dividend) : remainder);
+                }
+                return new NativeNumber(dividend % divisor);
+            }
+            return slow(in, l, r);
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.mod(in, r); }
+    }
+
+    static class Pow extends Specializing {
+        Pow(Node left, Node right) { super(left, right, "$pow"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == NUMBERS && l instanceof NativeNumber && r instanceof NativeNumber) return new NativeNumber(Math.pow(((NativeNumber)l).value, ((NativeNumber)r).value));
+            return slow(in, l, r);
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.pow(in, r); }
+    }
+
+    // Comparisons of two numbers as a condition don't need the node's
+    // feedback to be quick, so test() checks for them first either way.
+
+    static class Eq extends Specializing {
+        Eq(Node left, Node right) { super(left, right, "$eq"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == NUMBERS && l instanceof NativeNumber && r instanceof NativeNumber) return Builtins.makeBooleanValue(((NativeNumber)l).value == ((NativeNumber)r).value);
+            if (state == STRINGS && l instanceof NativeString && r instanceof NativeString) return Builtins.makeBooleanValue(((NativeString)l).value.equals(((NativeString)r).value));
+            return slow(in, l, r);
+        }
+        boolean test(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (l instanceof NativeNumber && r instanceof NativeNumber) return ((NativeNumber)l).value == ((NativeNumber)r).value;
+            if (state == STRINGS && l instanceof NativeString && r instanceof NativeString) return ((NativeString)l).value.equals(((NativeString)r).value);
+            return in.truthy(slow(in, l, r));
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.eq(in, r); }
+        boolean on(int kind) { return kind == NUMBERS || kind == STRINGS; }
+    }
+
+    static class Ne extends Specializing {
+        Ne(Node left, Node right) { super(left, right, "$ne"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == NUMBERS && l instanceof NativeNumber && r instanceof NativeNumber) return Builtins.makeBooleanValue(((NativeNumber)l).value != ((NativeNumber)r).value);
+            return slow(in, l, r);
+        }
+        boolean test(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (l instanceof NativeNumber && r instanceof NativeNumber) return ((NativeNumber)l).value != ((NativeNumber)r).value;
+            return in.truthy(slow(in, l, r));
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.ne(in, r); }
+    }
+
+    static class Lt extends Specializing {
+        Lt(Node left, Node right) { super(left, right, "$lt"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == NUMBERS && l instanceof NativeNumber && r instanceof NativeNumber) return Builtins.makeBooleanValue(((NativeNumber)l).value < ((NativeNumber)r).value);
+            return slow(in, l, r);
+        }
+        boolean test(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (l instanceof NativeNumber && r instanceof NativeNumber) return ((NativeNumber)l).value < ((NativeNumber)r).value;
+            return in.truthy(slow(in, l, r));
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.lt(in, r); }
+    }
+
+    static class Le extends Specializing {
+        Le(Node left, Node right) { super(left, right, "$lte"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == NUMBERS && l instanceof NativeNumber && r instanceof NativeNumber) return Builtins.makeBooleanValue(((NativeNumber)l).value <= ((NativeNumber)r).value);
+            return slow(in, l, r);
+        }
+        boolean test(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (l instanceof NativeNumber && r instanceof NativeNumber) return ((NativeNumber)l).value <= ((NativeNumber)r).value;
+            return in.truthy(slow(in, l, r));
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.lte(in, r); }
+    }
+
+    static class Gt extends Specializing {
+        Gt(Node left, Node right) { super(left, right, "$gt"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == NUMBERS && l instanceof NativeNumber && r instanceof NativeNumber) return Builtins.makeBooleanValue(((NativeNumber)l).value > ((NativeNumber)r).value);
+            return slow(in, l, r);
+        }
+        boolean test(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (l instanceof NativeNumber && r instanceof NativeNumber) return ((NativeNumber)l).value > ((NativeNumber)r).value;
+            return in.truthy(slow(in, l, r));
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.gt(in, r); }
+    }
+
+    static class Ge extends Specializing {
+        Ge(Node left, Node right) { super(left, right, "$gte"); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (state == NUMBERS && l instanceof NativeNumber && r instanceof NativeNumber) return Builtins.makeBooleanValue(((NativeNumber)l).value >= ((NativeNumber)r).value);
+            return slow(in, l, r);
+        }
+        boolean test(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            if (l instanceof NativeNumber && r instanceof NativeNumber) return ((NativeNumber)l).value >= ((NativeNumber)r).value;
+            return in.truthy(slow(in, l, r));
+        }
+        Value generic(Interpreter in, Value l, Value r) { return l.gte(in, r); }
+    }
+
+    static class And extends Binary {
+        And(Node left, Node right) { super(left, right); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            return in.truthy(l) ? right.eval(in) : l;
+        }
+        boolean test(Interpreter in) { return left.test(in) && right.test(in); }
+    }
+
+    static class Or extends Binary {
+        Or(Node left, Node right) { super(left, right); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            return in.truthy(l) ? l : right.eval(in);
+        }
+        boolean test(Interpreter in) { return left.test(in) || right.test(in); }
+    }
+
+    static class Xor extends Binary {
+        Xor(Node left, Node right) { super(left, right); }
+        Value eval(Interpreter in) {
+            Value l = left.eval(in);
+            Value r = right.eval(in);
+            return Builtins.makeBooleanValue(in.truthy(l) != in.truthy(r));
+        }
+    }
+
+    // Unary minus and plus, specialized like the binary operators on
+    // numbers and overloads.
+    abstract static class SpecializingUnary extends Node {
+        final Node right;
+        int state = UNINITIALIZED;
+        final Overload overload;
+
+        SpecializingUnary(Node right, String name) {
+            this.right = right;
+            overload = new Overload(name);
+        }
+
+        abstract Value generic(Interpreter in, Value r);
+
+        Value slow(Interpreter in, Value r) {
+            if (state == GENERIC) return generic(in, r);
+            if (state == OVERLOAD && overload.matches(r)) return overload.call(in, r);
+            boolean stale = state == OVERLOAD && overload.sameClass(r);
+            int kind;
+            if (r instanceof NativeNumber) kind = NUMBERS;
+            else if ((state == UNINITIALIZED || stale) && overload.cache(r)) kind = OVERLOAD;
+            else kind = GENERIC;
+            state = state == UNINITIALIZED || stale && kind == OVERLOAD ? kind : GENERIC;
+            return generic(in, r);
+        }
+    }
+
+    static class Neg extends SpecializingUnary {
+        Neg(Node right) { super(right, "$neg"); }
+        Value eval(Interpreter in) {
+            Value r = right.eval(in);
+            if (state == NUMBERS && r instanceof NativeNumber) return new NativeNumber(-((NativeNumber)r).value);
+            return slow(in, r);
+        }
+        Value generic(Interpreter in, Value r) { return r.neg(in); }
+    }
+
+    static class Uadd extends SpecializingUnary {
+        Uadd(Node right) { super(right, "$uadd"); }
+        Value eval(Interpreter in) {
+            Value r = right.eval(in);
+            if (state == NUMBERS && r instanceof NativeNumber) return r;
+            return slow(in, r);
+        }
+        Value generic(Interpreter in, Value r) { return r.uadd(in); }
+    }
+
+    static class Not extends Node {
+        final Node right;
+        Not(Node right) { this.right = right; }
+        Value eval(Interpreter in) { return Builtins.makeBooleanValue(!right.test(in)); }
+        boolean test(Interpreter in) { return !right.test(in); }
+    }
+}
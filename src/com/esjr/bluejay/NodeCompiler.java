@@ -0,0 +1,225 @@
+package com.esjr.bluejay;
+
+import java.util.*;
+
+// Turns a resolved program into executable nodes (see Node). Every decision
+// that only depends on the source, like which operator a token stands for
+// or whether a variable is local, is made here once instead of each time
+// the code runs.
+class NodeCompiler implements Expr.Visitor<Node>, Stmt.Visitor<Node> {
+    Node.Script compile(List<Stmt> stmts) {
+        return new Node.Script(statements(stmts));
+    }
+
+    private Node compile(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    private Node compile(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    private Node[] statements(List<Stmt> stmts) {
+        Node[] nodes = new Node[stmts.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compile(stmts.get(i));
+        }
+        return nodes;
+    }
+
+    private Node[] expressions(List<Expr> exprs) {
+        Node[] nodes = new Node[exprs.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compile(exprs.get(i));
+        }
+        return nodes;
+    }
+
+    // Function and method bodies run directly in the call's environment,
+    // not in a scope of their own.
+    private Node[] body(Stmt body) {
+        return statements(((Stmt.Block)body).statements);
+    }
+
+    public Node visit(Stmt.Block stmt) {
+        if (stmt.scopeSize == 0) return new Node.Sequence(statements(stmt.statements));
+        return new Node.Block(statements(stmt.statements), stmt.scopeSize);
+    }
+
+    public Node visit(Stmt.Break stmt) {
+        return new Node.Break(compile(stmt.value), stmt);
+    }
+
+    public Node visit(Stmt.Class stmt) {
+        Node[][] methodBodies = new Node[stmt.methods.size()][];
+        for (int i = 0; i < methodBodies.length; i++) {
+            methodBodies[i] = body(((Stmt.Method)stmt.methods.get(i)).body);
+        }
+        return new Node.Class(stmt, compile(stmt.inherits), methodBodies);
+    }
+
+    public Node visit(Stmt.Expression stmt) {
+        return new Node.Expression(compile(stmt.expression));
+    }
+
+    public Node visit(Stmt.Foreach stmt) {
+        return new Node.Foreach(compile(stmt.iter), compile(stmt.body), stmt.loopVar, stmt.scopeSize, stmt.captured, stmt.profile);
+    }
+
+    public Node visit(Stmt.Function stmt) {
+        return new Node.Function(stmt, body(stmt.body));
+    }
+
+    public Node visit(Stmt.If stmt) {
+        return new Node.If(compile(stmt.condition), compile(stmt.thenBranch), stmt.elseBranch == null ? null : compile(stmt.elseBranch));
+    }
+
+    public Node visit(Stmt.Import stmt) {
+        return new Node.Unsupported("Imports not implemented yet.");
+    }
+
+    public Node visit(Stmt.Method stmt) {
+        throw new UnsupportedOperationException("Stmt.Method should only be compiled as part of a class.");
+    }
+
+    public Node visit(Stmt.Print stmt) {
+        return new Node.Unsupported("Stmt.Print has been deprecated.");
+    }
+
+    public Node visit(Stmt.Repeat stmt) {
+        return new Node.Repeat(compile(stmt.amount), compile(stmt.body), stmt.paren, stmt.profile);
+    }
+
+    public Node visit(Stmt.Return stmt) {
+        return new Node.Return(compile(stmt.value), stmt);
+    }
+
+    public Node visit(Stmt.Var stmt) {
+        if (stmt.captured) return new Node.VarCell(compile(stmt.initializer), stmt.slot);
+        return new Node.Var(compile(stmt.initializer), stmt.name, stmt.slot);
+    }
+
+    public Node visit(Stmt.While stmt) {
+        if (stmt.counter == null) return new Node.While(compile(stmt.condition), compile(stmt.body), stmt.profile);
+        // The counted and ordinary versions share the body's nodes rather
+        // than compiling it twice, which would double for each nested loop.
+        Node[] body = statements(((Stmt.Block)stmt.body).statements);
+        Node.While loop = new Node.While(compile(stmt.condition), new Node.Sequence(body), stmt.profile);
+        Token operator = ((Expr.Binary)stmt.condition).operator;
+        return new Node.Count(loop, stmt.counter.slot, operator, Arrays.copyOf(body, body.length-1), stmt.step, stmt.counterRead);
+    }
+
+    public Node visit(Expr.Assign expr) {
+        if (expr.depth == Expr.GLOBAL) return new Node.AssignGlobal(expr.name, expr.operator, compile(expr.value));
+        if (expr.depth == Expr.UPVALUE) return new Node.AssignUpvalue(expr.slot, expr.operator, compile(expr.value));
+        if (expr.captured) return new Node.AssignCell(expr.depth, expr.slot, expr.operator, compile(expr.value));
+        return new Node.AssignLocal(expr.depth, expr.slot, expr.operator, compile(expr.value));
+    }
+
+    public Node visit(Expr.Get expr) {
+        return new Node.GetAttr(compile(expr.expr), expr.name);
+    }
+
+    public Node visit(Expr.Set expr) {
+        return new Node.SetAttr(compile(expr.expr), expr.name, expr.operator, compile(expr.value));
+    }
+
+    public Node visit(Expr.Binary expr) {
+        Node left = compile(expr.left);
+        Node right = compile(expr.right);
+        switch (expr.operator.type) {
+            case PLUS: return new Node.Add(left, right);
+            case MINUS: return new Node.Sub(left, right);
+            case STAR: return new Node.Mul(left, right);
+            case SLASH: return new Node.Div(left, right);
+            case PERCENT: return new Node.Mod(left, right);
+            case STAR_STAR: return new Node.Pow(left, right);
+            case EQUAL_EQUAL: return new Node.Eq(left, right);
+            case BANG_EQUAL: return new Node.Ne(left, right);
+            case LESS: return new Node.Lt(left, right);
+            case LESS_EQUAL: return new Node.Le(left, right);
+            case GREATER: return new Node.Gt(left, right);
+            case GREATER_EQUAL: return new Node.Ge(left, right);
+            default:
+                throw new UnsupportedOperationException("Token "+expr.operator.lexeme+" is not a valid operator.");
+        }
+    }
+
+    public Node visit(Expr.Call expr) {
+        Node[] arguments = expressions(expr.arguments);
+        if (expr.callee instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get)expr.callee;
+            return new Node.Invoke(compile(get.expr), get.name, arguments, expr.paren);
+        }
+        return new Node.Call(compile(expr.callee), arguments, expr.paren);
+    }
+
+    public Node visit(Expr.Dict expr) {
+        return new Node.Dict(expressions(expr.keys), expressions(expr.values));
+    }
+
+    public Node visit(Expr.Grouping expr) {
+        return compile(expr.expression);
+    }
+
+    public Node visit(Expr.Index expr) {
+        return new Node.GetIndex(compile(expr.expr), compile(expr.index));
+    }
+
+    public Node visit(Expr.SetIndex expr) {
+        switch (expr.operator.type) {
+            case EQUAL:
+                return new Node.SetIndex(compile(expr.expr), compile(expr.index), compile(expr.value));
+            case PLUS_EQUAL:
+            case MINUS_EQUAL:
+            case STAR_EQUAL:
+            case SLASH_EQUAL:
+            case PERCENT_EQUAL:
+            case STAR_STAR_EQUAL:
+                return new Node.CompoundSetIndex(compile(expr.expr), compile(expr.index), expr.operator, compile(expr.value));
+            default:
+                throw new UnsupportedOperationException("Token "+expr.operator.lexeme+" is not a valid operator.");
+        }
+    }
+
+    public Node visit(Expr.ListLiteral expr) {
+        return new Node.ListLiteral(expressions(expr.elements));
+    }
+
+    public Node visit(Expr.Literal expr) {
+        return new Node.Literal(expr.constant);
+    }
+
+    public Node visit(Expr.Logical expr) {
+        Node left = compile(expr.left);
+        Node right = compile(expr.right);
+        switch (expr.operator.type) {
+            case AND: return new Node.And(left, right);
+            case OR: return new Node.Or(left, right);
+            case XOR: return new Node.Xor(left, right);
+            default:
+                throw new UnsupportedOperationException("Token "+expr.operator.lexeme+" is not a valid operator.");
+        }
+    }
+
+    public Node visit(Expr.Unary expr) {
+        Node right = compile(expr.right);
+        switch (expr.operator.type) {
+            case MINUS: return new Node.Neg(right);
+            case PLUS: return new Node.Uadd(right);
+            case BANG:
+            case NOT:
+                return new Node.Not(right);
+            default:
+                throw new UnsupportedOperationException("Token "+expr.operator.lexeme+" is not a valid operator.");
+        }
+    }
+
+    public Node visit(Expr.Var expr) {
+        if (expr.depth == Expr.GLOBAL) return new Node.GetGlobal(expr.name);
+        if (expr.depth == Expr.UPVALUE) return new Node.GetUpvalue(expr.slot);
+        if (expr.captured) return new Node.GetCell(expr.depth, expr.slot);
+        if (expr.depth == 0) return new Node.GetLocal(expr.slot);
+        return new Node.GetEnclosing(expr.depth, expr.slot);
+    }
+}
@@ -0,0 +1,26 @@
+package com.esjr.bluejay;
+
+class NodeFunction extends BluejayFunction {
+    final Node[] body;
+
+    NodeFunction(Stmt.Function declaration, Node[] body, Cell[] closure) {
+        super(declaration, closure);
+        this.body = body;
+    }
+
+    Value execute(Interpreter interpreter, Environment environment) {
+        environment.box(declaration.capturedParams);
+        Environment previous = interpreter.environment;
+        try {
+            interpreter.environment = environment;
+            for (Node statement : body) {
+                statement.eval(interpreter);
+            }
+        } catch (Interpreter.Return r) {
+            return r.value;
+        } finally {
+            interpreter.environment = previous;
+        }
+        return Builtins.nullValue;
+    }
+}
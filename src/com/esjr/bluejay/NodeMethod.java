@@ -0,0 +1,24 @@
+package com.esjr.bluejay;
+
+class NodeMethod extends BluejayMethod {
+    final Node[] body;
+
+    NodeMethod(Stmt.Method declaration, Node[] body, Cell[] closure) {
+        super(declaration, closure);
+        this.body = body;
+    }
+
+    Value execute(Interpreter interpreter, Environment environment) {
+        environment.box(declaration.capturedParams);
+        Environment previous = interpreter.environment;
+        try {
+            interpreter.environment = environment;
+            for (Node statement : body) {
+                statement.eval(interpreter);
+            }
+        } finally {
+            interpreter.environment = previous;
+        }
+        return Builtins.nullValue;
+    }
+}
@@ -0,0 +1,88 @@
+package com.esjr.bluejay;
+
+// The instruction set of the bytecode VM. Every instruction is one opcode
+// byte followed by its operands, each an unsigned 16 bit big-endian number
+// (written `u16` below). Operands named `token` or `const` index into the
+// chunk's constant table. Jump offsets are relative to the end of the
+// instruction that contains them.
+final class OpCode {
+    private OpCode() {}
+
+    static final byte CONSTANT = 0;        // const              -> literal
+    static final byte NULL = 1;            //                    -> null
+    static final byte POP = 2;             // value              ->
+
+    static final byte GET_LOCAL = 3;       // slot               -> value
+    static final byte SET_LOCAL = 4;       // slot     value     -> value
+    static final byte DEFINE_LOCAL = 5;    // slot     value     ->
+    static final byte ASSIGN_LOCAL = 6;    // slot op  value     -> value      (compound assignment)
+    static final byte GET_UPVALUE = 7;     // index              -> value
+    static final byte SET_UPVALUE = 8;     // index    value     -> value
+    static final byte ASSIGN_UPVALUE = 9;  // index op value     -> value
+    static final byte GET_GLOBAL = 10;     // token              -> value
+    static final byte DEFINE_GLOBAL = 11;  // token    value     ->
+    static final byte ASSIGN_GLOBAL = 12;  // token op value     -> value
+
+    static final byte GET_ATTR = 13;       // token cache obj    -> value
+    static final byte SET_ATTR = 14;       // token op cache obj value -> value
+    static final byte GET_INDEX = 15;      // obj index          -> value
+    static final byte SET_INDEX = 16;      // op value obj index -> value
+
+    static final byte ADD = 17;            // left right         -> result
+    static final byte SUB = 18;
+    static final byte MUL = 19;
+    static final byte DIV = 20;
+    static final byte MOD = 21;
+    static final byte POW = 22;
+    static final byte EQ = 23;
+    static final byte NE = 24;
+    static final byte LT = 25;
+    static final byte LE = 26;
+    static final byte GT = 27;
+    static final byte GE = 28;
+    static final byte XOR = 31;
+    static final byte NEG = 32;            // value              -> result
+    static final byte UADD = 33;
+    static final byte NOT = 34;
+
+    static final byte BUILD_LIST = 35;     // count    elements  -> list
+    static final byte BUILD_DICT = 36;     // count    key/value pairs -> dict
+
+    static final byte JUMP = 37;           // offset
+    static final byte JUMP_IF_FALSE = 38;  // offset   cond      ->
+    static final byte LOOP = 39;           // offset (backwards)
+
+    static final byte CALL = 40;           // argc token callee args -> result
+    static final byte CLOSURE = 41;        // const (FunctionProto) -> function or method
+    static final byte CLASS = 42;          // const (Stmt.Class) count  superclass methods -> class
+    static final byte RETURN = 43;         // value              -> (to caller)
+    static final byte CLOSE_UPVALUES = 44; // slot
+
+    static final byte BREAK = 45;          // const (int[] exits) const (Stmt.Break)  amount ->
+    static final byte RAISE = 46;          // const (message) token
+    static final byte FOREACH_PREP = 47;   // token    iterable  -> iterator state
+    static final byte FOREACH_NEXT = 48;   // state-slot var-slot offset
+    static final byte REPEAT_PREP = 49;    // token    amount    -> counter state
+    static final byte REPEAT_NEXT = 50;    // state-slot offset
+    static final byte IMPORT = 51;
+    static final byte INVOKE = 52;         // token cache argc token  obj args -> result
+
+    // For and/or as values: the left operand is left as the result if it
+    // decides, otherwise popped to make way for the right one.
+    static final byte JUMP_IF_FALSE_OR_POP = 53; // offset  value -> value, or nothing
+    static final byte JUMP_IF_TRUE_OR_POP = 54;  // offset  value -> value, or nothing
+    // For conditions (see Compiler.branch). The comparison is one of EQ to GE.
+    static final byte JUMP_IF_TRUE = 55;         // offset  cond ->
+    static final byte COMPARE_JUMP_IF_FALSE = 56; // comparison offset  left right ->
+    static final byte COMPARE_JUMP_IF_TRUE = 57;  // comparison offset  left right ->
+
+    // For counted loops (see Compiler.counted).
+    static final byte COUNT_PREP = 58;           // var-slot  -> counter state
+    static final byte COUNT_TEST = 59;           // var-slot state-slot comparison offset  limit ->
+    static final byte COUNT_STEP = 60;           // var-slot state-slot const (Stmt.While) offset
+
+    // The return at the end of a function or method body. An initializer
+    // run by calling its class gives the new object there, but what a
+    // return statement gives anywhere else, as on the other engines.
+    static final byte END = 61;                  // value -> (to caller)
+}
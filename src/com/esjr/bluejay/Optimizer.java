@@ -0,0 +1,223 @@
+package com.esjr.bluejay;
+
+import java.util.*;
+
+// Simplifies a parsed program before it's resolved: operators whose
+// operands are all literals are worked out now and replaced by the result,
+// ifs and whiles whose condition is a literal lose the branch that can
+// never run, and groupings are dropped since the tree already has the
+// grouping in its shape. Bluejay.optimize (--no-optimize) turns it off.
+//
+// Folding runs the same operator code the engines do, so the result is
+// whatever the program would have computed. Literals are always built-in
+// values, which user classes can't add $-methods to, so nothing
+// overloadable is ever folded. An operation that fails (e.g. "a" - 1) is
+// left in place to fail when it runs, with the usual error and position.
+class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    private final Interpreter interpreter = new Interpreter();
+
+    List<Stmt> optimize(List<Stmt> stmts) {
+        List<Stmt> result = new ArrayList<>();
+        for (Stmt stmt : stmts) {
+            Stmt optimized = stmt.accept(this);
+            if (optimized != null) result.add(optimized);
+        }
+        return result;
+    }
+
+    private Expr optimize(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    private List<Expr> optimizeAll(List<Expr> exprs) {
+        List<Expr> result = new ArrayList<>();
+        for (Expr expr : exprs) result.add(optimize(expr));
+        return result;
+    }
+
+    // A statement that has to stay a statement, like the body of a loop.
+    // Visiting one returns null when nothing of it is left.
+    private Stmt optimizeBranch(Stmt stmt) {
+        Stmt optimized = stmt.accept(this);
+        return optimized == null ? new Stmt.Block(new ArrayList<>()) : optimized;
+    }
+
+    // A declaration that is the whole branch of an if is declared in the
+    // surrounding scope whether or not the branch runs, so it can't be
+    // dropped.
+    private static boolean removable(Stmt stmt) {
+        return !(stmt instanceof Stmt.Var || stmt instanceof Stmt.Function || stmt instanceof Stmt.Class);
+    }
+
+    private Value constant(Expr expr) {
+        return Interpreter.literal(((Expr.Literal)expr).value);
+    }
+
+    // Turns a computed value back into a literal, or returns null if it
+    // isn't one that can be shared (or the computation failed).
+    private static Expr literal(Value value) {
+        if (value instanceof NativeNumber) return new Expr.Literal(new Value.Number(((NativeNumber)value).value));
+        if (value instanceof NativeString || value instanceof NativeBoolean || value instanceof Value.BluejayBoolean) {
+            return new Expr.Literal(value);
+        }
+        return null;
+    }
+
+    public Stmt visit(Stmt.Block stmt) {
+        return new Stmt.Block(optimize(stmt.statements));
+    }
+
+    public Stmt visit(Stmt.Break stmt) {
+        return new Stmt.Break(stmt.keyword, optimize(stmt.value));
+    }
+
+    public Stmt visit(Stmt.Class stmt) {
+        List<Stmt> methods = new ArrayList<>();
+        for (Stmt method : stmt.methods) methods.add(method.accept(this));
+        return new Stmt.Class(stmt.name, stmt.inherits, methods);
+    }
+
+    public Stmt visit(Stmt.Expression stmt) {
+        return new Stmt.Expression(optimize(stmt.expression));
+    }
+
+    public Stmt visit(Stmt.Foreach stmt) {
+        return new Stmt.Foreach(stmt.loopVar, optimize(stmt.iter), optimizeBranch(stmt.body));
+    }
+
+    public Stmt visit(Stmt.Function stmt) {
+        return new Stmt.Function(stmt.name, stmt.parameters, stmt.body.accept(this));
+    }
+
+    public Stmt visit(Stmt.If stmt) {
+        Expr condition = optimize(stmt.condition);
+        if (condition instanceof Expr.Literal) {
+            boolean taken = interpreter.truthy(constant(condition));
+            Stmt dropped = taken ? stmt.elseBranch : stmt.thenBranch;
+            if (dropped == null || removable(dropped)) {
+                Stmt kept = taken ? stmt.thenBranch : stmt.elseBranch;
+                return kept == null ? null : kept.accept(this);
+            }
+        }
+        Stmt elseBranch = stmt.elseBranch == null ? null : optimizeBranch(stmt.elseBranch);
+        return new Stmt.If(condition, optimizeBranch(stmt.thenBranch), elseBranch);
+    }
+
+    public Stmt visit(Stmt.Import stmt) {
+        return stmt;
+    }
+
+    public Stmt visit(Stmt.Method stmt) {
+        return new Stmt.Method(stmt.name, stmt.parameters, stmt.body.accept(this));
+    }
+
+    public Stmt visit(Stmt.Print stmt) {
+        return new Stmt.Print(optimize(stmt.expression));
+    }
+
+    public Stmt visit(Stmt.Repeat stmt) {
+        return new Stmt.Repeat(stmt.paren, optimize(stmt.amount), optimizeBranch(stmt.body));
+    }
+
+    public Stmt visit(Stmt.Return stmt) {
+        return new Stmt.Return(stmt.keyword, optimize(stmt.value));
+    }
+
+    public Stmt visit(Stmt.Var stmt) {
+        return new Stmt.Var(stmt.name, optimize(stmt.initializer));
+    }
+
+    public Stmt visit(Stmt.While stmt) {
+        Expr condition = optimize(stmt.condition);
+        if (condition instanceof Expr.Literal && !interpreter.truthy(constant(condition)) && removable(stmt.body)) {
+            return null;
+        }
+        return new Stmt.While(condition, optimizeBranch(stmt.body));
+    }
+
+    public Expr visit(Expr.Assign expr) {
+        return new Expr.Assign(expr.name, expr.operator, optimize(expr.value));
+    }
+
+    public Expr visit(Expr.Get expr) {
+        return new Expr.Get(optimize(expr.expr), expr.name);
+    }
+
+    public Expr visit(Expr.Set expr) {
+        return new Expr.Set(optimize(expr.expr), expr.name, expr.operator, optimize(expr.value));
+    }
+
+    public Expr visit(Expr.Binary expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+        if (left instanceof Expr.Literal && right instanceof Expr.Literal) {
+            try {
+                Expr folded = literal(interpreter.binary(expr.operator, constant(left), constant(right)));
+                if (folded != null) return folded;
+            } catch (RuntimeException e) {
+                // Not folded; it fails when it runs instead.
+            }
+        }
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    public Expr visit(Expr.Call expr) {
+        return new Expr.Call(optimize(expr.callee), expr.paren, optimizeAll(expr.arguments));
+    }
+
+    public Expr visit(Expr.Dict expr) {
+        return new Expr.Dict(optimizeAll(expr.keys), optimizeAll(expr.values));
+    }
+
+    public Expr visit(Expr.Grouping expr) {
+        return optimize(expr.expression);
+    }
+
+    public Expr visit(Expr.Index expr) {
+        return new Expr.Index(optimize(expr.expr), optimize(expr.index));
+    }
+
+    public Expr visit(Expr.SetIndex expr) {
+        return new Expr.SetIndex(optimize(expr.expr), optimize(expr.index), expr.operator, optimize(expr.value));
+    }
+
+    public Expr visit(Expr.ListLiteral expr) {
+        return new Expr.ListLiteral(optimizeAll(expr.elements));
+    }
+
+    public Expr visit(Expr.Literal expr) {
+        return expr;
+    }
+
+    public Expr visit(Expr.Logical expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+        if (left instanceof Expr.Literal && right instanceof Expr.Literal) {
+            boolean leftTrue = interpreter.truthy(constant(left));
+            switch (expr.operator.type) {
+                case AND: return leftTrue ? right : left;
+                case OR: return leftTrue ? left : right;
+                case XOR: return new Expr.Literal(Builtins.makeBooleanValue(leftTrue != interpreter.truthy(constant(right))));
+                default: break;
+            }
+        }
+        return new Expr.Logical(left, expr.operator, right);
+    }
+
+    public Expr visit(Expr.Unary expr) {
+        Expr right = optimize(expr.right);
+        if (right instanceof Expr.Literal) {
+            try {
+                Expr folded = literal(interpreter.unary(expr.operator, constant(right)));
+                if (folded != null) return folded;
+            } catch (RuntimeException e) {
+                // As for Binary.
+            }
+        }
+        return new Expr.Unary(expr.operator, right);
+    }
+
+    public Expr visit(Expr.Var expr) {
+        return expr;
+    }
+}
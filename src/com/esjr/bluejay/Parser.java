@@ -413,9 +413,9 @@ class Parser {
     }
 
     private Expr primary() {
-        if (match(TRUE)) return new Expr.Literal(new Value.BluejayBoolean(true));
-        if (match(FALSE)) return new Expr.Literal(new Value.BluejayBoolean(false));
-        if (match(NULL)) return new Expr.Literal(new Value.Null());
+        if (match(TRUE)) return new Expr.Literal(Builtins.trueValue);
+        if (match(FALSE)) return new Expr.Literal(Builtins.falseValue);
+        if (match(NULL)) return new Expr.Literal(Builtins.nullValue);
         if (match(THIS, ID)) return new Expr.Var(previous());
         if (match(NUM, STR)) {
             return new Expr.Literal(previous().literal);
@@ -3,23 +3,132 @@ package com.esjr.bluejay;
 import java.util.*;
 
 class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-    public final Interpreter interpreter;
+    // A local variable along with every declaration and use of it, which all
+    // need to know if a closure captures it. That's only certain once its
+    // scope ends, so they're marked then.
+    private static class Local {
+        final int slot;
+        boolean captured = false;
+        final List<Object> refs = new ArrayList<>();
+
+        Local(int slot) {
+            this.slot = slot;
+        }
+    }
+
+    // A function (or method) being resolved: the index in 'scopes' of its
+    // outermost scope, what its closure captures, as the (depth, slot)
+    // pairs Environment.capture takes, and the profile its loops count
+    // their iterations towards (see Jit).
+    private static class Function {
+        final int scope;
+        final List<Integer> upvalues = new ArrayList<>();
+        final Jit.Profile profile;
+
+        Function(int scope, Jit.Profile profile) {
+            this.scope = scope;
+            this.profile = profile;
+        }
+
+        int addUpvalue(int depth, int slot) {
+            for (int i = 0; i < upvalues.size(); i += 2) {
+                if (upvalues.get(i) == depth && upvalues.get(i + 1) == slot) return i / 2;
+            }
+            upvalues.add(depth);
+            upvalues.add(slot);
+            return upvalues.size() / 2 - 1;
+        }
+    }
+
     private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    // The locals declared in the matching scope, by name.
+    private final Stack<Map<String, Local>> locals = new Stack<>();
+    // The functions enclosing the code being resolved. The script itself is
+    // the outermost one, so blocks at the top level work like a function's.
+    private final Stack<Function> functions = new Stack<>();
     private int inClass = 0;
-    
-    public Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+
+    Resolver() {
+        functions.push(new Function(0, new Jit.Profile()));
     }
     
+    // A block that declares nothing gets no scope of its own (and no
+    // environment when it runs, which scopeSize 0 tells the engines), so
+    // it doesn't count towards the depth of anything inside it.
     public Void visit(Stmt.Block stmt) {
+        if (!declares(stmt.statements)) {
+            resolve(stmt.statements);
+            stmt.scopeSize = 0;
+            return null;
+        }
         beginScope();
         resolve(stmt.statements);
-        endScope();
+        for (int i = 0; i + 1 < stmt.statements.size(); i++) {
+            if (stmt.statements.get(i) instanceof Stmt.Var && stmt.statements.get(i + 1) instanceof Stmt.While) {
+                counted((Stmt.Var)stmt.statements.get(i), (Stmt.While)stmt.statements.get(i + 1));
+            }
+        }
+        stmt.scopeSize = endScope();
         return null;
     }
 
+    // Marks a while loop that's a counted loop over the variable declared
+    // just before it (what a for loop turns into), which the engines can
+    // run with a double as the counter instead of a Value:
+    //
+    //     var i = start;
+    //     while (i < limit) {
+    //         ...
+    //         i++;
+    //     }
+    //
+    // The comparison can be any of < <= > >=, and the last statement can
+    // instead be i--, i += n or i -= n for a number literal n. Anything
+    // else that uses i has to be a plain read, and nothing can capture it,
+    // so the increment at the end is the only thing that changes it. If
+    // nothing reads it either, the engines don't store it at all.
+    private void counted(Stmt.Var declaration, Stmt.While loop) {
+        Local local = locals.peek().get(declaration.name.lexeme);
+        if (local.captured || !(loop.condition instanceof Expr.Binary)) return;
+        Expr.Binary condition = (Expr.Binary)loop.condition;
+        switch (condition.operator.type) {
+            case LESS: case LESS_EQUAL: case GREATER: case GREATER_EQUAL: break;
+            default: return;
+        }
+        if (!(loop.body instanceof Stmt.Block) || ((Stmt.Block)loop.body).scopeSize != 0) return;
+        List<Stmt> body = ((Stmt.Block)loop.body).statements;
+        if (body.isEmpty() || !(body.get(body.size()-1) instanceof Stmt.Expression)) return;
+        Expr last = ((Stmt.Expression)body.get(body.size()-1)).expression;
+        if (!(last instanceof Expr.Assign)) return;
+        Expr.Assign increment = (Expr.Assign)last;
+        double step;
+        switch (increment.operator.type) {
+            case PLUS_PLUS: step = 1; break;
+            case MINUS_MINUS: step = -1; break;
+            case PLUS_EQUAL: case MINUS_EQUAL:
+                if (!(increment.value instanceof Expr.Literal) || !(((Expr.Literal)increment.value).value instanceof Value.Number)) return;
+                step = ((Value.Number)((Expr.Literal)increment.value).value).value;
+                if (increment.operator.type == TokenType.MINUS_EQUAL) step = -step;
+                break;
+            default: return;
+        }
+        boolean read = false;
+        boolean tested = false, incremented = false;
+        for (Object ref : local.refs) {
+            if (ref == declaration) continue;
+            if (ref == condition.left) tested = true;
+            else if (ref == increment) incremented = true;
+            else if (ref instanceof Expr.Var) read = true;
+            else return;
+        }
+        if (!tested || !incremented) return;
+        loop.counter = declaration;
+        loop.step = step;
+        loop.counterRead = read;
+    }
+
     public Void visit(Stmt.Var stmt) {
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name, stmt);
         if (stmt.initializer != null) {
           resolve(stmt.initializer);
         }
@@ -34,18 +143,32 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         if (inClass == 0 && expr.name.type == TokenType.THIS) {
             Bluejay.error(expr.name, "Cannot use 'this' outside of class definition.");
         }
-        resolveLocal(expr, expr.name);
+        int scope = resolveLocal(expr.name);
+        if (scope >= functions.peek().scope) {
+            expr.depth = scopes.size()-1-scope;
+            expr.slot = use(scope, expr.name, expr);
+        } else if (scope != -1) {
+            expr.depth = Expr.UPVALUE;
+            expr.slot = resolveUpvalue(functions.size()-1, scope, expr.name.lexeme);
+        }
         return null;
     }
 
     public Void visit(Expr.Assign expr) {
         if (expr.value != null) resolve(expr.value);
-        resolveLocal(expr, expr.name);
+        int scope = resolveLocal(expr.name);
+        if (scope >= functions.peek().scope) {
+            expr.depth = scopes.size()-1-scope;
+            expr.slot = use(scope, expr.name, expr);
+        } else if (scope != -1) {
+            expr.depth = Expr.UPVALUE;
+            expr.slot = resolveUpvalue(functions.size()-1, scope, expr.name.lexeme);
+        }
         return null;
     }
 
     public Void visit(Stmt.Function stmt) {
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name, stmt);
         define(stmt.name);
 
         resolveFunction(stmt);
@@ -58,12 +181,12 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     public Void visit(Stmt.Class stmt) {
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name, stmt);
         define(stmt.name);
 
         inClass++;
         
-        if (stmt.inherits != null) resolveLocal(stmt.inherits, stmt.inherits.name);
+        if (stmt.inherits != null) resolve(stmt.inherits);
         
         for (Stmt mthd : stmt.methods) {
             resolve(mthd);
@@ -79,12 +202,13 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     public Void visit(Stmt.Foreach stmt) {
+        stmt.profile = functions.peek().profile;
         resolve(stmt.iter);
         beginScope();
-        declare(stmt.loopVar);
+        declare(stmt.loopVar, stmt);
         define(stmt.loopVar);
         resolve(stmt.body);
-        endScope();
+        stmt.scopeSize = endScope();
         return null;
     }
 
@@ -96,13 +220,13 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     public Void visit(Stmt.Import stmt) {
-        declare(stmt.name);
+        declare(stmt.name, null);
         define(stmt.name);
         return null;
     }
 
     public Void visit(Stmt.Method stmt) {
-        declare(stmt.name);
+        declare(stmt.name, null);
         define(stmt.name);
 
         resolveFunction(stmt);
@@ -115,6 +239,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     public Void visit(Stmt.Repeat stmt) {
+        stmt.profile = functions.peek().profile;
         resolve(stmt.amount);
         resolve(stmt.body);
         return null;
@@ -126,6 +251,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     public Void visit(Stmt.While stmt) {
+        stmt.profile = functions.peek().profile;
         resolve(stmt.condition);
         resolve(stmt.body);
         return null;
@@ -192,6 +318,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     public Void visit(Expr.Literal expr) {
+        expr.constant = Interpreter.literal(expr.value);
         return null;
     }
 
@@ -206,39 +333,92 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    // Parameters take the first slots of the function's scope (after 'this'
+    // for methods), in order, which is how the calls bind them.
     private void resolveFunction(Stmt.Function function) {
-        beginScope();
-        for (Token param : function.parameters.keySet()) {
-            declare(param);
-            define(param);
-        }
+        beginFunction(function.profile);
+        declareParameters(function.parameters.keySet());
+        int params = locals.peek().size();
         resolve(((Stmt.Block)function.body).statements);
-        endScope();
+        function.capturedParams = capturedParams(params);
+        function.upvalues = endFunction();
+        function.scopeSize = endScope();
     }
 
     private void resolveFunction(Stmt.Method function) {
-        beginScope();
+        beginFunction(function.profile);
         scopes.peek().put("this", true);
-        for (Token param : function.parameters.keySet()) {
-            declare(param);
+        locals.peek().put("this", new Local(0));
+        declareParameters(function.parameters.keySet());
+        int params = locals.peek().size();
+        resolve(((Stmt.Block)function.body).statements);
+        function.capturedParams = capturedParams(params);
+        function.upvalues = endFunction();
+        function.scopeSize = endScope();
+    }
+
+    // Each parameter gets a slot of its own, so a name can only be used
+    // for one of them.
+    private void declareParameters(Set<Token> parameters) {
+        for (Token param : parameters) {
+            if (scopes.peek().containsKey(param.lexeme)) {
+                Bluejay.error(param, "Duplicate parameter '" + param.lexeme + "'.");
+            }
+            declare(param, null);
             define(param);
         }
-        resolve(((Stmt.Block)function.body).statements);
-        endScope();
     }
 
-    private void resolveLocal(Expr expr, Token name) {
+    private boolean declares(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Var || statement instanceof Stmt.Function
+                || statement instanceof Stmt.Class || statement instanceof Stmt.Import) return true;
+        }
+        return false;
+    }
+
+    // Returns the index of the innermost scope declaring the name, or -1 if
+    // it's a global.
+    private int resolveLocal(Token name) {
         for (int i=scopes.size()-1; i>=0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size()-1-i);
-                return;
-            }
+            if (scopes.get(i).containsKey(name.lexeme)) return i;
         }
+        return -1;
+    }
+
+    // Records a use of the local declared in the given scope and returns its
+    // slot.
+    private int use(int scope, Token name, Expr expr) {
+        Local local = locals.get(scope).get(name.lexeme);
+        local.refs.add(expr);
+        return local.slot;
+    }
+
+    // The given function refers to a variable declared in a scope outside
+    // it. Marks the variable as captured and threads it through the closure
+    // of every function in between, returning its index in this one's.
+    private int resolveUpvalue(int function, int scope, String name) {
+        Function current = functions.get(function);
+        if (scope >= functions.get(function-1).scope) {
+            Local local = locals.get(scope).get(name);
+            local.captured = true;
+            // Closures are made in the scope just outside the function.
+            return current.addUpvalue(current.scope-1-scope, local.slot);
+        }
+        return current.addUpvalue(Expr.UPVALUE, resolveUpvalue(function-1, scope, name));
     }
 
-    private void declare(Token name) {
-        if (scopes.isEmpty()) return;
+    // Returns the slot given to the name, or Expr.GLOBAL at the top level.
+    private int declare(Token name, Stmt declaration) {
+        if (scopes.isEmpty()) return Expr.GLOBAL;
         scopes.peek().put(name.lexeme, false);
+        Local local = locals.peek().get(name.lexeme);
+        if (local == null) {
+            local = new Local(locals.peek().size());
+            locals.peek().put(name.lexeme, local);
+        }
+        if (declaration != null) local.refs.add(declaration);
+        return local.slot;
     }
 
     private void define(Token name) {
@@ -248,10 +428,55 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     private void beginScope() {
         scopes.push(new HashMap<String, Boolean>());
+        locals.push(new HashMap<String, Local>());
     }
 
-    private void endScope() {
+    // Returns how many slots the environment for the scope needs.
+    private int endScope() {
         scopes.pop();
+        Map<String, Local> scope = locals.pop();
+        for (Local local : scope.values()) {
+            if (!local.captured) continue;
+            for (Object ref : local.refs) {
+                markCaptured(ref);
+            }
+        }
+        return scope.size();
+    }
+
+    private void markCaptured(Object ref) {
+        if (ref instanceof Expr.Var) ((Expr.Var)ref).captured = true;
+        else if (ref instanceof Expr.Assign) ((Expr.Assign)ref).captured = true;
+        else if (ref instanceof Stmt.Var) ((Stmt.Var)ref).captured = true;
+        else if (ref instanceof Stmt.Function) ((Stmt.Function)ref).captured = true;
+        else if (ref instanceof Stmt.Class) ((Stmt.Class)ref).captured = true;
+        else if (ref instanceof Stmt.Foreach) ((Stmt.Foreach)ref).captured = true;
+    }
+
+    private void beginFunction(Jit.Profile profile) {
+        functions.push(new Function(scopes.size(), profile));
+        beginScope();
+    }
+
+    // Returns the upvalues of the function, leaving its scope to be ended
+    // by the caller.
+    private int[] endFunction() {
+        List<Integer> upvalues = functions.pop().upvalues;
+        int[] result = new int[upvalues.size()];
+        for (int i = 0; i < result.length; i++) result[i] = upvalues.get(i);
+        return result;
+    }
+
+    // The parameter slots (the first 'params' of the current scope) that
+    // a closure captures, which a call has to move into cells.
+    private int[] capturedParams(int params) {
+        List<Integer> captured = new ArrayList<>();
+        for (Local local : locals.peek().values()) {
+            if (local.captured && local.slot < params) captured.add(local.slot);
+        }
+        int[] result = new int[captured.size()];
+        for (int i = 0; i < result.length; i++) result[i] = captured.get(i);
+        return result;
     }
     
     void resolve(List<Stmt> statements) {
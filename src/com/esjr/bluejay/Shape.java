@@ -0,0 +1,53 @@
+package com.esjr.bluejay;
+
+import java.util.*;
+
+// The layout of an object's attributes: which slot of BluejayObj.fields each
+// name is stored in. Every class starts its instances at its own root shape,
+// and setting a new attribute moves an object to the child shape for that
+// name, so objects that got the same attributes in the same order share a
+// Shape. A Shape never changes once made, which lets InlineCache remember a
+// slot per shape and turn attribute access into an array index.
+class Shape {
+    private final Shape root;
+    private final Map<String, Integer> slots;
+    private final Map<String, Shape> transitions = new HashMap<>();
+    final int size;
+    // Only kept up to date on the root: the most attributes any instance of
+    // the class has had, which is how big new instances' arrays start out.
+    private int capacity = 0;
+
+    Shape() {
+        root = this;
+        slots = Collections.emptyMap();
+        size = 0;
+    }
+
+    private Shape(Shape parent, String name) {
+        root = parent.root;
+        slots = new HashMap<>(parent.slots);
+        slots.put(name, parent.size);
+        size = parent.size + 1;
+        if (size > root.capacity) root.capacity = size;
+    }
+
+    int slot(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    // The shape an object with this one has after adding 'name' (which it
+    // mustn't already have). The new attribute's slot is this shape's size.
+    Shape add(String name) {
+        Shape next = transitions.get(name);
+        if (next == null) {
+            next = new Shape(this, name);
+            transitions.put(name, next);
+        }
+        return next;
+    }
+
+    int capacity() {
+        return root.capacity;
+    }
+}
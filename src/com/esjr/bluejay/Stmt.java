@@ -31,6 +31,7 @@ abstract class Stmt {
         }
 
         public final List<Stmt> statements;
+        int scopeSize;
     }
 
     static class Break extends Stmt {
@@ -63,6 +64,8 @@ abstract class Stmt {
         public final Token name;
         public final Expr.Var inherits;
         public final List<Stmt> methods;
+        int slot = Expr.GLOBAL;
+        boolean captured;
     }
 
     static class Expression extends Stmt {
@@ -93,6 +96,10 @@ abstract class Stmt {
         public final Token loopVar;
         public final Expr iter;
         public final Stmt body;
+        int scopeSize;
+        boolean captured;
+        Jit.Profile profile;
+        final Jit.Loop loop = new Jit.Loop();
     }
 
     static class Function extends Stmt {
@@ -110,6 +117,12 @@ abstract class Stmt {
         public final Token name;
         public final LinkedHashMap<Token,Object> parameters;
         public final Stmt body;
+        int slot = Expr.GLOBAL;
+        boolean captured;
+        int scopeSize;
+        int[] capturedParams;
+        int[] upvalues;
+        final Jit.Profile profile = new Jit.Profile();
     }
 
     static class If extends Stmt {
@@ -159,6 +172,10 @@ abstract class Stmt {
         public final Token name;
         public final LinkedHashMap<Token,Object> parameters;
         public final Stmt body;
+        int scopeSize;
+        int[] capturedParams;
+        int[] upvalues;
+        final Jit.Profile profile = new Jit.Profile();
     }
 
     static class Print extends Stmt {
@@ -189,6 +206,8 @@ abstract class Stmt {
         public final Token paren;
         public final Expr amount;
         public final Stmt body;
+        Jit.Profile profile;
+        final Jit.Loop loop = new Jit.Loop();
     }
 
     static class Return extends Stmt {
@@ -219,6 +238,8 @@ abstract class Stmt {
 
         public final Token name;
         public final Expr initializer;
+        int slot = Expr.GLOBAL;
+        boolean captured;
     }
 
     static class While extends Stmt {
@@ -234,6 +255,11 @@ abstract class Stmt {
 
         public final Expr condition;
         public final Stmt body;
+        Stmt.Var counter;
+        double step;
+        boolean counterRead;
+        Jit.Profile profile;
+        final Jit.Loop loop = new Jit.Loop();
     }
 
     abstract <T> T accept(Visitor<T> visitor);
@@ -0,0 +1,24 @@
+package com.esjr.bluejay;
+
+// A hot loop compiled by JitCompiler from its trace (see Jit.Loop). The
+// generated subclass's run() carries on with the loop from wherever the
+// interpreter handed it over, and runs it to the end.
+abstract class TraceCode {
+    final Object[] constants;
+
+    TraceCode(Object[] constants) {
+        this.constants = constants;
+    }
+
+    // 'environment' is the scope the loop runs in, or for a foreach loop,
+    // the scope of its variable. 'rest' is how much of the loop is left:
+    // the iterator over what a foreach loop hasn't got to yet, or a Double,
+    // the number of times a repeat loop still has to go round. A while loop
+    // has nothing but its variables, so gets null; a counted one's counter
+    // has to be stored in its variable first.
+    //
+    // A break thrown in the loop, including by a function it calls, stops
+    // at or is counted past the loop as in the interpreter, so one that
+    // comes out of run() is already on its way to the loops around it.
+    abstract void run(Interpreter in, Environment environment, Object rest);
+}
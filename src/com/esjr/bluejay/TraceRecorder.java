@@ -0,0 +1,51 @@
+package com.esjr.bluejay;
+
+import static com.esjr.bluejay.TokenType.*;
+
+// Runs one iteration of a hot loop like the tree-walking interpreter does,
+// noting in the loop's Jit.Loop the path it takes: which branch of each if
+// statement, and whether each arithmetic operator got numbers. Calls made
+// from the iteration are run (and noted) by the recorder too, which does no
+// harm since only the loop's own nodes are looked up afterwards.
+class TraceRecorder extends Interpreter {
+    private final Jit.Loop loop;
+
+    TraceRecorder(Interpreter in, Jit.Loop loop) {
+        this.environment = in.environment;
+        this.loop = loop;
+    }
+
+    // Loops inside the one being recorded are interpreted too, even if
+    // they've been traced themselves, so their path is noted as well.
+    @Override
+    TraceCode compiled(Jit.Loop loop) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Stmt.If stmt) {
+        if (test(stmt.condition)) {
+            loop.see(stmt, Jit.Loop.THEN);
+            stmt.thenBranch.accept(this);
+        } else {
+            loop.see(stmt, Jit.Loop.ELSE);
+            if (stmt.elseBranch != null) stmt.elseBranch.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Value visit(Expr.Binary expr) {
+        Value left = expr.left.accept(this);
+        Value right = expr.right.accept(this);
+        loop.see(expr, left instanceof NativeNumber && right instanceof NativeNumber ? Jit.Loop.NUMBERS : Jit.Loop.OTHERS);
+        return binary(expr.operator, left, right);
+    }
+
+    @Override
+    public Value visit(Expr.Unary expr) {
+        Value right = expr.right.accept(this);
+        if (expr.operator.type == MINUS) loop.see(expr, right instanceof NativeNumber ? Jit.Loop.NUMBERS : Jit.Loop.OTHERS);
+        return unary(expr.operator, right);
+    }
+}
@@ -0,0 +1,18 @@
+package com.esjr.bluejay;
+
+// A variable captured by a closure. While the variable's frame is live the
+// upvalue points at its stack slot; once the frame (or block) goes away the
+// value is copied in and the upvalue is "closed".
+class Upvalue {
+    int slot;
+    Value closed;
+    Upvalue next;
+
+    Upvalue(int slot) {
+        this.slot = slot;
+    }
+
+    boolean isOpen() {
+        return slot >= 0;
+    }
+}
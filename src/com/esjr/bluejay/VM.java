@@ -0,0 +1,773 @@
+package com.esjr.bluejay;
+
+import java.util.*;
+
+// Runs the bytecode produced by the Compiler. Values live on a single stack;
+// every call gets a frame whose locals sit in fixed slots starting at the
+// frame's base, with temporaries pushed above them.
+//
+// The operations on values themselves (operators, attributes, builtins) are
+// shared with the tree-walking engine, so the VM keeps an Interpreter around
+// to pass to them.
+class VM {
+    private static final int FRAMES_MAX = 100000;
+
+    private static class Frame {
+        FunctionProto proto;
+        Upvalue[] upvalues;
+        int ip;
+        int base;
+        // Calls to a class run its initializer in a frame that returns the
+        // new object if the body runs to the end (see OpCode.END).
+        boolean initializer;
+    }
+
+    // State of a foreach loop, kept in a hidden local.
+    private static class IterState extends Value {
+        final List<Value> elements;
+        int index = 0;
+
+        IterState(List<Value> elements) {
+            this.elements = elements;
+        }
+
+        public String toString(Interpreter i) {
+            return "<iterator>";
+        }
+        public double toNumber(Interpreter i) {
+            throw new RuntimeError.TypeError("Cannot convert iterator to number");
+        }
+    }
+
+    // State of a repeat loop, kept in a hidden local.
+    private static class RepeatState extends Value {
+        final double amount;
+        int count = 0;
+
+        RepeatState(double amount) {
+            this.amount = amount;
+        }
+
+        public String toString(Interpreter i) {
+            return "<repeat counter>";
+        }
+        public double toNumber(Interpreter i) {
+            return count;
+        }
+    }
+
+    // State of a counted loop, kept in a hidden local: the counter, if the
+    // variable started out as a number.
+    private static class CountState extends Value {
+        final boolean counting;
+        double value;
+
+        CountState(Value start) {
+            counting = start instanceof NativeNumber;
+            if (counting) value = ((NativeNumber)start).value;
+        }
+
+        public String toString(Interpreter i) {
+            return "<loop counter>";
+        }
+        public double toNumber(Interpreter i) {
+            return value;
+        }
+    }
+
+    final Interpreter runtime = new Interpreter();
+    private final Environment globals = Builtins.globals;
+    private Value[] stack = new Value[256];
+    private int sp = 0;
+    private Frame[] frames = new Frame[64];
+    private int frameCount = 0;
+    private Upvalue openUpvalues = null;
+
+    void interpret(FunctionProto script) {
+        try {
+            invoke(script, new Upvalue[0], Builtins.nullValue, new ArrayList<>());
+        } catch (Interpreter.Break b) {
+            Bluejay.runtimeError(new RuntimeError(b.statement.keyword, "Break outside of loop."));
+        } catch (RuntimeError error) {
+            Bluejay.runtimeError(error);
+        }
+    }
+
+    // Calls a compiled function from Java (natives, '$str' and friends, or the
+    // script itself) and runs it to completion.
+    Value invoke(FunctionProto proto, Upvalue[] upvalues, Value receiver, List<Value> arguments) {
+        int depth = frameCount;
+        int base = sp;
+        try {
+            push(receiver);
+            for (Value argument : arguments) push(argument);
+            enter(proto, upvalues, base, false, null);
+            return run(depth);
+        } catch (RuntimeException | StackOverflowError e) {
+            closeUpvalues(base);
+            frameCount = depth;
+            sp = base;
+            throw e;
+        }
+    }
+
+    private Value run(int exitDepth) {
+        Frame frame = frames[frameCount - 1];
+        byte[] code = frame.proto.chunk.code;
+        Object[] constants = frame.proto.chunk.constants;
+        int base = frame.base;
+        int ip = frame.ip;
+
+        // A break can also come back through Java code, from a function
+        // that some native or '$str' and friends called (see unwind).
+        while (true) try {
+            byte op = code[ip++];
+            switch (op) {
+                case OpCode.CONSTANT: {
+                    Value v = (Value)constants[readShort(code, ip)];
+                    ip += 2;
+                    push(v);
+                    break;
+                }
+                case OpCode.NULL:
+                    push(Builtins.nullValue);
+                    break;
+                case OpCode.POP:
+                    stack[--sp] = null;
+                    break;
+
+                case OpCode.GET_LOCAL:
+                    push(stack[base + readShort(code, ip)]);
+                    ip += 2;
+                    break;
+                case OpCode.SET_LOCAL:
+                    stack[base + readShort(code, ip)] = stack[sp - 1];
+                    ip += 2;
+                    break;
+                case OpCode.DEFINE_LOCAL:
+                    stack[base + readShort(code, ip)] = stack[--sp];
+                    stack[sp] = null;
+                    ip += 2;
+                    break;
+                case OpCode.ASSIGN_LOCAL: {
+                    int slot = base + readShort(code, ip);
+                    Token operator = (Token)constants[readShort(code, ip + 2)];
+                    ip += 4;
+                    Value v = Environment.operate(runtime, operator, stack[slot], stack[sp - 1]);
+                    stack[slot] = v;
+                    break;
+                }
+                case OpCode.GET_UPVALUE: {
+                    Upvalue upvalue = frame.upvalues[readShort(code, ip)];
+                    ip += 2;
+                    push(upvalue.isOpen() ? stack[upvalue.slot] : upvalue.closed);
+                    break;
+                }
+                case OpCode.SET_UPVALUE: {
+                    Upvalue upvalue = frame.upvalues[readShort(code, ip)];
+                    ip += 2;
+                    if (upvalue.isOpen()) stack[upvalue.slot] = stack[sp - 1];
+                    else upvalue.closed = stack[sp - 1];
+                    break;
+                }
+                case OpCode.ASSIGN_UPVALUE: {
+                    Upvalue upvalue = frame.upvalues[readShort(code, ip)];
+                    Token operator = (Token)constants[readShort(code, ip + 2)];
+                    ip += 4;
+                    Value current = upvalue.isOpen() ? stack[upvalue.slot] : upvalue.closed;
+                    Value v = Environment.operate(runtime, operator, current, stack[sp - 1]);
+                    if (upvalue.isOpen()) stack[upvalue.slot] = v;
+                    else upvalue.closed = v;
+                    break;
+                }
+                case OpCode.GET_GLOBAL: {
+                    Token name = (Token)constants[readShort(code, ip)];
+                    ip += 2;
+                    push(globals.get(name));
+                    break;
+                }
+                case OpCode.DEFINE_GLOBAL: {
+                    Token name = (Token)constants[readShort(code, ip)];
+                    ip += 2;
+                    globals.define(name.lexeme, stack[--sp]);
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.ASSIGN_GLOBAL: {
+                    Token name = (Token)constants[readShort(code, ip)];
+                    Token operator = (Token)constants[readShort(code, ip + 2)];
+                    ip += 4;
+                    globals.assign(runtime, name, operator, stack[sp - 1]);
+                    break;
+                }
+
+                case OpCode.GET_ATTR: {
+                    Token name = (Token)constants[readShort(code, ip)];
+                    InlineCache cache = (InlineCache)constants[readShort(code, ip + 2)];
+                    ip += 4;
+                    Value v = stack[sp - 1].getAttr(runtime, name, cache);
+                    stack[sp - 1] = v;
+                    break;
+                }
+                case OpCode.SET_ATTR: {
+                    Token name = (Token)constants[readShort(code, ip)];
+                    Token operator = (Token)constants[readShort(code, ip + 2)];
+                    InlineCache cache = (InlineCache)constants[readShort(code, ip + 4)];
+                    ip += 6;
+                    Value v = stack[sp - 1];
+                    stack[sp - 2].setAttr(runtime, name.lexeme, operator, v, cache);
+                    stack[--sp] = null;
+                    stack[sp - 1] = v;
+                    break;
+                }
+                case OpCode.GET_INDEX: {
+                    Value v = stack[sp - 2].getItem(runtime, stack[sp - 1]);
+                    stack[--sp] = null;
+                    stack[sp - 1] = v;
+                    break;
+                }
+                case OpCode.SET_INDEX: {
+                    Token operator = (Token)constants[readShort(code, ip)];
+                    ip += 2;
+                    Value v = stack[sp - 3];
+                    Value obj = stack[sp - 2];
+                    Value index = stack[sp - 1];
+                    if (operator.type != TokenType.EQUAL) {
+                        v = Environment.operate(runtime, operator, obj.getItem(runtime, index), v);
+                    }
+                    obj.setItem(runtime, index, v);
+                    sp -= 2;
+                    stack[sp] = stack[sp + 1] = null;
+                    stack[sp - 1] = v;
+                    break;
+                }
+
+                case OpCode.ADD: binary(op); break;
+                case OpCode.SUB: binary(op); break;
+                case OpCode.MUL: binary(op); break;
+                case OpCode.DIV: binary(op); break;
+                case OpCode.MOD: binary(op); break;
+                case OpCode.POW: binary(op); break;
+                case OpCode.EQ: binary(op); break;
+                case OpCode.NE: binary(op); break;
+                case OpCode.LT: binary(op); break;
+                case OpCode.LE: binary(op); break;
+                case OpCode.GT: binary(op); break;
+                case OpCode.GE: binary(op); break;
+                case OpCode.XOR: {
+                    boolean left = runtime.truthy(stack[sp - 2]);
+                    boolean right = runtime.truthy(stack[sp - 1]);
+                    stack[--sp] = null;
+                    stack[sp - 1] = Builtins.makeBooleanValue(left != right);
+                    break;
+                }
+                case OpCode.NEG: {
+                    Value v = stack[sp - 1].neg(runtime);
+                    stack[sp - 1] = v;
+                    break;
+                }
+                case OpCode.UADD: {
+                    Value v = stack[sp - 1].uadd(runtime);
+                    stack[sp - 1] = v;
+                    break;
+                }
+                case OpCode.NOT: {
+                    boolean b = runtime.truthy(stack[sp - 1]);
+                    stack[sp - 1] = Builtins.makeBooleanValue(!b);
+                    break;
+                }
+
+                case OpCode.BUILD_LIST: {
+                    int count = readShort(code, ip);
+                    ip += 2;
+                    NativeList list = new NativeList(new ArrayList<>(count));
+                    for (int i = sp - count; i < sp; i++) {
+                        list.elements.add(stack[i]);
+                        stack[i] = null;
+                    }
+                    sp -= count;
+                    push(list);
+                    break;
+                }
+                case OpCode.BUILD_DICT: {
+                    int count = readShort(code, ip);
+                    ip += 2;
+                    Map<Value,Value> map = new HashMap<>();
+                    for (int i = sp - count * 2; i < sp; i += 2) {
+                        map.put(stack[i], stack[i + 1]);
+                        stack[i] = stack[i + 1] = null;
+                    }
+                    sp -= count * 2;
+                    push(new Value.Dict(map));
+                    break;
+                }
+
+                case OpCode.JUMP:
+                    ip += readShort(code, ip) + 2;
+                    break;
+                case OpCode.JUMP_IF_FALSE: {
+                    Value cond = stack[--sp];
+                    stack[sp] = null;
+                    if (runtime.truthy(cond)) ip += 2;
+                    else ip += readShort(code, ip) + 2;
+                    break;
+                }
+                case OpCode.JUMP_IF_TRUE: {
+                    Value cond = stack[--sp];
+                    stack[sp] = null;
+                    if (runtime.truthy(cond)) ip += readShort(code, ip) + 2;
+                    else ip += 2;
+                    break;
+                }
+                case OpCode.JUMP_IF_FALSE_OR_POP:
+                    if (runtime.truthy(stack[sp - 1])) {
+                        stack[--sp] = null;
+                        ip += 2;
+                    } else {
+                        ip += readShort(code, ip) + 2;
+                    }
+                    break;
+                case OpCode.JUMP_IF_TRUE_OR_POP:
+                    if (runtime.truthy(stack[sp - 1])) {
+                        ip += readShort(code, ip) + 2;
+                    } else {
+                        stack[--sp] = null;
+                        ip += 2;
+                    }
+                    break;
+                case OpCode.COMPARE_JUMP_IF_FALSE:
+                case OpCode.COMPARE_JUMP_IF_TRUE: {
+                    boolean result = compare((byte)readShort(code, ip), stack[sp - 2], stack[sp - 1]);
+                    sp -= 2;
+                    stack[sp] = stack[sp + 1] = null;
+                    if (result == (op == OpCode.COMPARE_JUMP_IF_TRUE)) ip += readShort(code, ip + 2) + 4;
+                    else ip += 4;
+                    break;
+                }
+                case OpCode.LOOP:
+                    ip -= readShort(code, ip) - 2;
+                    break;
+
+                case OpCode.CALL: {
+                    int argc = readShort(code, ip);
+                    Token paren = (Token)constants[readShort(code, ip + 2)];
+                    ip += 4;
+                    frame.ip = ip;
+                    if (!call(stack[sp - 1 - argc], argc, paren)) break;
+                    frame = frames[frameCount - 1];
+                    code = frame.proto.chunk.code;
+                    constants = frame.proto.chunk.constants;
+                    base = frame.base;
+                    ip = frame.ip;
+                    break;
+                }
+                case OpCode.INVOKE: {
+                    Token name = (Token)constants[readShort(code, ip)];
+                    InlineCache cache = (InlineCache)constants[readShort(code, ip + 2)];
+                    int argc = readShort(code, ip + 4);
+                    Token paren = (Token)constants[readShort(code, ip + 6)];
+                    ip += 8;
+                    frame.ip = ip;
+                    if (!invokeMethod(name, cache, argc, paren)) break;
+                    frame = frames[frameCount - 1];
+                    code = frame.proto.chunk.code;
+                    constants = frame.proto.chunk.constants;
+                    base = frame.base;
+                    ip = frame.ip;
+                    break;
+                }
+                case OpCode.CLOSURE: {
+                    FunctionProto proto = (FunctionProto)constants[readShort(code, ip)];
+                    ip += 2;
+                    Upvalue[] upvalues = new Upvalue[proto.upvalues.length / 2];
+                    for (int i = 0; i < upvalues.length; i++) {
+                        int index = proto.upvalues[i * 2 + 1];
+                        upvalues[i] = proto.upvalues[i * 2] == 1 ? capture(base + index) : frame.upvalues[index];
+                    }
+                    push(proto.isMethod() ? new VMMethod(this, proto, upvalues) : new VMFunction(this, proto, upvalues));
+                    break;
+                }
+                case OpCode.CLASS: {
+                    Stmt.Class declaration = (Stmt.Class)constants[readShort(code, ip)];
+                    int count = readShort(code, ip + 2);
+                    ip += 4;
+                    Value inherits = stack[sp - count - 1];
+                    if (inherits instanceof Value.Null) inherits = null;
+                    if (!(inherits instanceof BluejayClass) && inherits != null) throw new RuntimeError(declaration.inherits.name, "A class can only inherit from another classes.");
+                    Map<String, Value> methods = new HashMap<>();
+                    for (int i = sp - count; i < sp; i++) {
+                        methods.put(((VMMethod)stack[i]).proto.name, stack[i]);
+                    }
+                    BluejayClass class_ = new BluejayClass(declaration, (BluejayClass)inherits, methods);
+                    Arrays.fill(stack, sp - count - 1, sp, null);
+                    sp -= count + 1;
+                    push(class_);
+                    break;
+                }
+                case OpCode.RETURN:
+                case OpCode.END: {
+                    Value result = op == OpCode.END && frame.initializer ? stack[base] : stack[sp - 1];
+                    closeUpvalues(base);
+                    Arrays.fill(stack, base, sp, null);
+                    sp = base;
+                    frameCount--;
+                    if (frameCount == exitDepth) return result;
+                    push(result);
+                    frame = frames[frameCount - 1];
+                    code = frame.proto.chunk.code;
+                    constants = frame.proto.chunk.constants;
+                    base = frame.base;
+                    ip = frame.ip;
+                    break;
+                }
+                case OpCode.CLOSE_UPVALUES:
+                    closeUpvalues(base + readShort(code, ip));
+                    ip += 2;
+                    break;
+
+                case OpCode.BREAK: {
+                    int[] exits = (int[])constants[readShort(code, ip)];
+                    Stmt.Break statement = (Stmt.Break)constants[readShort(code, ip + 2)];
+                    ip += 4;
+                    Value v = stack[--sp];
+                    stack[sp] = null;
+                    if (v instanceof BluejayObj && ((BluejayObj)v).class_ == Builtins.numberClass)
+                        v = new Value.Number(v.toNumber(runtime));
+                    if (!(v instanceof Value.Number) || ((Value.Number)v).value%1 != 0) throw new RuntimeError(statement.keyword, "Break amount must be an integer.");
+                    int amount = (int)((Value.Number)v).value;
+                    if (amount < 1) throw new RuntimeError(statement.keyword, "Break outside of loop.");
+                    if (amount <= exits.length / 2) {
+                        closeUpvalues(base + exits[(amount - 1) * 2 + 1]);
+                        ip = exits[(amount - 1) * 2];
+                        break;
+                    }
+                    unwind(amount - exits.length / 2, statement, exitDepth);
+                    frame = frames[frameCount - 1];
+                    code = frame.proto.chunk.code;
+                    constants = frame.proto.chunk.constants;
+                    base = frame.base;
+                    ip = frame.ip;
+                    break;
+                }
+                case OpCode.RAISE: {
+                    String message = (String)constants[readShort(code, ip)];
+                    Token token = (Token)constants[readShort(code, ip + 2)];
+                    throw new RuntimeError(token, message);
+                }
+                case OpCode.FOREACH_PREP: {
+                    Token loopVar = (Token)constants[readShort(code, ip)];
+                    ip += 2;
+                    Value v = new IterState(runtime.iterate(stack[sp - 1], loopVar));
+                    stack[sp - 1] = v;
+                    break;
+                }
+                case OpCode.FOREACH_NEXT: {
+                    IterState state = (IterState)stack[base + readShort(code, ip)];
+                    if (state.index < state.elements.size()) {
+                        stack[base + readShort(code, ip + 2)] = state.elements.get(state.index++);
+                        ip += 6;
+                    } else {
+                        ip += readShort(code, ip + 4) + 6;
+                    }
+                    break;
+                }
+                case OpCode.REPEAT_PREP: {
+                    Token paren = (Token)constants[readShort(code, ip)];
+                    ip += 2;
+                    Value amount = stack[sp - 1];
+                    if (!(amount instanceof BluejayObj && ((BluejayObj)amount).class_ == Builtins.numberClass)) {
+                        throw new RuntimeError(paren, "Amount for 'repeat' statement must be a number.");
+                    }
+                    Value v = new RepeatState(amount.toNumber(runtime));
+                    stack[sp - 1] = v;
+                    break;
+                }
+                case OpCode.REPEAT_NEXT: {
+                    RepeatState state = (RepeatState)stack[base + readShort(code, ip)];
+                    if (state.count < state.amount) {
+                        state.count++;
+                        ip += 4;
+                    } else {
+                        ip += readShort(code, ip + 2) + 4;
+                    }
+                    break;
+                }
+                case OpCode.COUNT_PREP:
+                    push(new CountState(stack[base + readShort(code, ip)]));
+                    ip += 2;
+                    break;
+                case OpCode.COUNT_TEST: {
+                    CountState state = (CountState)stack[base + readShort(code, ip + 2)];
+                    byte comparison = (byte)readShort(code, ip + 4);
+                    Value limit = stack[--sp];
+                    stack[sp] = null;
+                    boolean result;
+                    if (!state.counting) {
+                        result = compare(comparison, stack[base + readShort(code, ip)], limit);
+                    } else if (limit instanceof NativeNumber) {
+                        result = compare(comparison, state.value, ((NativeNumber)limit).value);
+                    } else {
+                        result = compare(comparison, Builtins.makeNumberValue(state.value), limit);
+                    }
+                    if (result) ip += 8;
+                    else ip += readShort(code, ip + 6) + 8;
+                    break;
+                }
+                case OpCode.COUNT_STEP: {
+                    CountState state = (CountState)stack[base + readShort(code, ip + 2)];
+                    if (state.counting) {
+                        Stmt.While loop = (Stmt.While)constants[readShort(code, ip + 4)];
+                        state.value += loop.step;
+                        if (loop.counterRead) stack[base + readShort(code, ip)] = Builtins.makeNumberValue(state.value);
+                        ip += readShort(code, ip + 6) + 8;
+                    } else {
+                        ip += 8;
+                    }
+                    break;
+                }
+                case OpCode.IMPORT:
+                    throw new UnsupportedOperationException("Imports not implemented yet.");
+                default:
+                    throw new UnsupportedOperationException("Unknown opcode "+op+".");
+            }
+        } catch (Interpreter.Break b) {
+            // One that unwind() has already taken out of this run() goes on.
+            if (frameCount == exitDepth) throw b;
+            int amount = land(frame, ip, b.amount);
+            if (amount > 0) unwind(amount, b.statement, exitDepth);
+            frame = frames[frameCount - 1];
+            code = frame.proto.chunk.code;
+            constants = frame.proto.chunk.constants;
+            base = frame.base;
+            ip = frame.ip;
+        }
+    }
+
+    private void binary(byte op) {
+        Value result = operate(op, stack[sp - 2], stack[sp - 1]);
+        stack[--sp] = null;
+        stack[sp - 1] = result;
+    }
+
+    private Value operate(byte op, Value left, Value right) {
+        switch (op) {
+            case OpCode.ADD: return left.add(runtime, right);
+            case OpCode.SUB: return left.sub(runtime, right);
+            case OpCode.MUL: return left.mul(runtime, right);
+            case OpCode.DIV: return left.div(runtime, right);
+            case OpCode.MOD: return left.mod(runtime, right);
+            case OpCode.POW: return left.pow(runtime, right);
+            case OpCode.EQ: return left.eq(runtime, right);
+            case OpCode.NE: return left.ne(runtime, right);
+            case OpCode.LT: return left.lt(runtime, right);
+            case OpCode.LE: return left.lte(runtime, right);
+            case OpCode.GT: return left.gt(runtime, right);
+            case OpCode.GE: return left.gte(runtime, right);
+            default:
+                throw new UnsupportedOperationException("Opcode "+op+" is not a binary operator.");
+        }
+    }
+
+    // A comparison as a Java boolean. Two numbers are compared directly;
+    // anything else goes through the operator methods as usual.
+    private boolean compare(byte op, Value left, Value right) {
+        if (left instanceof NativeNumber && right instanceof NativeNumber) {
+            return compare(op, ((NativeNumber)left).value, ((NativeNumber)right).value);
+        }
+        return runtime.truthy(operate(op, left, right));
+    }
+
+    private static boolean compare(byte op, double l, double r) {
+        switch (op) {
+            case OpCode.EQ: return l == r;
+            case OpCode.NE: return l != r;
+            case OpCode.LT: return l < r;
+            case OpCode.LE: return l <= r;
+            case OpCode.GT: return l > r;
+            case OpCode.GE: return l >= r;
+            default: throw new UnsupportedOperationException("Opcode "+op+" is not a comparison.");
+        }
+    }
+
+    // Calls the value sitting below the top argc arguments. Returns true if
+    // that pushed a new frame for run() to continue in; otherwise the call
+    // has already finished and its result replaced the callee and arguments.
+    private boolean call(Value callee, int argc, Token paren) {
+        int calleeSlot = sp - 1 - argc;
+        if (callee instanceof VMFunction) {
+            VMFunction function = (VMFunction)callee;
+            checkArity(paren, function.proto.arity, argc);
+            enter(function.proto, function.upvalues, calleeSlot, false, paren);
+            return true;
+        }
+        if (callee instanceof BluejayRegisteredMethod && ((BluejayRegisteredMethod)callee).method instanceof VMMethod) {
+            VMMethod method = (VMMethod)((BluejayRegisteredMethod)callee).method;
+            checkArity(paren, method.proto.arity, argc);
+            stack[calleeSlot] = ((BluejayRegisteredMethod)callee).obj;
+            enter(method.proto, method.upvalues, calleeSlot, false, paren);
+            return true;
+        }
+        if (callee instanceof BluejayClass && !(callee instanceof NativeClass)
+                && ((BluejayClass)callee).statics.get(((BluejayClass)callee).name) instanceof VMMethod) {
+            BluejayClass class_ = (BluejayClass)callee;
+            VMMethod init = (VMMethod)class_.statics.get(class_.name);
+            checkArity(paren, init.proto.arity, argc);
+            stack[calleeSlot] = new BluejayObj(class_);
+            enter(init.proto, init.upvalues, calleeSlot, true, paren);
+            return true;
+        }
+        if (!(callee instanceof BluejayCallable)) {
+            throw new RuntimeError(paren, "Object of type '"+runtime.typeOf(callee)+"' is not callable.");
+        }
+        BluejayCallable function = (BluejayCallable)callee;
+        checkArity(paren, function.arity(), argc);
+        Value result = function.call(runtime, arguments(calleeSlot));
+        finishCall(calleeSlot, result);
+        return false;
+    }
+
+    // obj.name(args) with obj below the arguments. Methods get obj as their
+    // receiver directly (in slot 0 for VM methods, where it already is), so
+    // no bound method is made. Anything else is called like CALL would.
+    private boolean invokeMethod(Token name, InlineCache cache, int argc, Token paren) {
+        int receiverSlot = sp - 1 - argc;
+        Value receiver = stack[receiverSlot];
+        if (!(receiver instanceof BluejayObj)) {
+            Value callee = receiver.getAttr(runtime, name, cache);
+            stack[receiverSlot] = callee;
+            return call(callee, argc, paren);
+        }
+        Value method = ((BluejayObj)receiver).findAttr(name, cache);
+        if (method instanceof VMMethod) {
+            VMMethod vmMethod = (VMMethod)method;
+            checkArity(paren, vmMethod.proto.arity, argc);
+            enter(vmMethod.proto, vmMethod.upvalues, receiverSlot, false, paren);
+            return true;
+        }
+        if (method instanceof BluejayMethod) {
+            checkArity(paren, ((BluejayMethod)method).arity(), argc);
+            finishCall(receiverSlot, ((BluejayMethod)method).call(runtime, arguments(receiverSlot), receiver));
+            return false;
+        }
+        if (method instanceof NativeMethod) {
+            checkArity(paren, ((NativeMethod)method).arity(), argc);
+            finishCall(receiverSlot, ((NativeMethod)method).call(runtime, arguments(receiverSlot), (BluejayObj)receiver));
+            return false;
+        }
+        stack[receiverSlot] = method;
+        return call(method, argc, paren);
+    }
+
+    private List<Value> arguments(int calleeSlot) {
+        List<Value> arguments = new ArrayList<>(sp - calleeSlot - 1);
+        for (int i = calleeSlot + 1; i < sp; i++) arguments.add(stack[i]);
+        return arguments;
+    }
+
+    private void finishCall(int calleeSlot, Value result) {
+        Arrays.fill(stack, calleeSlot, sp, null);
+        sp = calleeSlot;
+        push(result);
+    }
+
+    private void enter(FunctionProto proto, Upvalue[] upvalues, int base, boolean initializer, Token paren) {
+        if (frameCount == FRAMES_MAX) throw new RuntimeError(paren, "Maximum recursion depth exceeded.");
+        if (frameCount == frames.length) frames = Arrays.copyOf(frames, frameCount * 2);
+        Frame frame = frames[frameCount];
+        if (frame == null) frame = frames[frameCount] = new Frame();
+        frameCount++;
+        frame.proto = proto;
+        frame.upvalues = upvalues;
+        frame.ip = 0;
+        frame.base = base;
+        frame.initializer = initializer;
+
+        int top = base + proto.slots;
+        ensureCapacity(top);
+        if (sp < top) Arrays.fill(stack, sp, top, null);
+        sp = top;
+    }
+
+    // A break out of 'amount' more loops than the function it's in has: as
+    // in the interpreter, it leaves the function and carries on through
+    // the loops around each call until it's left enough of them. The frame
+    // it ends up in is left to carry on from the end of its loop. Going
+    // past the frame run() was entered at, it's thrown on to the Java code
+    // that called it.
+    private void unwind(int amount, Stmt.Break statement, int exitDepth) {
+        while (true) {
+            Frame frame = frames[frameCount - 1];
+            closeUpvalues(frame.base);
+            Arrays.fill(stack, frame.base, sp, null);
+            sp = frame.base;
+            frameCount--;
+            if (frameCount == exitDepth) throw new Interpreter.Break(amount, statement);
+            frame = frames[frameCount - 1];
+            amount = land(frame, frame.ip, amount);
+            if (amount == 0) return;
+        }
+    }
+
+    // Takes a break that's come back to 'frame' while it was at 'ip'
+    // through the frame's loops around there, and returns how many more
+    // it has to leave. If it stops at one, the frame is set to carry on
+    // from its end.
+    private int land(Frame frame, int ip, int amount) {
+        for (int[] loop : frame.proto.chunk.loops) {
+            if (ip <= loop[0] || ip > loop[1] || --amount > 0) continue;
+            closeUpvalues(frame.base + loop[2]);
+            int top = frame.base + frame.proto.slots;
+            Arrays.fill(stack, top, sp, null);
+            sp = top;
+            frame.ip = loop[1];
+            return 0;
+        }
+        return amount;
+    }
+
+    private void checkArity(Token paren, int arity, int argc) {
+        if (argc != arity) {
+            throw new RuntimeError(paren, "Expected " +
+                arity + " arguments but got " +
+                argc + ".");
+        }
+    }
+
+    private Upvalue capture(int slot) {
+        Upvalue previous = null;
+        Upvalue upvalue = openUpvalues;
+        while (upvalue != null && upvalue.slot > slot) {
+            previous = upvalue;
+            upvalue = upvalue.next;
+        }
+        if (upvalue != null && upvalue.slot == slot) return upvalue;
+
+        Upvalue created = new Upvalue(slot);
+        created.next = upvalue;
+        if (previous == null) openUpvalues = created;
+        else previous.next = created;
+        return created;
+    }
+
+    private void closeUpvalues(int last) {
+        while (openUpvalues != null && openUpvalues.slot >= last) {
+            Upvalue upvalue = openUpvalues;
+            upvalue.closed = stack[upvalue.slot];
+            upvalue.slot = -1;
+            openUpvalues = upvalue.next;
+        }
+    }
+
+    private void push(Value value) {
+        if (sp == stack.length) ensureCapacity(sp + 1);
+        stack[sp++] = value;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > stack.length) stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+    }
+
+    private static int readShort(byte[] code, int at) {
+        return ((code[at] & 0xff) << 8) | (code[at + 1] & 0xff);
+    }
+}
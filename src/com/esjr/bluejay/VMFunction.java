@@ -0,0 +1,20 @@
+package com.esjr.bluejay;
+
+import java.util.*;
+
+class VMFunction extends BluejayFunction {
+    final VM vm;
+    final FunctionProto proto;
+    final Upvalue[] upvalues;
+
+    VMFunction(VM vm, FunctionProto proto, Upvalue[] upvalues) {
+        super((Stmt.Function)proto.declaration);
+        this.vm = vm;
+        this.proto = proto;
+        this.upvalues = upvalues;
+    }
+
+    public Value call(Interpreter interpreter, List<Value> arguments) {
+        return vm.invoke(proto, upvalues, this, arguments);
+    }
+}
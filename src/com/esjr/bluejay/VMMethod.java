@@ -0,0 +1,20 @@
+package com.esjr.bluejay;
+
+import java.util.*;
+
+class VMMethod extends BluejayMethod {
+    final VM vm;
+    final FunctionProto proto;
+    final Upvalue[] upvalues;
+
+    VMMethod(VM vm, FunctionProto proto, Upvalue[] upvalues) {
+        super((Stmt.Method)proto.declaration);
+        this.vm = vm;
+        this.proto = proto;
+        this.upvalues = upvalues;
+    }
+
+    public Value call(Interpreter interpreter, List<Value> arguments, Value object) {
+        return vm.invoke(proto, upvalues, object, arguments);
+    }
+}
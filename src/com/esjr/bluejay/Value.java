@@ -57,9 +57,15 @@ abstract class Value {
     public Value getAttr(Interpreter i, Token attr) {
         throw new RuntimeError("Unsupported operation '.' for object");
     }
+    public Value getAttr(Interpreter i, Token attr, InlineCache cache) {
+        return getAttr(i, attr);
+    }
     public void setAttr(Interpreter i, String attr, Token operator, Value v) {
         throw new RuntimeError("Cannot assign attribute for object");
     }
+    public void setAttr(Interpreter i, String attr, Token operator, Value v, InlineCache cache) {
+        setAttr(i, attr, operator, v);
+    }
 
     static class Number extends Value {
         public final double value;
@@ -93,22 +99,22 @@ abstract class Value {
             return new Number(Math.pow(value, ((Number)other).value));
         }
         public Value eq(Interpreter i, Value other) {
-            return new BluejayBoolean(value==((Number)other).value);
+            return Builtins.makeBooleanValue(value==((Number)other).value);
         }
         public Value lt(Interpreter i, Value other) {
-            return new BluejayBoolean(value<((Number)other).value);
+            return Builtins.makeBooleanValue(value<((Number)other).value);
         }
         public Value lte(Interpreter i, Value other) {
-            return new BluejayBoolean(value<=((Number)other).value);
+            return Builtins.makeBooleanValue(value<=((Number)other).value);
         }
         public Value gt(Interpreter i, Value other) {
-            return new BluejayBoolean(value>((Number)other).value);
+            return Builtins.makeBooleanValue(value>((Number)other).value);
         }
         public Value gte(Interpreter i, Value other) {
-            return new BluejayBoolean(value<=((Number)other).value);
+            return Builtins.makeBooleanValue(value<=((Number)other).value);
         }
         public Value ne(Interpreter i, Value other) {
-            return new BluejayBoolean(value!=((Number)other).value);
+            return Builtins.makeBooleanValue(value!=((Number)other).value);
         }
         public Value neg(Interpreter i) {
             return new Number(-value);
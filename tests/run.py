@@ -0,0 +1,107 @@
+"""Runs the Bluejay programs in tests/ that have an expected output.
+
+Each tests/<name>.blu with a tests/expected/<name>.out is run on every
+engine (the tree and nodes engines with and without the JIT), and as a
+jar compiled by bluejayc, and what it prints has to match: stdout against
+<name>.out, and stderr against <name>.err, which is empty if there's no
+such file.
+
+Build first with `mvn -B package` (or point --classpath at compiled
+classes), then from the repository root:
+
+    python3 tests/run.py
+    python3 tests/run.py --only closures,counted_loops --engines vm,tree
+"""
+
+import argparse
+import glob
+import os
+import subprocess
+import sys
+import tempfile
+
+ROOT = os.path.dirname(os.path.dirname(os.path.abspath(__file__)))
+TESTS_DIR = os.path.join(ROOT, 'tests')
+EXPECTED_DIR = os.path.join(TESTS_DIR, 'expected')
+RUNS = {
+    'vm': ['--engine=vm'],
+    'nodes': ['--engine=nodes'],
+    'nodes-no-jit': ['--engine=nodes', '--no-jit'],
+    'tree': ['--engine=tree'],
+    'tree-no-jit': ['--engine=tree', '--no-jit'],
+    'aot': None,
+}
+
+
+def interpreter_jar():
+    jars = glob.glob(os.path.join(ROOT, 'interpreter', 'target', 'bluejay-*.jar'))
+    return jars[0] if jars else None
+
+
+def run(classpath, engine, path, timeout):
+    """What the program prints on the engine, as (stdout, stderr)."""
+    if RUNS[engine] is not None:
+        proc = subprocess.run(['java', '-cp', classpath, 'com.esjr.bluejay.Main'] + RUNS[engine] + [path],
+                              capture_output=True, text=True, timeout=timeout)
+        return proc.stdout, proc.stderr
+    with tempfile.TemporaryDirectory() as tmp:
+        jar = os.path.join(tmp, 'program.jar')
+        proc = subprocess.run(['java', '-cp', classpath, 'com.esjr.bluejay.Bluejayc', '-o', jar, path],
+                              capture_output=True, text=True, timeout=timeout)
+        if proc.returncode != 0:
+            return proc.stdout, proc.stderr
+        proc = subprocess.run(['java', '-jar', jar], capture_output=True, text=True, timeout=timeout)
+        return proc.stdout, proc.stderr
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__.split('\n')[0])
+    parser.add_argument('--engines', default=','.join(RUNS), help='comma-separated engines (default: %(default)s)')
+    parser.add_argument('--only', help='comma-separated test names (default: all)')
+    parser.add_argument('--classpath', help='where the interpreter is (default: the jar in interpreter/target)')
+    parser.add_argument('--timeout', type=float, default=120, help='seconds before giving up on a process (default: %(default)s)')
+    args = parser.parse_args()
+
+    classpath = args.classpath or interpreter_jar()
+    if classpath is None:
+        sys.exit('Build the interpreter first (mvn -B package), or pass --classpath')
+
+    names = sorted(os.path.splitext(os.path.basename(p))[0] for p in glob.glob(os.path.join(EXPECTED_DIR, '*.out')))
+    if args.only:
+        wanted = args.only.split(',')
+        unknown = [n for n in wanted if n not in names]
+        if unknown:
+            sys.exit('Unknown test(s): ' + ', '.join(unknown))
+        names = wanted
+    engines = args.engines.split(',')
+    unknown = [e for e in engines if e not in RUNS]
+    if unknown:
+        sys.exit('Unknown engine(s): ' + ', '.join(unknown))
+
+    failures = 0
+    for name in names:
+        path = os.path.join(TESTS_DIR, name + '.blu')
+        expected_out = open(os.path.join(EXPECTED_DIR, name + '.out')).read()
+        err_path = os.path.join(EXPECTED_DIR, name + '.err')
+        expected_err = open(err_path).read() if os.path.exists(err_path) else ''
+        for engine in engines:
+            try:
+                out, err = run(classpath, engine, path, args.timeout)
+            except subprocess.TimeoutExpired:
+                out, err = None, 'timed out'
+            if out == expected_out and err == expected_err:
+                print('ok    %s [%s]' % (name, engine))
+                continue
+            failures += 1
+            print('FAIL  %s [%s]' % (name, engine))
+            if out != expected_out:
+                print('  stdout:\n' + (out or ''))
+            if err != expected_err:
+                print('  stderr:\n' + err)
+
+    print('%d failed' % failures if failures else 'All passed')
+    sys.exit(1 if failures else 0)
+
+
+if __name__ == '__main__':
+    main()